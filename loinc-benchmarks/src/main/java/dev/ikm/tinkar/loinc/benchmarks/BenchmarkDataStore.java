@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.benchmarks;
+
+import dev.ikm.tinkar.common.service.CachingService;
+import dev.ikm.tinkar.common.service.PrimitiveData;
+import dev.ikm.tinkar.common.service.ServiceKeys;
+import dev.ikm.tinkar.common.service.ServiceProperties;
+import dev.ikm.tinkar.common.util.io.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+/**
+ * Starts an empty spined array store in a temporary directory, the same way the tests do.
+ */
+public final class BenchmarkDataStore {
+
+    private BenchmarkDataStore() {
+    }
+
+    public static File start(String name) {
+        try {
+            File dataStore = Files.createTempDirectory("loinc-" + name).toFile();
+            CachingService.clearAll();
+            ServiceProperties.set(ServiceKeys.DATA_STORE_ROOT, dataStore);
+            PrimitiveData.selectControllerByName("Open SpinedArrayStore");
+            PrimitiveData.start();
+            return dataStore;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stops the datastore unless the ingest already did, then deletes it; files still held open by a running store
+     * could not be deleted on Windows.
+     */
+    public static void stop(File dataStore) {
+        if (PrimitiveData.running()) {
+            PrimitiveData.stop();
+        }
+        FileUtil.recursiveDelete(dataStore);
+    }
+}
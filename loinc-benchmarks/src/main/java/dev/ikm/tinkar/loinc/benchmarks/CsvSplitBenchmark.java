@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.benchmarks;
+
+import dev.ikm.tinkar.loinc.starterdata.CsvTokenizer;
+import dev.ikm.tinkar.loinc.starterdata.LoincConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting Loinc.csv lines: the former {@code REGEX_LINEDATA} split followed by quote stripping, against
+ * {@link CsvTokenizer} on single lines and on the whole text. Scores are per line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvSplitBenchmark {
+
+    private static final int LINES = 10_000;
+
+    private List<String> lines;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        lines = new SyntheticLoincData(LINES, 42).loincLines();
+        text = String.join("\r\n", lines);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    @SuppressWarnings("deprecation")
+    public void regexSplitAndFixString(Blackhole blackhole) {
+        for (String line : lines) {
+            String[] data = line.split(LoincConstants.REGEX_LINEDATA, -1);
+            for (int i = 0; i < data.length; i++) {
+                data[i] = fixString(data[i]);
+            }
+            blackhole.consume(data);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void tokenizerSplit(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(CsvTokenizer.split(line));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void tokenizerStream(Blackhole blackhole) throws IOException {
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(text))) {
+            String[] record;
+            while ((record = tokenizer.next()) != null) {
+                blackhole.consume(record);
+            }
+        }
+    }
+
+    /**
+     * The quote stripping that was applied to the regex split fields before the tokenizer replaced both.
+     */
+    private static String fixString(String inputString) {
+        return inputString.replaceAll("\"", "");
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.benchmarks;
+
+import dev.ikm.tinkar.entity.graph.adaptor.axiom.LogicalExpression;
+import dev.ikm.tinkar.ext.lang.owl.SctOwlUtilities;
+import dev.ikm.tinkar.loinc.starterdata.LoincAxiomBuilder;
+import dev.ikm.tinkar.loinc.starterdata.LoincStarterData;
+import dev.ikm.tinkar.terms.EntityProxy;
+import dev.ikm.tinkar.terms.TinkarTerm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stated definitions of LOINC terms: writing OWL text and parsing it back, as the import did before, against building
+ * the {@link LogicalExpression} directly with {@link LoincAxiomBuilder}. Scores are per definition.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DefinitionBenchmark {
+
+    private static final int DEFINITIONS = 1_000;
+    private static final int AXES = LoincStarterData.LOINC_AXES.values().length;
+
+    private File dataStore;
+    private EntityProxy.Concept observableEntity;
+    private EntityProxy.Concept[] axisAttributes;
+    private EntityProxy.Concept[] terms;
+    private EntityProxy.Concept[][] axisValues;
+    private String[] owlText;
+    private LoincAxiomBuilder axiomBuilder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataStore = BenchmarkDataStore.start("definitions");
+        observableEntity = concept(LoincStarterData.OBSERVABLE_ENTITY);
+        axisAttributes = new EntityProxy.Concept[AXES];
+        for (int axis = 0; axis < AXES; axis++) {
+            axisAttributes[axis] = concept(LoincStarterData.LOINC_AXES.values()[axis].name());
+        }
+        axiomBuilder = new LoincAxiomBuilder(observableEntity, axisAttributes);
+
+        SplittableRandom random = new SplittableRandom(42);
+        terms = new EntityProxy.Concept[DEFINITIONS];
+        axisValues = new EntityProxy.Concept[DEFINITIONS][AXES];
+        owlText = new String[DEFINITIONS];
+        for (int i = 0; i < DEFINITIONS; i++) {
+            terms[i] = concept(SyntheticLoincData.loincNumber(i));
+            for (int axis = 0; axis < AXES; axis++) {
+                // About 60% of LOINC terms have no method.
+                if (axis < AXES - 1 || random.nextInt(100) < 40) {
+                    axisValues[i][axis] = concept(SyntheticLoincData.partNumber(random.nextInt(500)));
+                }
+            }
+            owlText[i] = owlText(terms[i], axisValues[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkDataStore.stop(dataStore);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DEFINITIONS)
+    public void owlTextAndParse(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < DEFINITIONS; i++) {
+            blackhole.consume(SctOwlUtilities.sctToLogicalExpression(owlText(terms[i], axisValues[i]), ""));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DEFINITIONS)
+    public void owlParse(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < DEFINITIONS; i++) {
+            blackhole.consume(SctOwlUtilities.sctToLogicalExpression(owlText[i], ""));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DEFINITIONS)
+    public void axiomBuilder(Blackhole blackhole) {
+        for (int i = 0; i < DEFINITIONS; i++) {
+            blackhole.consume(axiomBuilder.definition(axisValues[i]));
+        }
+    }
+
+    /**
+     * The OWL text the import wrote for each term before {@link LoincAxiomBuilder} replaced it.
+     */
+    private String owlText(EntityProxy.Concept term, EntityProxy.Concept[] values) {
+        StringBuilder owlString = new StringBuilder();
+        owlString.append("EquivalentClasses( \n");
+        owlString.append(":[" + term.publicId().asUuidArray()[0] + "] \n");
+        owlString.append("\tObjectIntersectionOf( ");
+        owlString.append(":[" + observableEntity.publicId().asUuidArray()[0] + "] \n");
+        for (int axis = 0; axis < values.length; axis++) {
+            if (values[axis] != null) {
+                owlString.append("\tObjectSomeValuesFrom( \n");
+                owlString.append("\t\t:[" + TinkarTerm.ROLE_GROUP.publicId().asUuidArray()[0] + "] \n");
+                owlString.append("\t\t\tObjectSomeValuesFrom( \n");
+                owlString.append("\t\t\t:[" + axisAttributes[axis].publicId().asUuidArray()[0] + "] \n");
+                owlString.append("\t\t\t:[" + values[axis].publicId().asUuidArray()[0] + "] \n");
+                owlString.append("\t\t )\n");
+                owlString.append("\t )\n");
+            }
+        }
+        owlString.append("\t\t)");
+        owlString.append("\t");
+        return owlString.toString();
+    }
+
+    private static EntityProxy.Concept concept(String name) {
+        EntityProxy.Concept concept = EntityProxy.Concept.make(name, UUID.nameUUIDFromBytes(name.getBytes()));
+        // Assigns the nid, as the import does when it creates the concept.
+        concept.nid();
+        return concept;
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.benchmarks;
+
+import dev.ikm.tinkar.common.util.io.FileUtil;
+import dev.ikm.tinkar.entity.EntityCountSummary;
+import dev.ikm.tinkar.entity.load.LoadEntitiesFromProtobufFile;
+import dev.ikm.tinkar.loinc.starterdata.LoincStarterData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the whole LOINC ingest on synthetic releases of increasing size and reports how it scales.
+ * <p>
+ * For every size a {@link SyntheticLoincData} release is written to a temporary directory and ingested with
+ * {@link LoincStarterData#processLoincStarterDataCSVFile()} into an empty spined array store, preloaded with the
+ * Tinkar starter data the ingest builds on. Wall time, peak heap, GC time and LOINC rows per second of the ingest are
+ * written as JSON, together with the JVM, operating system, processors and heap of the machine, and compared against
+ * a baseline file of an earlier run. No baseline is checked in: timings only compare on the same machine, so record
+ * one there with {@code --update-baseline} before comparing.
+ * <pre>
+ * java -cp benchmarks.jar dev.ikm.tinkar.loinc.benchmarks.IngestMacroBenchmark --tinkar-data tinkar-starter-pb.zip
+ *      [--sizes 10000,100000,1000000] [--seed 42] [--output target/ingest-benchmark.json]
+ *      [--baseline ingest-baseline.json] [--tolerance 0.20] [--update-baseline] [--fail-on-regression]
+ * </pre>
+ * Sizes run one after the other in the same JVM. Run a single size per JVM when the peak heap of the larger sizes
+ * should not include what the smaller ones left behind.
+ */
+public class IngestMacroBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IngestMacroBenchmark.class.getSimpleName());
+
+    private static final Pattern NUMBER_FIELD = Pattern.compile("\"(\\w+)\"\\s*:\\s*(-?[0-9.]+(?:[eE][-+]?[0-9]+)?)");
+
+    /**
+     * The measurements of one ingest. The peak heap is the sum of the peaks of the heap pools, which may have been
+     * reached at different moments, so it is an upper bound of the actual peak.
+     */
+    public record Result(int loincRows, int partRows, long wallMillis, long peakHeapBytes, long gcMillis,
+                         long gcCount, double rowsPerSecond) {
+
+        String toJson() {
+            return String.format(Locale.ROOT, "{\"loincRows\": %d, \"partRows\": %d, \"wallMillis\": %d, "
+                            + "\"peakHeapBytes\": %d, \"gcMillis\": %d, \"gcCount\": %d, \"rowsPerSecond\": %.1f}",
+                    loincRows, partRows, wallMillis, peakHeapBytes, gcMillis, gcCount, rowsPerSecond);
+        }
+
+        static Result fromJson(String json) {
+            Map<String, String> fields = new HashMap<>();
+            Matcher matcher = NUMBER_FIELD.matcher(json);
+            while (matcher.find()) {
+                fields.put(matcher.group(1), matcher.group(2));
+            }
+            return new Result(Integer.parseInt(fields.get("loincRows")),
+                    Integer.parseInt(fields.getOrDefault("partRows", "0")),
+                    Long.parseLong(fields.get("wallMillis")),
+                    Long.parseLong(fields.getOrDefault("peakHeapBytes", "0")),
+                    Long.parseLong(fields.getOrDefault("gcMillis", "0")),
+                    Long.parseLong(fields.getOrDefault("gcCount", "0")),
+                    Double.parseDouble(fields.getOrDefault("rowsPerSecond", "0")));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        execute(args);
+    }
+
+    /**
+     * Runs the benchmark with the command line arguments of {@link #main(String[])}.
+     *
+     * @return the number of sizes whose wall time grew by more than the tolerance, 0 without a baseline
+     * @throws IllegalStateException with {@code --fail-on-regression} when a size regressed
+     */
+    public static int execute(String[] args) throws IOException {
+        int[] sizes = {10_000, 100_000, 1_000_000};
+        long seed = 42;
+        File tinkarData = null;
+        Path output = Path.of("target", "ingest-benchmark.json");
+        Path baseline = null;
+        double tolerance = 0.20;
+        boolean updateBaseline = false;
+        boolean failOnRegression = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes" -> sizes = Arrays.stream(value(args, ++i).split(","))
+                        .mapToInt(size -> Integer.parseInt(size.trim().replace("_", ""))).toArray();
+                case "--seed" -> seed = Long.parseLong(value(args, ++i));
+                case "--tinkar-data" -> tinkarData = new File(value(args, ++i));
+                case "--output" -> output = Path.of(value(args, ++i));
+                case "--baseline" -> baseline = Path.of(value(args, ++i));
+                case "--tolerance" -> tolerance = Double.parseDouble(value(args, ++i));
+                case "--update-baseline" -> updateBaseline = true;
+                case "--fail-on-regression" -> failOnRegression = true;
+                default -> throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+        if (tinkarData == null || !tinkarData.isFile()) {
+            throw new IllegalArgumentException("--tinkar-data must name the Tinkar starter data pb.zip to ingest into");
+        }
+
+        List<Result> results = new ArrayList<>(sizes.length);
+        for (int size : sizes) {
+            Result result = run(size, seed, tinkarData);
+            LOG.info(result.toJson());
+            results.add(result);
+        }
+        write(output, results);
+        LOG.info("Wrote " + output.toAbsolutePath());
+
+        if (baseline == null) {
+            return 0;
+        }
+        if (updateBaseline) {
+            write(baseline, results);
+            LOG.info("Updated baseline " + baseline.toAbsolutePath());
+            return 0;
+        }
+        if (!Files.exists(baseline)) {
+            LOG.warn("Baseline " + baseline + " does not exist, run with --update-baseline to create it");
+            return 0;
+        }
+        List<Result> baselineResults = read(baseline);
+        if (baselineResults.isEmpty()) {
+            throw new IllegalStateException("Baseline " + baseline + " holds no results");
+        }
+        int regressions = compare(baselineResults, results, tolerance);
+        if (regressions > 0 && failOnRegression) {
+            throw new IllegalStateException(regressions + " of " + results.size()
+                    + " sizes exceed the tolerance of " + Math.round(tolerance * 100) + "% against " + baseline);
+        }
+        return regressions;
+    }
+
+    /**
+     * Generates a release of the given size and measures its ingest into an empty datastore.
+     */
+    public static Result run(int loincRows, long seed, File tinkarData) throws IOException {
+        SyntheticLoincData data = new SyntheticLoincData(loincRows, seed);
+        Path inputs = Files.createTempDirectory("loinc-ingest-input");
+        Path starterCsv = inputs.resolve("LOINC_Starter_Data.csv");
+        Path partCsv = inputs.resolve("Part.csv");
+        Path loincCsv = inputs.resolve("Loinc.csv");
+        SyntheticLoincData.writeStarterDataCsv(starterCsv);
+        data.writePartCsv(partCsv);
+        data.writeLoincCsv(loincCsv);
+
+        File dataStore = BenchmarkDataStore.start("ingest-" + loincRows);
+        try {
+            EntityCountSummary count = new LoadEntitiesFromProtobufFile(tinkarData).compute();
+            LOG.info(count + " entities loaded from " + tinkarData);
+
+            LoincStarterData ingest = new LoincStarterData(starterCsv.toFile(), partCsv.toFile(), true);
+            ingest.setDataStore(dataStore);
+            ingest.setLoincConceptFile(loincCsv.toFile());
+
+            List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .toList();
+            System.gc();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+            long gcMillisBefore = gcMillis();
+            long gcCountBefore = gcCount();
+            long start = System.nanoTime();
+
+            ingest.processLoincStarterDataCSVFile();
+
+            long wallNanos = System.nanoTime() - start;
+            long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+            return new Result(loincRows, data.partRows(), wallNanos / 1_000_000, peakHeap,
+                    gcMillis() - gcMillisBefore, gcCount() - gcCountBefore,
+                    loincRows / (wallNanos / 1_000_000_000.0));
+        } finally {
+            BenchmarkDataStore.stop(dataStore);
+            FileUtil.recursiveDelete(inputs.toFile());
+        }
+    }
+
+    /**
+     * Logs the change of every result against the baseline of the same size.
+     *
+     * @return the number of sizes whose wall time grew by more than the tolerance
+     */
+    static int compare(List<Result> baseline, List<Result> results, double tolerance) {
+        int regressions = 0;
+        for (Result result : results) {
+            Result base = baseline.stream()
+                    .filter(candidate -> candidate.loincRows() == result.loincRows())
+                    .findFirst()
+                    .orElse(null);
+            if (base == null) {
+                LOG.info(result.loincRows() + " rows: no baseline");
+                continue;
+            }
+            double wallChange = change(base.wallMillis(), result.wallMillis());
+            String summary = String.format(Locale.ROOT,
+                    "%d rows: wall %d ms (%+.1f%%), peak heap %d MB (%+.1f%%), gc %d ms (%+.1f%%)",
+                    result.loincRows(), result.wallMillis(), wallChange * 100,
+                    result.peakHeapBytes() >> 20, change(base.peakHeapBytes(), result.peakHeapBytes()) * 100,
+                    result.gcMillis(), change(base.gcMillis(), result.gcMillis()) * 100);
+            if (wallChange > tolerance) {
+                regressions++;
+                LOG.warn(summary + " exceeds the tolerance of " + Math.round(tolerance * 100) + "%");
+            } else {
+                LOG.info(summary);
+            }
+        }
+        return regressions;
+    }
+
+    static List<Result> read(Path file) throws IOException {
+        List<Result> results = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.contains("\"loincRows\"")) {
+                results.add(Result.fromJson(line));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Writes one result per line, so baselines diff and merge line by line.
+     */
+    static void write(Path file, List<Result> results) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"java\": \"").append(System.getProperty("java.vm.name")).append(' ')
+                .append(System.getProperty("java.version")).append("\",\n");
+        json.append("  \"os\": \"").append(System.getProperty("os.name")).append(' ')
+                .append(System.getProperty("os.version")).append(' ').append(System.getProperty("os.arch"))
+                .append("\",\n");
+        json.append("  \"processors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        json.append("  \"maxHeapBytes\": ").append(Runtime.getRuntime().maxMemory()).append(",\n");
+        json.append("  \"results\": [");
+        for (int i = 0; i < results.size(); i++) {
+            json.append(i == 0 ? "\n    " : ",\n    ").append(results.get(i).toJson());
+        }
+        json.append(results.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.writeString(file, json, StandardCharsets.UTF_8);
+    }
+
+    private static double change(long baseline, long current) {
+        return baseline == 0 ? 0 : (current - baseline) / (double) baseline;
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .filter(time -> time > 0)
+                .sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .filter(count -> count > 0)
+                .sum();
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(args[i - 1] + " needs a value");
+        }
+        return args[i];
+    }
+}
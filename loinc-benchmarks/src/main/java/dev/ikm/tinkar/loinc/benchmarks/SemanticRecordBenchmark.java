@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.benchmarks;
+
+import dev.ikm.tinkar.entity.RecordListBuilder;
+import dev.ikm.tinkar.entity.SemanticEntity;
+import dev.ikm.tinkar.entity.SemanticEntityVersion;
+import dev.ikm.tinkar.entity.SemanticRecord;
+import dev.ikm.tinkar.entity.SemanticRecordBuilder;
+import dev.ikm.tinkar.entity.SemanticVersionRecord;
+import dev.ikm.tinkar.entity.SemanticVersionRecordBuilder;
+import dev.ikm.tinkar.loinc.starterdata.IngestMetrics;
+import dev.ikm.tinkar.loinc.starterdata.LoincSemanticWriter;
+import org.eclipse.collections.api.factory.Lists;
+import org.eclipse.collections.api.list.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building single version semantic records: the former build, add version and rebuild sequence against the single
+ * build of {@link LoincSemanticWriter}. Nothing is written, so no datastore is needed. Scores are per semantic.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SemanticRecordBenchmark {
+
+    private static final int SEMANTICS = 10_000;
+    private static final int PATTERN_NID = -2_000_000;
+    private static final int STAMP_NID = -2_000_001;
+
+    private final IngestMetrics metrics = new IngestMetrics();
+    private UUID[] uuids;
+    private ImmutableList<Object>[] fieldValues;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        uuids = new UUID[SEMANTICS];
+        fieldValues = new ImmutableList[SEMANTICS];
+        for (int i = 0; i < SEMANTICS; i++) {
+            String loincNumber = SyntheticLoincData.loincNumber(i);
+            uuids[i] = UUID.nameUUIDFromBytes(("semantic " + loincNumber).getBytes());
+            fieldValues[i] = Lists.immutable.of(loincNumber, "Analyte " + i + " [Mass/volume] in Serum or Plasma");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEMANTICS)
+    public void buildAndRebuild(Blackhole blackhole) {
+        for (int i = 0; i < SEMANTICS; i++) {
+            RecordListBuilder<SemanticVersionRecord> versions = RecordListBuilder.make();
+            SemanticRecord semanticRecord = SemanticRecordBuilder.builder()
+                    .nid(i + 1)
+                    .leastSignificantBits(uuids[i].getLeastSignificantBits())
+                    .mostSignificantBits(uuids[i].getMostSignificantBits())
+                    .additionalUuidLongs(null)
+                    .patternNid(PATTERN_NID)
+                    .referencedComponentNid(-i - 1)
+                    .versions(versions.toImmutable())
+                    .build();
+            versions.add(SemanticVersionRecordBuilder.builder()
+                    .chronology(semanticRecord)
+                    .stampNid(STAMP_NID)
+                    .fieldValues(fieldValues[i])
+                    .build());
+            SemanticEntity<? extends SemanticEntityVersion> semanticEntity = SemanticRecordBuilder
+                    .builder(semanticRecord)
+                    .versions(versions.toImmutable()).build();
+            blackhole.consume(semanticEntity);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEMANTICS)
+    public LoincSemanticWriter buildOnce() {
+        // A batch larger than the invocation, so the records are built and queued but never written.
+        LoincSemanticWriter writer = new LoincSemanticWriter(SEMANTICS + 1, metrics);
+        for (int i = 0; i < SEMANTICS; i++) {
+            writer.add(i + 1, uuids[i], PATTERN_NID, -i - 1, STAMP_NID, fieldValues[i]);
+        }
+        return writer;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.benchmarks;
+
+import dev.ikm.tinkar.loinc.starterdata.LoincSnapshot;
+import dev.ikm.tinkar.loinc.starterdata.MappedCsvReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reading the records of a synthetic Loinc.csv: parsed with {@link MappedCsvReader}, against read from a
+ * {@link LoincSnapshot} of it. The snapshot is opened in every invocation, so its strings are decoded every time.
+ * Scores are per file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotReadBenchmark {
+
+    @Param({"100000"})
+    private int rows;
+
+    private Path directory;
+    private Path loincCsv;
+    private Path snapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("loinc-snapshot");
+        SyntheticLoincData data = new SyntheticLoincData(rows, 42);
+        loincCsv = directory.resolve("Loinc.csv");
+        Path partCsv = directory.resolve("Part.csv");
+        data.writeLoincCsv(loincCsv);
+        data.writePartCsv(partCsv);
+        snapshot = directory.resolve("loinc.snapshot");
+        LoincSnapshot.convert(loincCsv.toFile(), partCsv.toFile(), snapshot.toFile());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<String[]> mappedCsv() throws IOException {
+        return MappedCsvReader.read(loincCsv);
+    }
+
+    @Benchmark
+    public List<String[]> snapshot() throws IOException {
+        return LoincSnapshot.open(snapshot).table(LoincSnapshot.LOINC_TABLE).records();
+    }
+}
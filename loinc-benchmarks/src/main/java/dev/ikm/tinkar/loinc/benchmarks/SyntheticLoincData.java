@@ -0,0 +1,271 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates Loinc.csv, Part.csv and LOINC_Starter_Data.csv files shaped like a LOINC release.
+ * <p>
+ * Rows are derived from the seed and the row number only, so the same seed always yields the same files. Axis values
+ * are drawn with a skew similar to LOINC, where a few systems, properties, scales and time aspects cover most terms.
+ * About 85% of the terms are active, with the remainder split between deprecated, discouraged and trial. Long common
+ * names contain commas and quotes so the csv quoting rules are exercised.
+ */
+public class SyntheticLoincData {
+
+    public static final String LOINC_HEADER = "\"LOINC_NUM\",\"COMPONENT\",\"PROPERTY\",\"TIME_ASPCT\",\"SYSTEM\","
+            + "\"SCALE_TYP\",\"METHOD_TYP\",\"CLASS\",\"VersionLastChanged\",\"CHNG_TYPE\",\"DefinitionDescription\","
+            + "\"STATUS\",\"CONSUMER_NAME\",\"CLASSTYPE\",\"FORMULA\",\"EXMPL_ANSWERS\",\"SURVEY_QUEST_TEXT\","
+            + "\"SURVEY_QUEST_SRC\",\"UNITSREQUIRED\",\"RELATEDNAMES2\",\"SHORTNAME\",\"ORDER_OBS\","
+            + "\"HL7_FIELD_SUBFIELD_ID\",\"EXTERNAL_COPYRIGHT_NOTICE\",\"EXAMPLE_UNITS\",\"LONG_COMMON_NAME\","
+            + "\"EXAMPLE_UCUM_UNITS\",\"STATUS_REASON\",\"STATUS_TEXT\",\"CHANGE_REASON_PUBLIC\",\"COMMON_TEST_RANK\","
+            + "\"COMMON_ORDER_RANK\",\"HL7_ATTACHMENT_STRUCTURE\",\"EXTERNAL_COPYRIGHT_LINK\",\"PanelType\","
+            + "\"AskAtOrderEntry\",\"AssociatedObservations\",\"VersionFirstReleased\","
+            + "\"ValidHL7AttachmentRequest\",\"DisplayName\"";
+
+    public static final String PART_HEADER =
+            "\"PartNumber\",\"PartTypeName\",\"PartName\",\"PartDisplayName\",\"Status\"";
+
+    private static final int LOINC_COLUMNS = 40;
+
+    private static final String[] PART_TYPES = {"COMPONENT", "PROPERTY", "TIME", "SYSTEM", "SCALE", "METHOD", "CLASS"};
+    private static final String[] STATUSES = {"ACTIVE", "DEPRECATED", "DISCOURAGED", "TRIAL"};
+    private static final int[] STATUS_PERCENT = {85, 7, 6, 2};
+    private static final String[] CHANGE_TYPES = {"ADD", "MIN", "MAJ", "NAM", "DEL"};
+    private static final String[] ORDER_OBS = {"Observation", "Order", "Both", "Subset", ""};
+    private static final String[] UCUM_UNITS = {"mg/dL", "mmol/L", "%", "[IU]/L", "10*3/uL", "g/dL", "s", "mL/min", ""};
+    private static final String[] VERSIONS = {"2.40", "2.56", "2.61", "2.66", "2.70", "2.73", "2.76", "2.77"};
+    private static final String[] CLASS_TYPES = {"1", "2", "3", "4"};
+
+    private final int loincRows;
+    private final long seed;
+    private final int[] partCounts;
+    private final int[] partOffsets;
+    private final int partRows;
+
+    public SyntheticLoincData(int loincRows, long seed) {
+        this.loincRows = loincRows;
+        this.seed = seed;
+        // Components grow with the number of terms, the other axes have a small fixed vocabulary as in LOINC.
+        this.partCounts = new int[]{Math.max(100, loincRows / 3), 120, 40, 300, 7, Math.max(50, loincRows / 50), 90};
+        this.partOffsets = new int[partCounts.length];
+        int offset = 0;
+        for (int type = 0; type < partCounts.length; type++) {
+            partOffsets[type] = offset;
+            offset += partCounts[type];
+        }
+        this.partRows = offset;
+    }
+
+    public int loincRows() {
+        return loincRows;
+    }
+
+    public int partRows() {
+        return partRows;
+    }
+
+    /**
+     * @param row the zero based row number
+     * @return the Loinc.csv line of the row, without line terminator
+     */
+    public String loincLine(int row) {
+        SplittableRandom random = new SplittableRandom(seed * 31 + row);
+        String[] fields = new String[LOINC_COLUMNS];
+        Arrays.fill(fields, "");
+
+        String component = partName(0, skewed(random, partCounts[0]));
+        String property = partName(1, skewed(random, partCounts[1]));
+        String timeAspect = partName(2, skewed(random, partCounts[2]));
+        String system = partName(3, skewed(random, partCounts[3]));
+        String scale = partName(4, skewed(random, partCounts[4]));
+        String method = random.nextInt(100) < 40 ? partName(5, skewed(random, partCounts[5])) : "";
+        String loincClass = partName(6, skewed(random, partCounts[6]));
+        String status = pick(random, STATUSES, STATUS_PERCENT);
+
+        fields[0] = loincNumber(row);
+        fields[1] = component;
+        fields[2] = property;
+        fields[3] = timeAspect;
+        fields[4] = system;
+        fields[5] = scale;
+        fields[6] = method;
+        fields[7] = loincClass;
+        fields[8] = VERSIONS[random.nextInt(VERSIONS.length)];
+        fields[9] = CHANGE_TYPES[random.nextInt(CHANGE_TYPES.length)];
+        fields[11] = status;
+        fields[12] = component + " [" + property + "] in " + system;
+        fields[13] = CLASS_TYPES[random.nextInt(CLASS_TYPES.length)];
+        fields[19] = component + "; " + system + "; " + scale + "; \"quoted\" related name";
+        fields[20] = component + ":" + property + ":" + timeAspect + ":" + system + ":" + scale;
+        fields[21] = ORDER_OBS[random.nextInt(ORDER_OBS.length)];
+        fields[25] = component + " [" + property + "] in " + system
+                + " by " + (method.isEmpty() ? "unspecified method" : method) + ", " + timeAspect;
+        fields[26] = UCUM_UNITS[random.nextInt(UCUM_UNITS.length)];
+        fields[30] = Integer.toString(random.nextInt(20_000));
+        fields[37] = VERSIONS[random.nextInt(VERSIONS.length)];
+        fields[39] = fields[25];
+        return csvLine(fields);
+    }
+
+    /**
+     * @param row the zero based row number
+     * @return the Part.csv line of the row, without line terminator
+     */
+    public String partLine(int row) {
+        int type = partOffsets.length - 1;
+        while (partOffsets[type] > row) {
+            type--;
+        }
+        int index = row - partOffsets[type];
+        String name = partName(type, index);
+        String status = index % 97 == 0 ? "DEPRECATED" : "ACTIVE";
+        return csvLine(new String[]{partNumber(row), PART_TYPES[type], name, name.toLowerCase(), status});
+    }
+
+    public List<String> loincLines() {
+        List<String> lines = new ArrayList<>(loincRows);
+        for (int row = 0; row < loincRows; row++) {
+            lines.add(loincLine(row));
+        }
+        return lines;
+    }
+
+    public List<String> partLines() {
+        List<String> lines = new ArrayList<>(partRows);
+        for (int row = 0; row < partRows; row++) {
+            lines.add(partLine(row));
+        }
+        return lines;
+    }
+
+    public void writeLoincCsv(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeLine(writer, LOINC_HEADER);
+            for (int row = 0; row < loincRows; row++) {
+                writeLine(writer, loincLine(row));
+            }
+        }
+    }
+
+    public void writePartCsv(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeLine(writer, PART_HEADER);
+            for (int row = 0; row < partRows; row++) {
+                writeLine(writer, partLine(row));
+            }
+        }
+    }
+
+    /**
+     * Copies the LOINC_Starter_Data.csv bundled with the starter data module, which the generated parts refer to.
+     */
+    public static void writeStarterDataCsv(Path file) throws IOException {
+        try (InputStream in = SyntheticLoincData.class.getResourceAsStream("/LOINC_Starter_Data.csv")) {
+            if (in == null) {
+                throw new IOException("LOINC_Starter_Data.csv is not on the class path");
+            }
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static String loincNumber(int row) {
+        return withCheckDigit(Integer.toString(10_000 + row));
+    }
+
+    public static String partNumber(int row) {
+        return "LP" + withCheckDigit(Integer.toString(1_000 + row));
+    }
+
+    /**
+     * Appends the Mod 10 check digit LOINC uses.
+     */
+    static String withCheckDigit(String digits) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int digit = digits.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return digits + "-" + (10 - sum % 10) % 10;
+    }
+
+    private static String partName(int type, int index) {
+        return switch (type) {
+            case 0 -> "Analyte " + index + (index % 11 == 0 ? ", free" : "");
+            case 1 -> "Property " + index;
+            case 2 -> "Time " + index;
+            case 3 -> "System " + index;
+            case 4 -> "Scale " + index;
+            case 5 -> "Method " + index;
+            default -> "Class " + index;
+        };
+    }
+
+    /**
+     * Draws an index in {@code [0, count)} where low indexes are far more likely than high ones.
+     */
+    private static int skewed(SplittableRandom random, int count) {
+        double u = random.nextDouble();
+        return Math.min(count - 1, (int) (count * u * u * u));
+    }
+
+    private static String pick(SplittableRandom random, String[] values, int[] percents) {
+        int roll = random.nextInt(100);
+        for (int i = 0; i < values.length; i++) {
+            roll -= percents[i];
+            if (roll < 0) {
+                return values[i];
+            }
+        }
+        return values[0];
+    }
+
+    private static String csvLine(String[] fields) {
+        StringBuilder line = new StringBuilder(256);
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append('"').append(fields[i].replace("\"", "\"\"")).append('"');
+        }
+        return line.toString();
+    }
+
+    private static void writeLine(Writer writer, String line) throws IOException {
+        writer.write(line);
+        writer.write("\r\n");
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.benchmarks;
+
+import dev.ikm.tinkar.loinc.starterdata.CsvTokenizer;
+import dev.ikm.tinkar.loinc.starterdata.LoincColumnStore;
+import dev.ikm.tinkar.loinc.starterdata.LoincRowTable;
+import dev.ikm.tinkar.loinc.starterdata.LoincUuids;
+import dev.ikm.tinkar.loinc.starterdata.TinkarizerUtility;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading all columns into a {@link LoincColumnStore} against the {@link LoincRowTable} the ingest keeps, and
+ * {@link TinkarizerUtility} namespaced and {@link LoincUuids} name based UUIDs
+ * against {@link UUID#nameUUIDFromBytes}. The memo is warm after the first invocation, so {@code loincUuidsMemoized}
+ * shows a repeated lookup and {@code conceptUuidFromBytes} the cost of hashing. Scores are per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TinkarizerUtilityBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private List<String> lines;
+    private List<String> loincNumbers;
+
+    @Setup
+    public void setUp() {
+        lines = new SyntheticLoincData(ROWS, 42).loincLines();
+        loincNumbers = new ArrayList<>(ROWS);
+        for (int row = 0; row < ROWS; row++) {
+            loincNumbers.add(SyntheticLoincData.loincNumber(row));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public LoincRowTable rowTable() {
+        return LoincRowTable.from(lines.stream().map(CsvTokenizer::split).iterator());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public LoincColumnStore columnStore() {
+        LoincColumnStore store = LoincColumnStore.fromHeaderLine(SyntheticLoincData.LOINC_HEADER);
+        for (String line : lines) {
+            store.addLine(line);
+        }
+        return store;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void namespacedUuidForText(Blackhole blackhole) {
+        for (String loincNumber : loincNumbers) {
+            blackhole.consume(TinkarizerUtility.getNamespacedUUIDForText(loincNumber));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void loincUuidsMemoized(Blackhole blackhole) {
+        for (String loincNumber : loincNumbers) {
+            blackhole.consume(LoincUuids.nameUuid(loincNumber));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public UUID[] loincUuidsBulk() {
+        return LoincUuids.nameUuids(loincNumbers);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void conceptUuidFromBytes(Blackhole blackhole) {
+        for (String loincNumber : loincNumbers) {
+            blackhole.consume(UUID.nameUUIDFromBytes(loincNumber.getBytes()));
+        }
+    }
+}
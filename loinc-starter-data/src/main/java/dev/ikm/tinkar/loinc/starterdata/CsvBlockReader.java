@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Cuts a csv file into blocks of whole records, so the blocks can be tokenized on other threads.
+ * <p>
+ * Only quotes and line breaks are looked at: a line break outside of a quoted field ends a record. Lines are counted
+ * from the start of the file, header included, and give every block a stable position for checkpoints.
+ */
+public final class CsvBlockReader implements Closeable {
+
+    /**
+     * @param firstLine the number of line breaks before the block
+     * @param lines     the number of records in the block, blank lines included
+     */
+    public record Block(long firstLine, int lines, String text) {
+
+        public long endLine() {
+            return firstLine + lines;
+        }
+    }
+
+    private final Reader reader;
+    private final char[] buffer = new char[64 * 1024];
+    private int position;
+    private int limit;
+    private boolean quoted;
+    private long line;
+
+    public CsvBlockReader(Path path) throws IOException {
+        this.reader = new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the next block of at most {@code maxLines} records, or {@code null} at the end of the file
+     */
+    public Block next(int maxLines) throws IOException {
+        StringBuilder text = new StringBuilder();
+        int lines = 0;
+        while (lines < maxLines) {
+            if (position == limit) {
+                limit = Math.max(0, reader.read(buffer));
+                position = 0;
+                if (limit == 0) {
+                    if (!text.isEmpty() && text.charAt(text.length() - 1) != '\n') {
+                        lines++; // the last record has no line break
+                    }
+                    break;
+                }
+            }
+            int start = position;
+            while (position < limit && lines < maxLines) {
+                char c = buffer[position++];
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == '\n' && !quoted) {
+                    lines++;
+                }
+            }
+            text.append(buffer, start, position - start);
+        }
+        if (text.isEmpty()) {
+            return null;
+        }
+        Block block = new Block(line, lines, text.toString());
+        line += lines;
+        return block;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
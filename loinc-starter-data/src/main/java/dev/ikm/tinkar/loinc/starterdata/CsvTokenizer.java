@@ -0,0 +1,234 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Single pass RFC-4180 tokenizer for the LOINC release files.
+ * <p>
+ * Quoted fields, escaped quotes ({@code ""}) and line breaks inside quoted fields are handled while the input is
+ * read, so each record is tokenized in time linear to its length and the returned fields are already unquoted.
+ * Blank lines are skipped and a leading byte order mark is dropped.
+ */
+public class CsvTokenizer implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+    private boolean startOfInput = true;
+
+    private final StringBuilder field = new StringBuilder(128);
+    private final ArrayList<String> fields = new ArrayList<>();
+
+    public CsvTokenizer(Reader reader) {
+        this(reader, BUFFER_SIZE);
+    }
+
+    public CsvTokenizer(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[Math.max(bufferSize, 16)];
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the unquoted field values of the record, or {@code null} at the end of the input
+     */
+    public String[] next() throws IOException {
+        fields.clear();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean recordStarted = false;
+
+        int c;
+        while ((c = read()) != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    if (peek() == '"') {
+                        position++;
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                recordStarted = true;
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r' && peek() == '\n') {
+                    position++;
+                }
+                if (recordStarted) {
+                    return finishRecord();
+                }
+            } else if (c == '"') {
+                quoted = true;
+                recordStarted = true;
+            } else {
+                field.append((char) c);
+                recordStarted = true;
+            }
+        }
+        return recordStarted ? finishRecord() : null;
+    }
+
+    private String[] finishRecord() {
+        fields.add(field.toString());
+        return fields.toArray(new String[fields.size()]);
+    }
+
+    private int read() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int count;
+        do {
+            count = reader.read(buffer, 0, buffer.length);
+        } while (count == 0);
+        if (count < 0) {
+            return false;
+        }
+        position = 0;
+        limit = count;
+        if (startOfInput) {
+            startOfInput = false;
+            if (buffer[0] == BYTE_ORDER_MARK) {
+                position = 1;
+                return limit > 1 || fill();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Splits a single line that is already held in memory, for callers that are handed one line at a time.
+     *
+     * @param line the csv line
+     * @return the unquoted field values
+     */
+    public static String[] split(CharSequence line) {
+        ArrayList<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder(line.length());
+        boolean quoted = false;
+        int length = line.length();
+        int start = length > 0 && line.charAt(0) == BYTE_ORDER_MARK ? 1 : 0;
+        for (int i = start; i < length; i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < length && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c != '\n' && c != '\r') {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values.toArray(new String[values.size()]);
+    }
+
+    /**
+     * Lazily tokenizes a UTF-8 csv file. The returned stream must be closed to release the file.
+     *
+     * @param path the csv file
+     * @return the records of the file, header included
+     */
+    public static Stream<String[]> records(Path path) throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(
+                new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8));
+        Iterator<String[]> iterator = new Iterator<>() {
+            private String[] nextRecord;
+
+            @Override
+            public boolean hasNext() {
+                if (nextRecord == null) {
+                    try {
+                        nextRecord = tokenizer.next();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return nextRecord != null;
+            }
+
+            @Override
+            public String[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String[] record = nextRecord;
+                nextRecord = null;
+                return record;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                        Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        tokenizer.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * Durable record of how far an ingest into a datastore got, so a failed run can be restarted where it stopped.
+ * <p>
+ * The checkpoint is a properties file next to the datastore holding the current {@link Phase} and the number of its
+ * rows that are committed. It is replaced atomically after every commit and deleted once the ingest completes. A
+ * checkpoint written for different input files is ignored. The staged and the classic ingest record the LOINC
+ * concepts in different phases, so a run can not resume the LOINC concepts of a run in the other mode.
+ */
+public class IngestCheckpoint {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IngestCheckpoint.class.getSimpleName());
+
+    public static final String FILE_NAME = "loinc-ingest.checkpoint";
+
+    private static final String PHASE = "phase";
+    private static final String ROW = "row";
+    private static final String INPUTS = "inputs";
+
+    /**
+     * The phases of an ingest, in the order they run.
+     */
+    public enum Phase {
+        STARTER_CONCEPTS,
+        PART_CONCEPTS,
+        /**
+         * Active and deprecated LOINC concepts composed together by the staged ingest; rows are Loinc.csv lines.
+         */
+        LOINC_CONCEPTS,
+        ACTIVE_LOINC_CONCEPTS,
+        DEPRECATED_LOINC_CONCEPTS,
+        ACTIVE_DEFINITIONS,
+        INACTIVE_DEFINITIONS,
+        COMPLETE
+    }
+
+    private final Path checkpointFile;
+    private final String inputs;
+    private Phase phase = Phase.STARTER_CONCEPTS;
+    private int row = 0;
+
+    private IngestCheckpoint(Path checkpointFile, String inputs) {
+        this.checkpointFile = checkpointFile;
+        this.inputs = inputs;
+    }
+
+    /**
+     * Loads the checkpoint of the datastore, or starts a new one if there is none for these input files.
+     *
+     * @param dataStore the datastore directory, or {@code null} to keep the checkpoint in memory only
+     * @param inputs    the input files of the ingest; missing entries are ignored
+     */
+    public static IngestCheckpoint open(File dataStore, File... inputs) {
+        String inputsKey = Arrays.stream(inputs)
+                .filter(Objects::nonNull)
+                .map(file -> file.getName() + ":" + file.length() + ":" + file.lastModified())
+                .collect(Collectors.joining(","));
+        if (dataStore == null) {
+            return new IngestCheckpoint(null, inputsKey);
+        }
+        IngestCheckpoint checkpoint = new IngestCheckpoint(dataStore.toPath().resolve(FILE_NAME), inputsKey);
+        if (Files.exists(checkpoint.checkpointFile)) {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(checkpoint.checkpointFile)) {
+                properties.load(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (inputsKey.equals(properties.getProperty(INPUTS))) {
+                checkpoint.phase = Phase.valueOf(properties.getProperty(PHASE));
+                checkpoint.row = Integer.parseInt(properties.getProperty(ROW, "0"));
+                LOG.info("Resuming ingest at " + checkpoint.phase + ", row " + checkpoint.row);
+            } else {
+                LOG.warn("Ignoring checkpoint " + checkpoint.checkpointFile + ", it was written for other input files");
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * @return true if the checkpoint is written to disk, false if it is kept in memory only
+     */
+    public boolean isDurable() {
+        return checkpointFile != null;
+    }
+
+    /**
+     * @return true if the phase was completed by an earlier run
+     */
+    public boolean isComplete(Phase phase) {
+        return phase.ordinal() < this.phase.ordinal();
+    }
+
+    /**
+     * @return the number of leading rows of the phase that are already committed
+     */
+    public int resumeRow(Phase phase) {
+        return phase == this.phase ? row : 0;
+    }
+
+    /**
+     * Fails if the checkpoint stopped part way through the LOINC concepts of a run in the other mode: the rows the
+     * staged ingest counts in {@link Phase#LOINC_CONCEPTS} are not the rows the classic ingest counts in
+     * {@link Phase#ACTIVE_LOINC_CONCEPTS} and {@link Phase#DEPRECATED_LOINC_CONCEPTS}, so resuming would compose
+     * the committed concepts again.
+     *
+     * @param staged true for the staged ingest, false for the classic one
+     * @throws IllegalStateException if the checkpoint was written by the other mode
+     */
+    public void checkLoincConceptMode(boolean staged) {
+        boolean inStagedPhase = phase == Phase.LOINC_CONCEPTS && row > 0;
+        boolean inClassicPhase = (phase == Phase.ACTIVE_LOINC_CONCEPTS && row > 0)
+                || phase == Phase.DEPRECATED_LOINC_CONCEPTS;
+        if (staged ? inClassicPhase : inStagedPhase) {
+            throw new IllegalStateException("Checkpoint " + checkpointFile + " at " + phase + ", row " + row
+                    + " was written by the " + (staged ? "classic" : "staged")
+                    + " ingest; resume in the same mode or ingest into a new datastore");
+        }
+    }
+
+    /**
+     * Records that the first {@code row} rows of the phase are committed.
+     */
+    public void commit(Phase phase, int row) {
+        this.phase = phase;
+        this.row = row;
+        save();
+    }
+
+    /**
+     * Records that the phase is completed.
+     */
+    public void complete(Phase phase) {
+        if (phase.ordinal() >= this.phase.ordinal()) {
+            commit(Phase.values()[Math.min(phase.ordinal() + 1, Phase.COMPLETE.ordinal())], 0);
+        }
+    }
+
+    /**
+     * Removes the checkpoint once the whole ingest is committed, so the next run starts from the beginning.
+     */
+    public void finish() {
+        phase = Phase.COMPLETE;
+        row = 0;
+        if (checkpointFile != null) {
+            try {
+                Files.deleteIfExists(checkpointFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void save() {
+        if (checkpointFile == null) {
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty(PHASE, phase.name());
+        properties.setProperty(ROW, Integer.toString(row));
+        properties.setProperty(INPUTS, inputs);
+        Path tempFile = checkpointFile.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                properties.store(out, "LOINC ingest checkpoint");
+            }
+            Files.move(tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
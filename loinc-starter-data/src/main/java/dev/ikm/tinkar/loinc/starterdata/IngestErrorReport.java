@@ -0,0 +1,214 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the problems an ingest runs into instead of logging each of them.
+ * <p>
+ * Problems are counted by {@link Category}, the first LOINC numbers of each category are kept as a sample for the
+ * summary, and every problem, up to a limit, is kept for the quarantine csv that is written once the ingest ends.
+ * Problems may be reported from several threads.
+ */
+public class IngestErrorReport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IngestErrorReport.class.getSimpleName());
+
+    public static final String QUARANTINE_FILE_NAME = "loinc-ingest-quarantine.csv";
+    public static final int DEFAULT_SAMPLE_SIZE = 10;
+    public static final int DEFAULT_QUARANTINE_LIMIT = 250_000;
+
+    public enum Category {
+        /**
+         * A LOINC row names an axis value that has no part concept.
+         */
+        MISSING_AXIS,
+        /**
+         * The navigation or the semantics of a LOINC concept could not be composed.
+         */
+        CONCEPT_SEMANTICS,
+        /**
+         * The stated definition of a LOINC concept could not be written.
+         */
+        DEFINITION
+    }
+
+    /**
+     * One reported problem.
+     *
+     * @param code   the LOINC number of the offending row
+     * @param detail what went wrong
+     */
+    public record Problem(Category category, String code, String detail) {
+    }
+
+    private final int sampleSize;
+    private final int quarantineLimit;
+    private final IngestMetrics metrics;
+    private final Map<Category, LongAdder> counts = new EnumMap<>(Category.class);
+    private final Map<Category, List<String>> samples = new EnumMap<>(Category.class);
+    private final ConcurrentLinkedQueue<Problem> quarantine = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger quarantined = new AtomicInteger();
+
+    public IngestErrorReport(IngestMetrics metrics) {
+        this(DEFAULT_SAMPLE_SIZE, DEFAULT_QUARANTINE_LIMIT, metrics);
+    }
+
+    /**
+     * @param sampleSize      the number of LOINC numbers kept per category for the summary
+     * @param quarantineLimit the number of problems kept for the quarantine csv; later problems are only counted
+     * @param metrics         receives an {@value IngestMetrics#ERRORS} count per problem
+     */
+    public IngestErrorReport(int sampleSize, int quarantineLimit, IngestMetrics metrics) {
+        if (sampleSize < 0 || quarantineLimit < 0) {
+            throw new IllegalArgumentException("Sample size and quarantine limit must not be negative");
+        }
+        this.sampleSize = sampleSize;
+        this.quarantineLimit = quarantineLimit;
+        this.metrics = metrics;
+        for (Category category : Category.values()) {
+            counts.put(category, new LongAdder());
+            samples.put(category, new ArrayList<>(sampleSize));
+        }
+    }
+
+    public void report(Category category, String code, String detail) {
+        counts.get(category).increment();
+        metrics.increment(IngestMetrics.ERRORS);
+        List<String> sample = samples.get(category);
+        if (sample.size() < sampleSize) {
+            synchronized (sample) {
+                if (sample.size() < sampleSize) {
+                    sample.add(code);
+                }
+            }
+        }
+        if (quarantined.getAndIncrement() < quarantineLimit) {
+            quarantine.add(new Problem(category, code, detail));
+        }
+    }
+
+    public void report(Category category, String code, Throwable cause) {
+        String message = cause.getMessage();
+        report(category, code, message == null
+                ? cause.getClass().getSimpleName()
+                : cause.getClass().getSimpleName() + ": " + message);
+    }
+
+    public long count(Category category) {
+        return counts.get(category).sum();
+    }
+
+    public long total() {
+        long total = 0;
+        for (LongAdder count : counts.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * @return the first LOINC numbers reported for the category
+     */
+    public List<String> sample(Category category) {
+        List<String> sample = samples.get(category);
+        synchronized (sample) {
+            return List.copyOf(sample);
+        }
+    }
+
+    /**
+     * @return the problems kept for the quarantine csv, in the order they were reported
+     */
+    public List<Problem> quarantined() {
+        return List.copyOf(quarantine);
+    }
+
+    /**
+     * @return one line per category that had problems, with its count and sample, for the log
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder(String.format(Locale.ROOT, "Ingest problems: %d", total()));
+        for (Category category : Category.values()) {
+            long count = count(category);
+            if (count > 0) {
+                summary.append(String.format(Locale.ROOT, "%n  %-20s %10d e.g. %s", category, count,
+                        String.join(", ", sample(category))));
+            }
+        }
+        int dropped = quarantined.get() - quarantineLimit;
+        if (dropped > 0) {
+            summary.append(String.format(Locale.ROOT, "%n  %d problems were counted but not quarantined", dropped));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Writes the quarantined problems to {@value #QUARANTINE_FILE_NAME} in the directory, replacing it atomically.
+     * Without problems a quarantine file of an earlier run is removed.
+     */
+    public void writeQuarantine(File directory) {
+        Path file = directory.toPath().resolve(QUARANTINE_FILE_NAME);
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (quarantine.isEmpty()) {
+                Files.deleteIfExists(file);
+                return;
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                writer.write("CATEGORY,LOINC_NUM,DETAIL\r\n");
+                for (Problem problem : quarantine) {
+                    writer.write(problem.category().name());
+                    writer.write(',');
+                    writer.write(field(problem.code()));
+                    writer.write(',');
+                    writer.write(field(problem.detail()));
+                    writer.write("\r\n");
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LOG.info("Quarantined " + quarantine.size() + " problems in " + file);
+    }
+
+    private static String field(String value) {
+        if (value == null) {
+            return "";
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
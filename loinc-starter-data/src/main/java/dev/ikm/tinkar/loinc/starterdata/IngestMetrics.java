@@ -0,0 +1,286 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timers, counters and gauges of an ingest, written as a Prometheus text file and a JSON summary.
+ * <p>
+ * Timers add up the time spent in each phase of the ingest, counters count what was read and written, and gauges
+ * keep the last and the highest value they were set to. Metrics are created on first use and are safe to update
+ * from several threads. The files are meant for a node exporter text file collector and for the scheduler that
+ * runs the ingest; both are replaced atomically.
+ */
+public class IngestMetrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IngestMetrics.class.getSimpleName());
+
+    public static final String PROMETHEUS_FILE_NAME = "loinc-ingest-metrics.prom";
+    public static final String JSON_FILE_NAME = "loinc-ingest-metrics.json";
+
+    private static final String PREFIX = "loinc_ingest_";
+
+    // Timers
+    public static final String PARSE = "parse";
+    public static final String COMPOSE = "compose";
+    public static final String COMMIT = "commit";
+    public static final String STARTER_DATA_BUILD = "starter_data_build";
+    public static final String DEFINE = "define";
+    public static final String DEFINITION_WRITE = "definition_write";
+    public static final String SEMANTIC_WRITE = "semantic_write";
+    public static final String EXPORT = "export";
+
+    // Counters
+    public static final String ROWS_READ = "rows_read";
+    public static final String ROWS_SKIPPED = "rows_skipped";
+    public static final String CONCEPTS = "concepts";
+    public static final String SEMANTICS = "semantics";
+    public static final String DEFINITIONS = "definitions";
+    public static final String DEFINITIONS_UNCHANGED = "definitions_unchanged";
+    public static final String MISSING_AXES = "missing_axes";
+    public static final String EXPORTED_ENTITIES = "exported_entities";
+    public static final String EXPORTED_BYTES = "exported_bytes";
+    public static final String ERRORS = "errors";
+
+    // Gauges
+    public static final String SEMANTIC_QUEUE_DEPTH = "semantic_queue_depth";
+    public static final String DEFINITION_QUEUE_DEPTH = "definition_queue_depth";
+    public static final String HEAP_USED_BYTES = "heap_used_bytes";
+    public static final String SUCCESS = "success";
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Total, count and longest of the runs of one phase.
+     */
+    public static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        public void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long totalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long maxNanos() {
+            return maxNanos.get();
+        }
+    }
+
+    /**
+     * Last and highest value of a sampled quantity.
+     */
+    public static final class Gauge {
+        private final AtomicLong value = new AtomicLong();
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        public void set(long value) {
+            this.value.set(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        public long value() {
+            return value.get();
+        }
+
+        public long max() {
+            long max = this.max.get();
+            return max == Long.MIN_VALUE ? 0 : max;
+        }
+    }
+
+    /**
+     * A running measurement of a timer, recorded when it is closed.
+     */
+    public final class Timing implements AutoCloseable {
+        private final Timer timer;
+        private final long start = System.nanoTime();
+
+        private Timing(Timer timer) {
+            this.timer = timer;
+        }
+
+        @Override
+        public void close() {
+            timer.record(System.nanoTime() - start);
+            sampleHeap();
+        }
+    }
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, key -> new Timer());
+    }
+
+    /**
+     * Starts timing a run of the named phase; use in a try-with-resources block. The heap is sampled when it ends.
+     */
+    public Timing start(String timerName) {
+        return new Timing(timer(timerName));
+    }
+
+    public void increment(String counterName) {
+        add(counterName, 1);
+    }
+
+    public void add(String counterName, long amount) {
+        counters.computeIfAbsent(counterName, key -> new LongAdder()).add(amount);
+    }
+
+    public long count(String counterName) {
+        LongAdder counter = counters.get(counterName);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public Gauge gauge(String name) {
+        return gauges.computeIfAbsent(name, key -> new Gauge());
+    }
+
+    public void sampleHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        gauge(HEAP_USED_BYTES).set(runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    /**
+     * Writes {@value #PROMETHEUS_FILE_NAME} and {@value #JSON_FILE_NAME} to the directory.
+     */
+    public void write(File directory) {
+        write(directory.toPath().resolve(PROMETHEUS_FILE_NAME), toPrometheusText());
+        write(directory.toPath().resolve(JSON_FILE_NAME), toJson());
+        LOG.info("Wrote ingest metrics to " + directory);
+    }
+
+    /**
+     * @return the metrics in the Prometheus text exposition format
+     */
+    public String toPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        Map<String, Timer> sortedTimers = new TreeMap<>(timers);
+        text.append("# HELP ").append(PREFIX).append("phase_seconds Time spent in each phase of the ingest.\n");
+        text.append("# TYPE ").append(PREFIX).append("phase_seconds summary\n");
+        sortedTimers.forEach((phase, timer) -> {
+            sample(text, "phase_seconds_sum{phase=\"" + phase + "\"}", seconds(timer.totalNanos()));
+            sample(text, "phase_seconds_count{phase=\"" + phase + "\"}", Long.toString(timer.count()));
+        });
+        text.append("# HELP ").append(PREFIX).append("phase_max_seconds Longest single run of each phase.\n");
+        text.append("# TYPE ").append(PREFIX).append("phase_max_seconds gauge\n");
+        sortedTimers.forEach((phase, timer) ->
+                sample(text, "phase_max_seconds{phase=\"" + phase + "\"}", seconds(timer.maxNanos())));
+
+        new TreeMap<>(counters).forEach((name, counter) -> {
+            text.append("# TYPE ").append(PREFIX).append(name).append("_total counter\n");
+            sample(text, name + "_total", Long.toString(counter.sum()));
+        });
+        new TreeMap<>(gauges).forEach((name, gauge) -> {
+            text.append("# TYPE ").append(PREFIX).append(name).append(" gauge\n");
+            sample(text, name, Long.toString(gauge.value()));
+            text.append("# TYPE ").append(PREFIX).append(name).append("_max gauge\n");
+            sample(text, name + "_max", Long.toString(gauge.max()));
+        });
+        return text.toString();
+    }
+
+    /**
+     * @return the metrics as a JSON object of timers, counters and gauges
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"timers\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Timer> entry : new TreeMap<>(timers).entrySet()) {
+            Timer timer = entry.getValue();
+            json.append(separator).append("    \"").append(entry.getKey()).append("\": {\"count\": ")
+                    .append(timer.count()).append(", \"seconds\": ").append(seconds(timer.totalNanos()))
+                    .append(", \"maxSeconds\": ").append(seconds(timer.maxNanos())).append('}');
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"counters\": {");
+        separator = "\n";
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            json.append(separator).append("    \"").append(entry.getKey()).append("\": ")
+                    .append(entry.getValue().sum());
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"gauges\": {");
+        separator = "\n";
+        for (Map.Entry<String, Gauge> entry : new TreeMap<>(gauges).entrySet()) {
+            json.append(separator).append("    \"").append(entry.getKey()).append("\": {\"value\": ")
+                    .append(entry.getValue().value()).append(", \"max\": ").append(entry.getValue().max()).append('}');
+            separator = ",\n";
+        }
+        json.append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * @return one line per timer and the counters, for the log
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder("Ingest metrics:");
+        new TreeMap<>(timers).forEach((phase, timer) -> summary.append(String.format(Locale.ROOT,
+                "%n  %-20s %10.3f s in %d runs", phase, timer.totalNanos() / 1e9, timer.count())));
+        new TreeMap<>(counters).forEach((name, counter) -> summary.append(String.format(Locale.ROOT,
+                "%n  %-20s %10d", name, counter.sum())));
+        summary.append(String.format(Locale.ROOT, "%n  %-20s %10d MB", "peak heap",
+                gauge(HEAP_USED_BYTES).max() >> 20));
+        return summary.toString();
+    }
+
+    private static void sample(StringBuilder text, String name, String value) {
+        text.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+    }
+
+    private static void write(Path file, String content) {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.writeString(tempFile, content, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import dev.ikm.tinkar.entity.graph.adaptor.axiom.LogicalAxiom;
+import dev.ikm.tinkar.entity.graph.adaptor.axiom.LogicalExpression;
+import dev.ikm.tinkar.entity.graph.adaptor.axiom.LogicalExpressionBuilder;
+import dev.ikm.tinkar.terms.EntityProxy;
+import dev.ikm.tinkar.terms.TinkarTerm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the stated definition of a LOINC term directly as a {@link LogicalExpression}.
+ * <p>
+ * The definition is the same one that was written as OWL text and parsed back before: a sufficient set of the
+ * Observable Entity and one role group per axis that has a value, each holding a single role from the axis
+ * attribute to the LOINC part.
+ */
+public class LoincAxiomBuilder {
+
+    /**
+     * Changes whenever {@link #definition} builds a different expression from the same axis values, so the
+     * fingerprints of definitions written before no longer match.
+     */
+    private static final int EXPRESSION_VERSION = 1;
+
+    private final EntityProxy.Concept observableEntity;
+    private final EntityProxy.Concept[] axisAttributes;
+    private int[] attributeNids;
+
+    /**
+     * @param observableEntity the concept every LOINC term is a kind of
+     * @param axisAttributes   the attribute concept of each axis, in {@link LoincStarterData#LOINC_AXES} order
+     */
+    public LoincAxiomBuilder(EntityProxy.Concept observableEntity, EntityProxy.Concept[] axisAttributes) {
+        this.observableEntity = observableEntity;
+        this.axisAttributes = axisAttributes.clone();
+    }
+
+    /**
+     * @param axisValues the part concept of each axis, in {@link LoincStarterData#LOINC_AXES} order, {@code null}
+     *                   where the term has no value for the axis
+     * @return the stated definition
+     */
+    public LogicalExpression definition(EntityProxy.Concept[] axisValues) {
+        if (axisValues.length != axisAttributes.length) {
+            throw new IllegalArgumentException("Expected " + axisAttributes.length + " axis values, was " + axisValues.length);
+        }
+        LogicalExpressionBuilder builder = new LogicalExpressionBuilder();
+
+        List<LogicalAxiom.Atom> atoms = new ArrayList<>(axisValues.length + 1);
+        atoms.add(builder.ConceptAxiom(observableEntity));
+        for (int i = 0; i < axisValues.length; i++) {
+            if (axisValues[i] != null) {
+                atoms.add(builder.SomeRole(TinkarTerm.ROLE_GROUP,
+                        builder.And(builder.SomeRole(axisAttributes[i], builder.ConceptAxiom(axisValues[i])))));
+            }
+        }
+        builder.SufficientSet(builder.And(atoms.toArray(new LogicalAxiom.Atom[atoms.size()])));
+        return builder.build();
+    }
+
+    /**
+     * @param axisValueNids the nid of the part concept of each axis, in {@link LoincStarterData#LOINC_AXES} order,
+     *                      0 where the term has no value for the axis
+     * @return a hash over the concepts the definition of the axis values is built from, for
+     * {@link LoincDefinitionFingerprints}
+     */
+    public long fingerprint(int[] axisValueNids) {
+        if (axisValueNids.length != axisAttributes.length) {
+            throw new IllegalArgumentException("Expected " + axisAttributes.length + " axis values, was "
+                    + axisValueNids.length);
+        }
+        if (attributeNids == null) {
+            // Resolved on first use, once the datastore is running.
+            int[] nids = new int[axisAttributes.length + 1];
+            nids[0] = observableEntity.nid();
+            for (int i = 0; i < axisAttributes.length; i++) {
+                nids[i + 1] = axisAttributes[i].nid();
+            }
+            attributeNids = nids;
+        }
+        long hash = LoincDefinitionFingerprints.mix(EXPRESSION_VERSION, attributeNids[0]);
+        for (int i = 0; i < axisValueNids.length; i++) {
+            hash = LoincDefinitionFingerprints.mix(hash, attributeNids[i + 1]);
+            hash = LoincDefinitionFingerprints.mix(hash, axisValueNids[i]);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * A content-addressed cache of built datastores.
+ * <p>
+ * The key of a datastore is a SHA-256 hash over the content of the files it was built from, the dependency versions
+ * in {@value #VERSIONS_RESOURCE} and the compiled classes of this module, so changing any input, any dependency or the
+ * ingest itself builds a new datastore. A hit copies the cached datastore in place of a full build; a miss is built as
+ * usual and then stored. Entries are stored under a temporary name and renamed once complete, so an interrupted
+ * store leaves no partial entry behind.
+ * <p>
+ * Only the most recently used entries are kept: storing an entry deletes the entries beyond the newest
+ * {@code maxEntries}, where restoring an entry counts as using it. The {@link #defaultDirectory() default directory}
+ * is in the user home, so {@code mvn clean} keeps it and all checkouts share it; content addressing keeps their
+ * entries apart.
+ */
+public class LoincBuildCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoincBuildCache.class.getSimpleName());
+
+    /**
+     * The classpath resource holding the dependency versions, filtered by Maven.
+     */
+    public static final String VERSIONS_RESOURCE = "loinc-build.properties";
+
+    /**
+     * The system property that overrides the {@link #defaultDirectory() default cache directory}.
+     */
+    public static final String DIRECTORY_PROPERTY = "loinc.buildCache";
+
+    /**
+     * The number of datastores kept by default, enough for the current inputs and a few earlier builds.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 3;
+
+    private static final String KEY_FORMAT = "loinc-build-cache-1";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path cacheDirectory;
+    private final int maxEntries;
+
+    public LoincBuildCache(File cacheDirectory) {
+        this(cacheDirectory, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries the number of datastores kept, the least recently used are deleted beyond it
+     */
+    public LoincBuildCache(File cacheDirectory, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The build cache must keep at least 1 entry, was " + maxEntries);
+        }
+        this.cacheDirectory = cacheDirectory.toPath();
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the directory named by {@value #DIRECTORY_PROPERTY}, or {@code .cache/loinc-build-cache} in the user
+     * home
+     */
+    public static File defaultDirectory() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory != null && !directory.isBlank()) {
+            return new File(directory);
+        }
+        return Path.of(System.getProperty("user.home"), ".cache", "loinc-build-cache").toFile();
+    }
+
+    /**
+     * @param inputs the files the datastore is built from, in a fixed order
+     * @return the hex key of a datastore built from the inputs by this build
+     */
+    public String key(List<File> inputs) throws IOException {
+        return key(inputs, List.of());
+    }
+
+    /**
+     * @param inputs   the files the datastore is built from, in a fixed order
+     * @param settings the build settings that change the content of the datastore, such as {@code name=value}
+     * @return the hex key of a datastore built from the inputs with the settings by this build
+     */
+    public String key(List<File> inputs, List<String> settings) throws IOException {
+        MessageDigest digest = sha256();
+        update(digest, KEY_FORMAT);
+        new TreeMap<>(versions()).forEach((name, version) -> update(digest, name + "=" + version));
+        update(digest, "classes");
+        digest.update(classesDigest());
+        for (File input : inputs) {
+            update(digest, input.getName());
+            digest.update(contentDigest(input.toPath()));
+        }
+        update(digest, "settings");
+        settings.forEach(setting -> update(digest, setting));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Replaces the datastore directory with a copy of the cached datastore of the key.
+     *
+     * @return false, leaving the datastore untouched, if nothing is cached for the key
+     */
+    public boolean restore(String key, File dataStore) throws IOException {
+        Path entry = cacheDirectory.resolve(key);
+        if (!Files.isDirectory(entry)) {
+            LOG.info("No cached datastore for " + key);
+            return false;
+        }
+        long start = System.nanoTime();
+        touch(entry);
+        delete(dataStore.toPath());
+        try {
+            copy(entry, dataStore.toPath());
+        } catch (NoSuchFileException e) {
+            delete(dataStore.toPath());
+            LOG.info("The cached datastore " + key + " was evicted by another build while it was restored");
+            return false;
+        }
+        LOG.info("Restored the cached datastore " + key + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return true;
+    }
+
+    /**
+     * Stores a copy of the datastore under the key, then evicts the least recently used entries beyond the maximum.
+     * The datastore must be stopped, so all of it is on disk.
+     */
+    public void store(String key, File dataStore) throws IOException {
+        Path entry = cacheDirectory.resolve(key);
+        if (Files.isDirectory(entry)) {
+            touch(entry);
+            return;
+        }
+        Files.createDirectories(cacheDirectory);
+        Path tempEntry = Files.createTempDirectory(cacheDirectory, key + TEMP_SUFFIX);
+        try {
+            copy(dataStore.toPath(), tempEntry);
+            Files.move(tempEntry, entry, StandardCopyOption.ATOMIC_MOVE);
+            touch(entry);
+            LOG.info("Stored the datastore " + dataStore + " as " + key);
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            LOG.info("The datastore " + key + " was stored by another build");
+        } finally {
+            delete(tempEntry);
+        }
+        evict(key);
+    }
+
+    /**
+     * @return the keys of the cached datastores, most recently used first
+     */
+    public List<String> keys() throws IOException {
+        if (!Files.isDirectory(cacheDirectory)) {
+            return List.of();
+        }
+        try (Stream<Path> entries = Files.list(cacheDirectory)) {
+            return entries.filter(Files::isDirectory)
+                    .filter(entry -> !entry.getFileName().toString().contains(TEMP_SUFFIX))
+                    .sorted(Comparator.comparing(LoincBuildCache::lastUsed).reversed())
+                    .map(entry -> entry.getFileName().toString())
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries beyond the maximum, never the entry of the key just stored.
+     */
+    private void evict(String storedKey) throws IOException {
+        List<String> others = keys().stream().filter(key -> !key.equals(storedKey)).toList();
+        for (String key : others.subList(Math.min(others.size(), maxEntries - 1), others.size())) {
+            try {
+                delete(cacheDirectory.resolve(key));
+                LOG.info("Evicted the cached datastore " + key);
+            } catch (IOException e) {
+                // Another build may be evicting or restoring the same entry.
+                LOG.warn("Unable to evict the cached datastore " + key + ": " + e);
+            }
+        }
+    }
+
+    private static void touch(Path entry) throws IOException {
+        Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+    }
+
+    private static FileTime lastUsed(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the versions in {@value #VERSIONS_RESOURCE}, empty when the resource is missing
+     */
+    public static Properties versions() throws IOException {
+        Properties versions = new Properties();
+        try (InputStream input = LoincBuildCache.class.getResourceAsStream("/" + VERSIONS_RESOURCE)) {
+            if (input == null) {
+                LOG.warn(VERSIONS_RESOURCE + " is not on the classpath, dependency versions are not part of the key");
+            } else {
+                versions.load(input);
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Hashes the class files this class was loaded from, a directory during a build and a jar once packaged.
+     */
+    private static byte[] classesDigest() throws IOException {
+        CodeSource codeSource = LoincBuildCache.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null) {
+            return new byte[0];
+        }
+        Path location;
+        try {
+            location = Path.of(codeSource.getLocation().toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return new byte[0];
+        }
+        if (!Files.isDirectory(location)) {
+            return contentDigest(location);
+        }
+        MessageDigest digest = sha256();
+        try (Stream<Path> files = Files.walk(location)) {
+            for (Path file : files.filter(file -> file.toString().endsWith(".class")).sorted().toList()) {
+                update(digest, location.relativize(file).toString());
+                digest.update(contentDigest(file));
+            }
+        }
+        return digest.digest();
+    }
+
+    private static byte[] contentDigest(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static void update(MessageDigest digest, String text) {
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void copy(Path source, Path target) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            paths.forEach(path -> {
+                Path copy = target.resolve(source.relativize(path).toString());
+                try {
+                    if (Files.isDirectory(path)) {
+                        Files.createDirectories(copy);
+                    } else {
+                        Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
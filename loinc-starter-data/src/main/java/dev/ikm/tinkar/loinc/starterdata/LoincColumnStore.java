@@ -0,0 +1,329 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import org.eclipse.collections.api.factory.primitive.IntObjectMaps;
+import org.eclipse.collections.api.factory.primitive.ObjectIntMaps;
+import org.eclipse.collections.api.map.primitive.MutableIntObjectMap;
+import org.eclipse.collections.api.map.primitive.MutableObjectIntMap;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static dev.ikm.tinkar.loinc.starterdata.LoincConstants.*;
+
+/**
+ * Column oriented, typed store of the rows of a LOINC csv file.
+ * <p>
+ * The header is mapped to column indexes once. Each column is stored according to its {@link ColumnType}: repeated
+ * values such as {@code CLASS}, {@code SYSTEM}, {@code SCALE_TYP} and {@code STATUS} are dictionary encoded, so each
+ * distinct value is held once and every row holds an int code; ranks are held as ints; names and other mostly unique
+ * values are held as plain strings. Missing trailing values read as the empty string.
+ * <p>
+ * A store has no shared state, so several files can be loaded at the same time into separate stores. A single store
+ * is not safe for concurrent loading, but can be read from several threads once it is loaded and published.
+ */
+public class LoincColumnStore {
+
+    public enum ColumnType {
+        /** Each distinct value is stored once and referenced by an int code per row. */
+        DICTIONARY,
+        /** One string per row, for values that are mostly unique. */
+        TEXT,
+        /** One int per row; values that are not plain integers are kept aside as strings. */
+        INTEGER
+    }
+
+    private static final Set<String> TEXT_COLUMNS = Set.of(LOINC_NUM, LONG_COMMON_NAME, SHORTNAME, DISPLAY_NAME,
+            CONSUMER_NAME, RELATEDNAMES2, DEFINITION_DESCRIPTION, FORMULA, EXMPL_ANSWERS, SURVEY_QUEST_TEXT,
+            STATUS_TEXT, CHANGE_REASON_PUBLIC, ASSOCIATED_OBSERVATIONS, EXTERNAL_COPYRIGHT_NOTICE,
+            "PartNumber", "PartName", "PartDisplayName");
+    private static final Set<String> INTEGER_COLUMNS = Set.of(COMMON_TEST_RANK, COMMON_ORDER_RANK);
+
+    private final String[] columnNames;
+    private final MutableObjectIntMap<String> columnIndexes = ObjectIntMaps.mutable.empty();
+    private final Column[] columns;
+    private int rowCount = 0;
+
+    /**
+     * Creates an empty store, typing the columns by name: the known free text and identifier columns of Loinc.csv
+     * and Part.csv as {@link ColumnType#TEXT}, the rank columns as {@link ColumnType#INTEGER} and all others as
+     * {@link ColumnType#DICTIONARY}.
+     */
+    public LoincColumnStore(String[] header) {
+        this(header, LoincColumnStore::defaultType);
+    }
+
+    public LoincColumnStore(String[] header, Function<String, ColumnType> columnTypes) {
+        this.columnNames = new String[header.length];
+        this.columns = new Column[header.length];
+        for (int i = 0; i < header.length; i++) {
+            // There is BOM data in the csv files which needs to be removed from the first header.
+            String name = header[i].replace("\uFEFF", "").trim();
+            columnNames[i] = name;
+            if (!columnIndexes.containsKey(name)) {
+                columnIndexes.put(name, i);
+            }
+            columns[i] = switch (columnTypes.apply(name)) {
+                case DICTIONARY -> new DictionaryColumn();
+                case TEXT -> new TextColumn();
+                case INTEGER -> new IntegerColumn();
+            };
+        }
+    }
+
+    /**
+     * Creates an empty store for the header line of a csv file.
+     */
+    public static LoincColumnStore fromHeaderLine(String headerLine) {
+        return new LoincColumnStore(CsvTokenizer.split(headerLine));
+    }
+
+    /**
+     * Reads a csv file, header and rows, in a single pass.
+     */
+    public static LoincColumnStore read(Path csvFile) throws IOException {
+        try (Stream<String[]> records = CsvTokenizer.records(csvFile)) {
+            LoincColumnStore store = null;
+            for (String[] record : (Iterable<String[]>) records::iterator) {
+                if (store == null) {
+                    store = new LoincColumnStore(record);
+                } else {
+                    store.addRow(record);
+                }
+            }
+            return store != null ? store : new LoincColumnStore(new String[0]);
+        }
+    }
+
+    public static ColumnType defaultType(String columnName) {
+        if (TEXT_COLUMNS.contains(columnName)) {
+            return ColumnType.TEXT;
+        }
+        return INTEGER_COLUMNS.contains(columnName) ? ColumnType.INTEGER : ColumnType.DICTIONARY;
+    }
+
+    public void addLine(String line) {
+        addRow(CsvTokenizer.split(line));
+    }
+
+    /**
+     * Adds a row of values in header order. Missing trailing values are stored as empty, extra values are ignored.
+     */
+    public void addRow(String[] values) {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].add(i < values.length ? values[i] : "", rowCount);
+        }
+        rowCount++;
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public int columnCount() {
+        return columns.length;
+    }
+
+    public List<String> columnNames() {
+        return Collections.unmodifiableList(Arrays.asList(columnNames));
+    }
+
+    /**
+     * @return the index of the column, or -1 if the file has no such column
+     */
+    public int columnIndex(String columnName) {
+        return columnIndexes.getIfAbsent(columnName, -1);
+    }
+
+    public ColumnType columnType(int column) {
+        return columns[column].type();
+    }
+
+    public String get(int row, int column) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rowCount);
+        }
+        return columns[column].get(row);
+    }
+
+    public String get(int row, String columnName) {
+        int column = columnIndex(columnName);
+        if (column < 0) {
+            throw new IllegalArgumentException("No column " + columnName);
+        }
+        return get(row, column);
+    }
+
+    /**
+     * @return the number of distinct values of a {@link ColumnType#DICTIONARY} column, or -1 for other columns
+     */
+    public int distinctValues(int column) {
+        return columns[column] instanceof DictionaryColumn dictionary ? dictionary.values.size() : -1;
+    }
+
+    /**
+     * @return a read only view of the values of a column
+     */
+    public List<String> column(int column) {
+        return new AbstractList<>() {
+            @Override
+            public String get(int row) {
+                return LoincColumnStore.this.get(row, column);
+            }
+
+            @Override
+            public int size() {
+                return rowCount;
+            }
+        };
+    }
+
+    /**
+     * @return read only views of all columns, keyed by column name in header order
+     */
+    public Map<String, List<String>> asMap() {
+        Map<String, List<String>> map = new LinkedHashMap<>();
+        for (int i = 0; i < columns.length; i++) {
+            map.putIfAbsent(columnNames[i], column(i));
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    private abstract static class Column {
+        abstract ColumnType type();
+
+        abstract void add(String value, int row);
+
+        abstract String get(int row);
+    }
+
+    private static final class DictionaryColumn extends Column {
+        private final MutableObjectIntMap<String> codes = ObjectIntMaps.mutable.empty();
+        private final List<String> values = new ArrayList<>();
+        private int[] rows = new int[1024];
+
+        @Override
+        ColumnType type() {
+            return ColumnType.DICTIONARY;
+        }
+
+        @Override
+        void add(String value, int row) {
+            int code = codes.getIfAbsent(value, -1);
+            if (code < 0) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            if (row == rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            rows[row] = code;
+        }
+
+        @Override
+        String get(int row) {
+            return values.get(rows[row]);
+        }
+    }
+
+    private static final class TextColumn extends Column {
+        private String[] rows = new String[1024];
+
+        @Override
+        ColumnType type() {
+            return ColumnType.TEXT;
+        }
+
+        @Override
+        void add(String value, int row) {
+            if (row == rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            rows[row] = value;
+        }
+
+        @Override
+        String get(int row) {
+            return rows[row];
+        }
+    }
+
+    private static final class IntegerColumn extends Column {
+        private static final int EMPTY = Integer.MIN_VALUE;
+        private static final int OTHER = Integer.MIN_VALUE + 1;
+
+        private final MutableIntObjectMap<String> others = IntObjectMaps.mutable.empty();
+        private int[] rows = new int[1024];
+
+        @Override
+        ColumnType type() {
+            return ColumnType.INTEGER;
+        }
+
+        @Override
+        void add(String value, int row) {
+            if (row == rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            rows[row] = encode(value);
+            if (rows[row] == OTHER) {
+                others.put(row, value);
+            }
+        }
+
+        @Override
+        String get(int row) {
+            int value = rows[row];
+            if (value == EMPTY) {
+                return "";
+            }
+            return value == OTHER ? others.get(row) : Integer.toString(value);
+        }
+
+        /**
+         * Only values that read back unchanged, without signs, leading zeros or spaces, are stored as ints.
+         */
+        private static int encode(String value) {
+            if (value.isEmpty()) {
+                return EMPTY;
+            }
+            if (value.length() > 9 || (value.charAt(0) == '0' && value.length() > 1)) {
+                return OTHER;
+            }
+            int number = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return OTHER;
+                }
+                number = number * 10 + (c - '0');
+            }
+            return number;
+        }
+    }
+}
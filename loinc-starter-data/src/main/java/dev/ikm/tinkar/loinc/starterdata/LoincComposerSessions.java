@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import dev.ikm.tinkar.composer.Composer;
+import dev.ikm.tinkar.composer.Session;
+import dev.ikm.tinkar.terms.EntityProxy;
+import dev.ikm.tinkar.terms.State;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Opens, commits and cancels the sessions of a {@link Composer} one at a time. The ingest opens sessions on builder
+ * threads while earlier ones are committed on the writer or a virtual thread, and the Composer does not guard its
+ * sessions against that. A lock rather than {@code synchronized}, so a commit on a virtual thread that blocks while
+ * holding it does not pin its carrier.
+ */
+public class LoincComposerSessions {
+
+    private final Composer composer;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public LoincComposerSessions(Composer composer) {
+        this.composer = composer;
+    }
+
+    public Session open(State state, long time, EntityProxy.Concept author, EntityProxy.Concept module,
+                        EntityProxy.Concept path) {
+        lock.lock();
+        try {
+            return composer.open(state, time, author, module, path);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void commit(Session session) {
+        lock.lock();
+        try {
+            composer.commitSession(session);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void cancel(Session session) {
+        lock.lock();
+        try {
+            composer.cancelSession(session);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import dev.ikm.tinkar.common.service.PrimitiveData;
+import dev.ikm.tinkar.terms.EntityProxy;
+import org.eclipse.collections.api.factory.primitive.IntIntMaps;
+import org.eclipse.collections.api.factory.primitive.ObjectIntMaps;
+import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
+import org.eclipse.collections.api.map.primitive.MutableObjectIntMap;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Index from LOINC numbers, LOINC part numbers and starter concept names to the concepts created for them.
+ * <p>
+ * LOINC numbers ({@code NNNNN-C}) and part numbers ({@code LPNNNNN-C}) are encoded as int keys, every other key is
+ * held in a string keyed map. The concepts themselves are kept in parallel primitive arrays of UUID bits, nids and
+ * names, where the name of a LOINC number concept is not stored because it is the LOINC number itself. Proxies are
+ * only created when {@link #get(String)} or {@link #concept(int)} is called; loops over many rows look a key up once
+ * with {@link #slot(String)} and read the nid of the slot with {@link #nid(int)}.
+ * <p>
+ * The index is not thread safe: it is filled and read by the thread running the import, and {@link #nid(int)}
+ * caches the nid of a slot without synchronization the first time it is read.
+ */
+public class LoincConceptIndex {
+
+    private static final int ABSENT = -1;
+    private static final int NO_CODE = -1;
+    private static final String PART_PREFIX = "LP";
+
+    private final MutableIntIntMap loincNumberSlots = IntIntMaps.mutable.empty();
+    private final MutableIntIntMap partNumberSlots = IntIntMaps.mutable.empty();
+    private final MutableObjectIntMap<String> nameSlots = ObjectIntMaps.mutable.empty();
+
+    private long[] mostSignificantBits;
+    private long[] leastSignificantBits;
+    private int[] nids;
+    private int[] loincCodes;
+    private String[] names;
+    private int size = 0;
+
+    public LoincConceptIndex() {
+        this(1024);
+    }
+
+    public LoincConceptIndex(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        mostSignificantBits = new long[capacity];
+        leastSignificantBits = new long[capacity];
+        nids = new int[capacity];
+        loincCodes = new int[capacity];
+        names = new String[capacity];
+    }
+
+    /**
+     * Adds a concept. A concept previously added under the same key is replaced in its slot, so the aliases of the
+     * replaced concept resolve to the new one and {@link #size()} does not change.
+     *
+     * @param key  the LOINC number, part number or name the concept is looked up by
+     * @param name the name of the concept proxy
+     * @param uuid the UUID of the concept
+     * @return the slot of the concept, for {@link #alias(String, int)}
+     */
+    public int add(String key, String name, UUID uuid) {
+        int slot = slot(key);
+        if (slot == ABSENT) {
+            slot = size++;
+            ensureCapacity(size);
+            alias(key, slot);
+        }
+        mostSignificantBits[slot] = uuid.getMostSignificantBits();
+        leastSignificantBits[slot] = uuid.getLeastSignificantBits();
+        nids[slot] = 0;
+        int loincCode = encode(key, 0);
+        if (loincCode != NO_CODE && key.equals(name)) {
+            loincCodes[slot] = loincCode;
+            names[slot] = null;
+        } else {
+            loincCodes[slot] = NO_CODE;
+            names[slot] = name;
+        }
+        return slot;
+    }
+
+    public int add(String key, EntityProxy.Concept concept) {
+        return add(key, concept.description(), concept.publicId().asUuidArray()[0]);
+    }
+
+    /**
+     * Makes the concept in the given slot reachable under a second key.
+     */
+    public void alias(String key, int slot) {
+        checkSlot(slot);
+        int loincCode = encode(key, 0);
+        if (loincCode != NO_CODE) {
+            loincNumberSlots.put(loincCode, slot);
+            return;
+        }
+        int partCode = key.startsWith(PART_PREFIX) ? encode(key, PART_PREFIX.length()) : NO_CODE;
+        if (partCode != NO_CODE) {
+            partNumberSlots.put(partCode, slot);
+        } else {
+            nameSlots.put(key, slot);
+        }
+    }
+
+    /**
+     * @return the slot of the concept added under the key, or -1 if there is none
+     */
+    public int slot(String key) {
+        if (key == null) {
+            return ABSENT;
+        }
+        int loincCode = encode(key, 0);
+        if (loincCode != NO_CODE) {
+            return loincNumberSlots.getIfAbsent(loincCode, ABSENT);
+        }
+        int partCode = key.startsWith(PART_PREFIX) ? encode(key, PART_PREFIX.length()) : NO_CODE;
+        if (partCode != NO_CODE) {
+            return partNumberSlots.getIfAbsent(partCode, ABSENT);
+        }
+        return nameSlots.getIfAbsent(key, ABSENT);
+    }
+
+    public boolean contains(String key) {
+        return slot(key) != ABSENT;
+    }
+
+    /**
+     * @return a proxy for the concept added under the key, or {@code null} if there is none
+     */
+    public EntityProxy.Concept get(String key) {
+        int slot = slot(key);
+        return slot == ABSENT ? null : concept(slot);
+    }
+
+    /**
+     * @return a proxy for the concept in the slot
+     */
+    public EntityProxy.Concept concept(int slot) {
+        checkSlot(slot);
+        String name = loincCodes[slot] == NO_CODE ? names[slot] : decode(loincCodes[slot]);
+        return EntityProxy.Concept.make(name, uuid(slot));
+    }
+
+    /**
+     * @return the nid of the concept added under the key, resolved on first use
+     */
+    public int nid(String key) {
+        int slot = slot(key);
+        if (slot == ABSENT) {
+            throw new IllegalArgumentException("No concept for " + key);
+        }
+        return nid(slot);
+    }
+
+    /**
+     * @return the nid of the concept in the slot, resolved on first use
+     */
+    public int nid(int slot) {
+        checkSlot(slot);
+        if (nids[slot] == 0) {
+            nids[slot] = PrimitiveData.nid(uuid(slot));
+        }
+        return nids[slot];
+    }
+
+    public UUID uuid(int slot) {
+        checkSlot(slot);
+        return new UUID(mostSignificantBits[slot], leastSignificantBits[slot]);
+    }
+
+    /**
+     * @return the number of concepts, not counting aliases
+     */
+    public int size() {
+        return size;
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("No concept in slot " + slot);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mostSignificantBits.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, mostSignificantBits.length * 2);
+        mostSignificantBits = Arrays.copyOf(mostSignificantBits, newCapacity);
+        leastSignificantBits = Arrays.copyOf(leastSignificantBits, newCapacity);
+        nids = Arrays.copyOf(nids, newCapacity);
+        loincCodes = Arrays.copyOf(loincCodes, newCapacity);
+        names = Arrays.copyOf(names, newCapacity);
+    }
+
+    /**
+     * Encodes {@code digits-checkDigit}, starting at {@code start}, as {@code digits * 10 + checkDigit}. Keys with a
+     * leading zero or more than eight digits before the dash can not be decoded back and are not encoded.
+     *
+     * @return the code, or -1 if the key does not have that form
+     */
+    public static int encode(String key, int start) {
+        int length = key.length();
+        int dash = length - 2;
+        if (dash <= start || dash - start > 8 || key.charAt(dash) != '-' || key.charAt(start) == '0') {
+            return NO_CODE;
+        }
+        int code = 0;
+        for (int i = start; i < dash; i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return NO_CODE;
+            }
+            code = code * 10 + (c - '0');
+        }
+        char checkDigit = key.charAt(length - 1);
+        if (checkDigit < '0' || checkDigit > '9') {
+            return NO_CODE;
+        }
+        return code * 10 + (checkDigit - '0');
+    }
+
+    /**
+     * @return the {@code digits-checkDigit} text of a code returned by {@link #encode(String, int)}
+     */
+    public static String decode(int code) {
+        return (code / 10) + "-" + (code % 10);
+    }
+}
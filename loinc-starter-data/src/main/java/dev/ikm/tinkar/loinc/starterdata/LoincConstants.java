@@ -103,6 +103,11 @@ public class LoincConstants {
     public static final String DEFINITION_DESCRIPTION = "DefinitionDescription";
 
     */
+
+    /**
+     * @deprecated the lookahead rescans the remainder of the line at every comma, use {@link CsvTokenizer} instead.
+     */
+    @Deprecated
     public static final String REGEX_LINEDATA = ",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)";
 
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import org.eclipse.collections.api.factory.primitive.IntLongMaps;
+import org.eclipse.collections.api.map.primitive.MutableIntLongMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The fingerprint of the stated definition last written for each LOINC concept of a datastore, used to skip the
+ * definitions that did not change on a later run.
+ * <p>
+ * A fingerprint is a 64-bit hash over the module, path and axis tuple a definition was built from, see
+ * {@link LoincAxiomBuilder#fingerprint}. The fingerprints are stored in binary, keyed by concept nid, in the datastore
+ * directory. The file is removed when it is loaded and written again once the definitions are saved, so a run that
+ * stops halfway leaves no fingerprints of definitions that were never saved.
+ */
+public class LoincDefinitionFingerprints {
+
+    public static final String FILE_NAME = "loinc-definition-fingerprints.bin";
+
+    private static final int MAGIC = 0x4C444650; // "LDFP"
+    private static final int FORMAT_VERSION = 1;
+    private static final long MIX_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final MutableIntLongMap fingerprints = IntLongMaps.mutable.empty();
+
+    /**
+     * Loads the fingerprints of the datastore directory and removes the file; without a file there are none.
+     */
+    public static LoincDefinitionFingerprints load(File dataStore) throws IOException {
+        LoincDefinitionFingerprints loaded = new LoincDefinitionFingerprints();
+        Path file = dataStore.toPath().resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return loaded;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a LOINC definition fingerprint file: " + file);
+            }
+            int size = input.readInt();
+            for (int i = 0; i < size; i++) {
+                loaded.fingerprints.put(input.readInt(), input.readLong());
+            }
+        }
+        Files.delete(file);
+        return loaded;
+    }
+
+    /**
+     * Writes the fingerprints to {@link #FILE_NAME} in the datastore directory, replacing the previous file only once
+     * it is completely written.
+     */
+    public synchronized void write(File dataStore) throws IOException {
+        Path file = dataStore.toPath().resolve(FILE_NAME);
+        Path tempFile = dataStore.toPath().resolve(FILE_NAME + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(fingerprints.size());
+            for (var entry : fingerprints.keyValuesView()) {
+                output.writeInt(entry.getOne());
+                output.writeLong(entry.getTwo());
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return true if the definition of the concept was last written with the given fingerprint
+     */
+    public synchronized boolean matches(int conceptNid, long fingerprint) {
+        return fingerprints.containsKey(conceptNid) && fingerprints.get(conceptNid) == fingerprint;
+    }
+
+    public synchronized void put(int conceptNid, long fingerprint) {
+        fingerprints.put(conceptNid, fingerprint);
+    }
+
+    /**
+     * Forgets the concept, so its definition is compared with the datastore again on the next run.
+     */
+    public synchronized void remove(int conceptNid) {
+        fingerprints.remove(conceptNid);
+    }
+
+    public synchronized int size() {
+        return fingerprints.size();
+    }
+
+    /**
+     * Mixes a value into a fingerprint.
+     */
+    static long mix(long hash, long value) {
+        long mixed = (hash ^ value) * MIX_MULTIPLIER;
+        return mixed ^ (mixed >>> 29);
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import dev.ikm.tinkar.common.id.IntIds;
+import dev.ikm.tinkar.common.service.PrimitiveData;
+import dev.ikm.tinkar.common.util.uuid.UuidT5Generator;
+import dev.ikm.tinkar.coordinate.stamp.StampCoordinateRecord;
+import dev.ikm.tinkar.coordinate.stamp.StampCoordinateRecordBuilder;
+import dev.ikm.tinkar.coordinate.stamp.StampPositionRecord;
+import dev.ikm.tinkar.coordinate.stamp.StampPositionRecordBuilder;
+import dev.ikm.tinkar.coordinate.stamp.StateSet;
+import dev.ikm.tinkar.coordinate.stamp.calculator.Latest;
+import dev.ikm.tinkar.entity.EntityService;
+import dev.ikm.tinkar.entity.RecordListBuilder;
+import dev.ikm.tinkar.entity.SemanticEntityVersion;
+import dev.ikm.tinkar.entity.SemanticRecord;
+import dev.ikm.tinkar.entity.SemanticRecordBuilder;
+import dev.ikm.tinkar.entity.SemanticVersionRecord;
+import dev.ikm.tinkar.entity.SemanticVersionRecordBuilder;
+import dev.ikm.tinkar.entity.StampEntity;
+import dev.ikm.tinkar.entity.graph.DiTreeEntity;
+import dev.ikm.tinkar.entity.graph.adaptor.axiom.LogicalExpression;
+import dev.ikm.tinkar.entity.graph.isomorphic.IsomorphicResults;
+import dev.ikm.tinkar.entity.graph.isomorphic.IsomorphicResultsLeafHash;
+import dev.ikm.tinkar.entity.transaction.Transaction;
+import dev.ikm.tinkar.terms.EntityProxy;
+import dev.ikm.tinkar.terms.State;
+import dev.ikm.tinkar.terms.TinkarTerm;
+import org.eclipse.collections.api.factory.Lists;
+import org.eclipse.collections.api.list.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes the stated definitions of the LOINC concepts in batches.
+ * <p>
+ * Definitions are collected until a batch is full. A batch is written under a single {@link Transaction} and STAMP,
+ * using a stamp coordinate that is built once for the writer, and the transaction is committed once the batch is
+ * written.
+ */
+public class LoincDefinitionWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoincDefinitionWriter.class.getSimpleName());
+
+    public static final int DEFAULT_BATCH_SIZE = 5_000;
+
+    private record PendingDefinition(int conceptNid, String code, boolean fingerprinted, long fingerprint,
+                                     LogicalExpression definition) {
+    }
+
+    private final int destinationPatternNid = TinkarTerm.EL_PLUS_PLUS_STATED_AXIOMS_PATTERN.nid();
+    private final int authorNid;
+    private final int moduleNid;
+    private final int pathNid;
+    private final StampCoordinateRecord stampCoordinate;
+    private final int batchSize;
+    private final IngestMetrics metrics;
+    private final IngestErrorReport errorReport;
+    private final LoincDefinitionFingerprints fingerprints;
+    private final long stampFingerprint;
+    private final IngestMetrics.Gauge queueDepth;
+
+    private final List<PendingDefinition> pending;
+    private int batchCount = 0;
+    private int definitionsWritten = 0;
+
+    /**
+     * @param metrics      receives the write times, the number of definitions written and the depth of the queue
+     * @param errorReport  receives the definitions that could not be written
+     * @param fingerprints the fingerprints of the definitions in the datastore; definitions added with an unchanged
+     *                     fingerprint are not written, and the fingerprint of every written definition is recorded
+     */
+    public LoincDefinitionWriter(EntityProxy.Concept author, EntityProxy.Concept module, EntityProxy.Concept path,
+                                 int batchSize, IngestMetrics metrics, IngestErrorReport errorReport,
+                                 LoincDefinitionFingerprints fingerprints) {
+        this.authorNid = author.nid();
+        this.moduleNid = module.nid();
+        this.pathNid = path.nid();
+        this.batchSize = batchSize;
+        this.metrics = metrics;
+        this.errorReport = errorReport;
+        this.fingerprints = fingerprints;
+        this.stampFingerprint = LoincDefinitionFingerprints.mix(moduleNid, pathNid);
+        this.queueDepth = metrics.gauge(IngestMetrics.DEFINITION_QUEUE_DEPTH);
+        this.pending = new ArrayList<>(batchSize);
+
+        StampPositionRecord stampPositionRecord = StampPositionRecordBuilder.builder().time(Long.MAX_VALUE).pathForPositionNid(pathNid).build();
+        this.stampCoordinate = StampCoordinateRecordBuilder.builder()
+                .allowedStates(StateSet.ACTIVE)
+                .stampPosition(stampPositionRecord)
+                .moduleNids(IntIds.set.of(moduleNid))
+                .build().withStampPositionTime(Long.MAX_VALUE);
+    }
+
+    /**
+     * Queues the stated definition of a concept, writing the batch once it is full.
+     */
+    public void add(int conceptNid, LogicalExpression definition) {
+        add(conceptNid, null, definition);
+    }
+
+    /**
+     * Queues the stated definition of a concept, writing the batch once it is full.
+     *
+     * @param code the LOINC number of the concept, reported in the {@link LoincIngestEvents.Definition} events
+     */
+    public void add(int conceptNid, String code, LogicalExpression definition) {
+        queue(new PendingDefinition(conceptNid, code, false, 0, definition));
+    }
+
+    /**
+     * @return true if the definition of the concept was written with the fingerprint, by this writer or by an earlier
+     * run, and needs neither to be built nor to be added; counted as {@value IngestMetrics#DEFINITIONS_UNCHANGED}
+     */
+    public boolean isUnchanged(int conceptNid, long fingerprint) {
+        if (fingerprints.matches(conceptNid, LoincDefinitionFingerprints.mix(stampFingerprint, fingerprint))) {
+            metrics.increment(IngestMetrics.DEFINITIONS_UNCHANGED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Queues the stated definition of a concept, writing the batch once it is full. The fingerprint is recorded once
+     * the definition is written.
+     *
+     * @param fingerprint the fingerprint of what the definition was built from, see
+     *                    {@link LoincAxiomBuilder#fingerprint}
+     */
+    public void add(int conceptNid, String code, long fingerprint, LogicalExpression definition) {
+        queue(new PendingDefinition(conceptNid, code, true,
+                LoincDefinitionFingerprints.mix(stampFingerprint, fingerprint), definition));
+    }
+
+    private void queue(PendingDefinition definition) {
+        pending.add(definition);
+        queueDepth.set(pending.size());
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the queued definitions.
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        batchCount++;
+
+        int written = 0;
+        LoincIngestEvents.DefinitionBatch batchEvent = new LoincIngestEvents.DefinitionBatch();
+        batchEvent.begin();
+        try (IngestMetrics.Timing ignored = metrics.start(IngestMetrics.DEFINITION_WRITE)) {
+            Transaction transaction = new Transaction("LOINC stated definitions batch " + batchCount);
+            StampEntity stamp = transaction.getStamp(State.ACTIVE, System.currentTimeMillis(),
+                    authorNid, moduleNid, pathNid);
+
+            for (PendingDefinition definition : pending) {
+                LoincIngestEvents.Definition event = new LoincIngestEvents.Definition();
+                event.begin();
+                try {
+                    addLogicalExpression(definition.conceptNid(), definition.definition(), stamp.nid());
+                    written++;
+                    if (definition.fingerprinted()) {
+                        fingerprints.put(definition.conceptNid(), definition.fingerprint());
+                    } else {
+                        fingerprints.remove(definition.conceptNid());
+                    }
+                } catch (Exception e) {
+                    fingerprints.remove(definition.conceptNid());
+                    errorReport.report(IngestErrorReport.Category.DEFINITION, definition.code(), e);
+                }
+                event.end();
+                if (event.shouldCommit()) {
+                    event.code = definition.code();
+                    event.conceptNid = definition.conceptNid();
+                    event.commit();
+                }
+            }
+            transaction.commit();
+        }
+        batchEvent.end();
+        if (batchEvent.shouldCommit()) {
+            batchEvent.batch = batchCount;
+            batchEvent.rows = pending.size();
+            batchEvent.written = written;
+            batchEvent.firstCode = pending.get(0).code();
+            batchEvent.lastCode = pending.get(pending.size() - 1).code();
+            batchEvent.commit();
+        }
+        definitionsWritten += written;
+        metrics.add(IngestMetrics.DEFINITIONS, written);
+        LOG.info("Wrote batch " + batchCount + " of " + pending.size() + " stated definitions");
+        pending.clear();
+        queueDepth.set(0);
+    }
+
+    public int getDefinitionsWritten() {
+        return definitionsWritten;
+    }
+
+    /**
+     * Adds the relationship graph.
+     *
+     * @param conceptNid        the conceptNid
+     * @param logicalExpression the logical expression
+     * @param stampNid          the stamp of the batch
+     */
+    private void addLogicalExpression(int conceptNid, LogicalExpression logicalExpression, int stampNid) throws Exception {
+
+        // See if a semantic already exists in this pattern referencing this concept...
+
+        int[] semanticNidsForComponentOfPattern = EntityService.get().semanticNidsForComponentOfPattern(conceptNid, destinationPatternNid);
+        if (semanticNidsForComponentOfPattern.length > 0) {
+            if (semanticNidsForComponentOfPattern.length != 1) {
+                throw new IllegalStateException("To many graphs for component: " + PrimitiveData.text(conceptNid));
+            }
+            SemanticRecord existingSemantic = EntityService.get().getEntityFast(semanticNidsForComponentOfPattern[0]);
+            Latest<SemanticVersionRecord> latest = stampCoordinate.stampCalculator().latest(existingSemantic);
+
+            if (latest.isPresent()) {
+                SemanticEntityVersion logicalExpressionSemanticVersion = latest.get();
+                DiTreeEntity latestExpression = (DiTreeEntity) logicalExpressionSemanticVersion.fieldValues().get(0);
+                DiTreeEntity newExpression = (DiTreeEntity) logicalExpression.sourceGraph();
+
+                IsomorphicResultsLeafHash isomorphicResultsComputer = new IsomorphicResultsLeafHash(latestExpression, newExpression, conceptNid);
+                IsomorphicResults isomorphicResults = isomorphicResultsComputer.call();
+
+                if (!isomorphicResults.equivalent()) {
+                    addNewVersion(logicalExpression, stampNid, SemanticRecordBuilder.builder(existingSemantic));
+                }
+            } else {
+                // Latest is inactive or non-existent, need to add new.
+                addNewVersion(logicalExpression, stampNid, SemanticRecordBuilder.builder(existingSemantic));
+            }
+        } else {
+            // Create UUID from seed and assign SemanticBuilder the value
+            UUID generartedSemanticUuid = UuidT5Generator.singleSemanticUuid(EntityService.get().getEntityFast(destinationPatternNid),
+                    EntityService.get().getEntityFast(conceptNid));
+
+            SemanticRecordBuilder newSemanticBuilder = SemanticRecordBuilder.builder();
+            newSemanticBuilder.mostSignificantBits(generartedSemanticUuid.getMostSignificantBits());
+            newSemanticBuilder.leastSignificantBits(generartedSemanticUuid.getLeastSignificantBits());
+            newSemanticBuilder.patternNid(destinationPatternNid);
+            newSemanticBuilder.referencedComponentNid(conceptNid);
+            newSemanticBuilder.nid(PrimitiveData.nid(generartedSemanticUuid));
+
+            addNewVersion(logicalExpression, stampNid, newSemanticBuilder);
+        }
+    }
+
+    /**
+     * Helper function used in building Semantics.
+     *
+     * @param logicalExpression
+     * @param stampNid
+     * @param newSemanticBuilder
+     */
+    private void addNewVersion(LogicalExpression logicalExpression, int stampNid, SemanticRecordBuilder newSemanticBuilder) {
+
+        ImmutableList<SemanticVersionRecord> oldSemanticVersions = newSemanticBuilder.versions();
+        RecordListBuilder<SemanticVersionRecord> versionListBuilder = new RecordListBuilder<>();
+        newSemanticBuilder.versions(versionListBuilder);
+        SemanticRecord newSemantic = newSemanticBuilder.build();
+
+        if (oldSemanticVersions != null) {
+            oldSemanticVersions.forEach(version -> {
+                versionListBuilder.add(SemanticVersionRecordBuilder.builder(version).chronology(newSemantic).build());
+            });
+        }
+
+        SemanticVersionRecordBuilder semanticVersionBuilder = SemanticVersionRecordBuilder.builder();
+        semanticVersionBuilder.fieldValues(Lists.immutable.of(logicalExpression.sourceGraph()));
+        semanticVersionBuilder.stampNid(stampNid);
+        semanticVersionBuilder.chronology(newSemantic);
+        versionListBuilder.add(semanticVersionBuilder.build());
+        versionListBuilder.build();
+
+        EntityService.get().putEntity(newSemantic);
+    }
+}
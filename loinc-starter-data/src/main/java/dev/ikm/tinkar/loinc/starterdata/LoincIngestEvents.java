@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events of the LOINC ingest, in the "LOINC Ingest" category.
+ * <p>
+ * Each event spans one unit of work and carries its row count and, where there is one, the first and last LOINC or
+ * part number it covered. Fields are only filled in after {@code shouldCommit()}, so the events cost next to nothing
+ * when no recording is running. Start a recording with {@code -XX:StartFlightRecording} or {@code jcmd JFR.start}.
+ */
+public final class LoincIngestEvents {
+
+    private static final String CATEGORY = "LOINC Ingest";
+
+    private LoincIngestEvents() {
+    }
+
+    @Name("dev.ikm.loinc.CsvPass")
+    @Label("CSV Pass")
+    @Description("Reading and tokenizing one csv file")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class CsvPass extends Event {
+        @Label("File")
+        public String file;
+
+        @Label("Rows")
+        public int rows;
+
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("dev.ikm.loinc.ComposeBatch")
+    @Label("Compose Batch")
+    @Description("Composing one batch of concepts into Composer sessions")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class ComposeBatch extends Event {
+        @Label("Phase")
+        public String phase;
+
+        @Label("Rows")
+        public int rows;
+
+        @Label("Sessions")
+        public int sessions;
+
+        @Label("First Code")
+        public String firstCode;
+
+        @Label("Last Code")
+        public String lastCode;
+    }
+
+    @Name("dev.ikm.loinc.Commit")
+    @Label("Commit")
+    @Description("Committing a Composer session, saving the datastore or stopping it")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Commit extends Event {
+        @Label("Phase")
+        public String phase;
+
+        @Label("Rows")
+        @Description("Rows committed by this commit")
+        public int rows;
+    }
+
+    @Name("dev.ikm.loinc.StarterDataBuild")
+    @Label("StarterData Build")
+    @Description("Writing the navigation, definitions and patterns collected by StarterData")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class StarterDataBuild extends Event {
+        @Label("Authoring State")
+        public String state;
+
+        @Label("LOINC Rows")
+        public int rows;
+    }
+
+    @Name("dev.ikm.loinc.DefinitionBatch")
+    @Label("Definition Batch")
+    @Description("Writing one batch of stated definitions in a single transaction")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class DefinitionBatch extends Event {
+        @Label("Batch")
+        public int batch;
+
+        @Label("Definitions")
+        public int rows;
+
+        @Label("Written")
+        public int written;
+
+        @Label("First Code")
+        public String firstCode;
+
+        @Label("Last Code")
+        public String lastCode;
+    }
+
+    /**
+     * One per stated definition, so by default only those slower than a millisecond are recorded.
+     */
+    @Name("dev.ikm.loinc.Definition")
+    @Label("Definition")
+    @Description("Comparing and writing the stated definition of one concept")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    @Threshold("1 ms")
+    public static final class Definition extends Event {
+        @Label("Code")
+        public String code;
+
+        @Label("Concept Nid")
+        public int conceptNid;
+    }
+
+    @Name("dev.ikm.loinc.SemanticBatch")
+    @Label("Semantic Batch")
+    @Description("Putting one batch of semantics into the datastore")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class SemanticBatch extends Event {
+        @Label("Semantics")
+        public int rows;
+
+        @Label("First Nid")
+        public int firstNid;
+
+        @Label("Last Nid")
+        public int lastNid;
+    }
+}
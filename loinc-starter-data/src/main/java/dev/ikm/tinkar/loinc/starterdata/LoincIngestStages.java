@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+/**
+ * The sizes of the staged Loinc.csv ingest, see {@link LoincStarterData#setIngestStages(LoincIngestStages)}.
+ * <p>
+ * A single reader cuts the file into blocks and a single writer commits them in file order; the threads in between
+ * are configurable.
+ *
+ * @param blockRows     the Loinc.csv records per block, and so per commit
+ * @param queueCapacity the blocks that may wait between two stages
+ * @param tokenizers    the threads that tokenize blocks into records
+ * @param mappers       the threads that map records to rows, filter unchanged rows and hash concept ids
+ * @param builders      the threads that compose the concepts of a block into Composer sessions
+ */
+public record LoincIngestStages(int blockRows, int queueCapacity, int tokenizers, int mappers, int builders) {
+
+    public LoincIngestStages {
+        if (blockRows < 1 || queueCapacity < 1 || tokenizers < 1 || mappers < 1 || builders < 1) {
+            throw new IllegalArgumentException("Ingest stage sizes must be at least 1: " + blockRows + ", "
+                    + queueCapacity + ", " + tokenizers + ", " + mappers + ", " + builders);
+        }
+    }
+
+    /**
+     * Blocks of 2,000 records, with the threads split over the stages by how much work they do per row.
+     */
+    public static LoincIngestStages defaults() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return new LoincIngestStages(2_000, 8, Math.max(1, processors / 4), Math.max(1, processors / 4),
+                Math.max(1, processors / 2));
+    }
+
+    /**
+     * @return the number of blocks that may be between the reader and the writer
+     */
+    public int maxInFlight() {
+        return queueCapacity * 4 + tokenizers + mappers + builders;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import dev.ikm.tinkar.common.id.PublicId;
+import dev.ikm.tinkar.common.id.PublicIds;
+import dev.ikm.tinkar.entity.EntityService;
+import dev.ikm.tinkar.starterdata.UUIDUtility;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static dev.ikm.tinkar.loinc.starterdata.LoincStarterData.*;
+
+/**
+ * The LOINC semantic patterns and the authoring STAMP of a {@link dev.ikm.tinkar.starterdata.StarterData}, resolved
+ * to public ids and nids once so the semantic writers do not derive them again for every semantic.
+ */
+public class LoincPatternRegistry {
+
+    public record ResolvedPattern(String name, PublicId publicId, int nid) {
+    }
+
+    public static final List<String> PATTERN_NAMES = List.of(
+            LOINC_TRIAL_STATUS_PATTERN,
+            LOINC_DISCOURAGED_STATUS_PATTERN,
+            LOINC_CLASS_PATTERN,
+            EXAMPLE_UCUM_UNITS_PATTERN,
+            TEST_REPORTABLE_MEMBERSHIP_PATTERN,
+            TEST_SUBSET_MEMBERSHIP_PATTERN,
+            TEST_ORDERABLE_PATTERN);
+
+    private final Map<String, ResolvedPattern> patterns = new HashMap<>();
+    private final int stampNid;
+
+    /**
+     * @param authoringStamp the authoring STAMP the semantics are written with
+     */
+    public LoincPatternRegistry(PublicId authoringStamp) {
+        UUIDUtility uuidUtility = new UUIDUtility();
+        for (String name : PATTERN_NAMES) {
+            PublicId publicId = PublicIds.of(uuidUtility.createUUID(name));
+            patterns.put(name, new ResolvedPattern(name, publicId, EntityService.get().nidForPublicId(publicId)));
+        }
+        this.stampNid = EntityService.get().nidForPublicId(authoringStamp);
+    }
+
+    public ResolvedPattern pattern(String name) {
+        ResolvedPattern pattern = patterns.get(name);
+        if (pattern == null) {
+            throw new IllegalArgumentException("Unknown LOINC pattern: " + name);
+        }
+        return pattern;
+    }
+
+    public int stampNid() {
+        return stampNid;
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import dev.ikm.tinkar.common.service.PrimitiveData;
+import dev.ikm.tinkar.common.util.broadcast.Subscriber;
+import dev.ikm.tinkar.entity.ConceptEntity;
+import dev.ikm.tinkar.entity.Entity;
+import dev.ikm.tinkar.entity.EntityService;
+import dev.ikm.tinkar.entity.PatternEntity;
+import dev.ikm.tinkar.entity.SemanticEntity;
+import dev.ikm.tinkar.entity.StampEntity;
+import dev.ikm.tinkar.entity.transform.EntityToTinkarSchemaTransformer;
+import org.eclipse.collections.api.factory.primitive.IntSets;
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * Streams the entities written during an ingest into a Tinkar pb.zip while the ingest runs.
+ * <p>
+ * Once {@link #start() started}, the export is told the nid of every entity the {@link EntityService} writes. Each
+ * {@link #drain()}, called by the ingest after a commit, hands the nids collected since the previous drain to a pool
+ * of background threads, which read the entities, write them as delimited {@code TinkarMsg}s and deflate them. The
+ * archive has the layout of {@code ExportEntitiesController} output: the data entry named after the file without
+ * {@code .zip}, followed by {@code META-INF/MANIFEST.MF} with the entity counts.
+ * <p>
+ * Only what this ingest writes is exported, so the archive is loaded on top of the starter data it was built
+ * against. An entity written again after it was exported, such as a STAMP that is committed, is exported again with
+ * all of its versions; loading merges the versions. The manifest and the {@value IngestMetrics#EXPORTED_ENTITIES}
+ * count give the number of distinct entities, not the number of messages in the archive.
+ * <p>
+ * Compressed chunks are written to the file by the thread that drains, unless the export writes on a virtual thread,
+ * in which case a drain only hands its chunks over and returns.
+ */
+public class LoincPbExport implements Subscriber<Integer>, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoincPbExport.class.getSimpleName());
+
+    public static final String MANIFEST_ENTRY = "META-INF/MANIFEST.MF";
+    public static final int DEFAULT_DEFLATE_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Entities per compressed chunk. Chunks of a few hundred kilobytes deflate nearly as well as a single stream.
+     */
+    static final int CHUNK_SIZE = 1_024;
+
+    private final File file;
+    private final int deflateLevel;
+    private final int threads;
+    private final IngestMetrics metrics;
+    private final MutableIntSet pending = IntSets.mutable.empty();
+    private final MutableIntSet exported = IntSets.mutable.empty();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder concepts = new LongAdder();
+    private final LongAdder semantics = new LongAdder();
+    private final LongAdder patterns = new LongAdder();
+    private final LongAdder stamps = new LongAdder();
+    private final boolean virtualThreadWriter;
+    private ExecutorService executor;
+    private ExecutorService writerExecutor;
+    private CompletableFuture<Void> writes = CompletableFuture.completedFuture(null);
+    private LoincPbZipWriter writer;
+    private boolean finished;
+
+    /**
+     * @param deflateLevel 0 to 9, or -1 for the zlib default
+     * @param threads      the number of threads that read and compress entities
+     */
+    public LoincPbExport(File file, int deflateLevel, int threads, IngestMetrics metrics) {
+        this(file, deflateLevel, threads, metrics, false);
+    }
+
+    /**
+     * @param deflateLevel        0 to 9, or -1 for the zlib default
+     * @param threads             the number of threads that read and compress entities
+     * @param virtualThreadWriter write the compressed chunks to the file on a virtual thread
+     */
+    public LoincPbExport(File file, int deflateLevel, int threads, IngestMetrics metrics,
+                         boolean virtualThreadWriter) {
+        if (deflateLevel < Deflater.DEFAULT_COMPRESSION || deflateLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Deflate level must be between -1 and 9, was " + deflateLevel);
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Export threads must be at least 1, was " + threads);
+        }
+        this.file = file;
+        this.deflateLevel = deflateLevel;
+        this.threads = threads;
+        this.metrics = metrics;
+        this.virtualThreadWriter = virtualThreadWriter;
+    }
+
+    /**
+     * @return an export with the same settings that writes on a virtual thread
+     */
+    public LoincPbExport withVirtualThreadWriter() {
+        return new LoincPbExport(file, deflateLevel, threads, metrics, true);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Opens the archive and starts collecting the nids of written entities.
+     */
+    public void start() {
+        try {
+            if (file.getParentFile() != null) {
+                Files.createDirectories(file.getParentFile().toPath());
+            }
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "loinc-pb-export");
+                thread.setDaemon(true);
+                return thread;
+            });
+            writer = new LoincPbZipWriter(file.toPath(), file.getName().replace(".zip", ""), deflateLevel,
+                    executor, threads * 2);
+            if (virtualThreadWriter) {
+                writerExecutor = Executors.newSingleThreadExecutor(
+                        Thread.ofVirtual().name("loinc-pb-writer").factory());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        EntityService.get().addSubscriberWithWeakReference(this);
+        LOG.info("Streaming the export to " + file + " with deflate level " + deflateLevel + " on " + threads
+                + " threads");
+    }
+
+    /**
+     * Adds an entity written before the export started, with its STAMPs and, recursively, its semantics.
+     */
+    public void include(int nid) {
+        Entity<?> entity = EntityService.get().getEntityFast(nid);
+        if (entity == null) {
+            return;
+        }
+        onNext(nid);
+        entity.versions().forEach(version -> onNext(version.stampNid()));
+        PrimitiveData.get().forEachSemanticNidForComponent(nid, this::include);
+    }
+
+    @Override
+    public void onNext(Integer nid) {
+        synchronized (pending) {
+            pending.add(nid);
+        }
+    }
+
+    /**
+     * Queues the entities written since the previous drain for export. Only call this when they are committed. Safe
+     * to call from several threads.
+     */
+    public synchronized void drain() {
+        if (writer == null) {
+            return;
+        }
+        int[] nids;
+        synchronized (pending) {
+            nids = pending.toSortedArray();
+            pending.clear();
+        }
+        if (nids.length == 0) {
+            return;
+        }
+        write(() -> {
+            try (IngestMetrics.Timing ignored = metrics.start(IngestMetrics.EXPORT)) {
+                for (int start = 0; start < nids.length; start += CHUNK_SIZE) {
+                    int[] chunk = Arrays.copyOfRange(nids, start, Math.min(start + CHUNK_SIZE, nids.length));
+                    writer.submit(() -> serialize(chunk));
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs a step of the writer on the calling thread, or queues it for the virtual writer thread. Queued steps run
+     * one at a time in order, and none runs after a step failed.
+     */
+    private void write(Runnable step) {
+        if (writerExecutor == null) {
+            step.run();
+        } else {
+            writes = writes.thenRunAsync(step, writerExecutor);
+        }
+    }
+
+    /**
+     * Exports what is still pending and completes the archive.
+     */
+    public synchronized void finish() {
+        if (writer == null) {
+            return;
+        }
+        drain();
+        write(() -> {
+            try (IngestMetrics.Timing ignored = metrics.start(IngestMetrics.EXPORT)) {
+                writer.finish(MANIFEST_ENTRY, manifest());
+            }
+        });
+        try {
+            writes.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException
+                    ? runtimeException : new RuntimeException(e.getCause());
+        }
+        metrics.add(IngestMetrics.EXPORTED_BYTES, writer.compressedSize());
+        LOG.info("Exported " + total() + " entities in " + messages.sum() + " messages to " + file + ", "
+                + writer.uncompressedSize() + " bytes deflated to " + writer.compressedSize());
+        finished = true;
+        close();
+    }
+
+    /**
+     * Stops collecting and closes the archive; an export that did not {@link #finish()} is deleted.
+     */
+    @Override
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        EntityService.get().removeSubscriber(this);
+        if (writerExecutor != null) {
+            writerExecutor.shutdownNow();
+            writerExecutor.close();
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOG.warn("Unable to close " + file, e);
+        } finally {
+            writer = null;
+            executor.shutdownNow();
+        }
+        if (!finished && file.delete()) {
+            LOG.warn("Deleted the incomplete export " + file);
+        }
+    }
+
+    private byte[] serialize(int[] nids) {
+        EntityToTinkarSchemaTransformer transformer = EntityToTinkarSchemaTransformer.getInstance();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(nids.length * 256);
+        try {
+            for (int nid : nids) {
+                Entity<?> entity = EntityService.get().getEntityFast(nid);
+                if (entity == null) {
+                    continue;
+                }
+                transformer.transform(entity).writeDelimitedTo(out);
+                messages.increment();
+                boolean firstExport;
+                synchronized (exported) {
+                    firstExport = exported.add(nid);
+                }
+                if (!firstExport) {
+                    continue;
+                }
+                if (entity instanceof ConceptEntity<?>) {
+                    concepts.increment();
+                } else if (entity instanceof SemanticEntity<?>) {
+                    semantics.increment();
+                } else if (entity instanceof PatternEntity<?>) {
+                    patterns.increment();
+                } else if (entity instanceof StampEntity<?>) {
+                    stamps.increment();
+                }
+                metrics.increment(IngestMetrics.EXPORTED_ENTITIES);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] manifest() {
+        String manifest = "Manifest-Version: 1.0\n"
+                + "Total-Count: " + total() + "\n"
+                + "Concept-Count: " + concepts.sum() + "\n"
+                + "Semantic-Count: " + semantics.sum() + "\n"
+                + "Pattern-Count: " + patterns.sum() + "\n"
+                + "Stamp-Count: " + stamps.sum() + "\n";
+        return manifest.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private long total() {
+        return concepts.sum() + semantics.sum() + patterns.sum() + stamps.sum();
+    }
+}
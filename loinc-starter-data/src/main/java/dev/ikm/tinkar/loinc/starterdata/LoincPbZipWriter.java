@@ -0,0 +1,329 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a zip with one deflated data entry, whose content is produced and compressed in chunks on an executor, and
+ * an optional stored entry written at the end.
+ * <p>
+ * Each chunk is deflated on its own and ends with a sync flush, so the chunks concatenate, in submission order, into
+ * one valid deflate stream that is closed by an empty final block. This is how pigz compresses in parallel; the
+ * chunks share no dictionary, which costs a little compression. Sizes and the CRC follow the data in a data
+ * descriptor, so nothing is buffered beyond the chunks in flight. Sizes and offsets past 4 GiB are written in ZIP64
+ * fields the way {@link java.util.zip.ZipOutputStream} writes them: 8 byte sizes in the data descriptor, a ZIP64
+ * extra field in the central directory and a ZIP64 end of central directory record.
+ */
+public final class LoincPbZipWriter implements Closeable {
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int DATA_DESCRIPTOR = 0x08074b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR = 0x07064b50;
+    private static final short ZIP64_EXTRA = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final byte[] EMPTY_FINAL_BLOCK = {0x03, 0x00};
+
+    private record Chunk(byte[] raw, byte[] compressed) {
+    }
+
+    private record Entry(byte[] name, int flags, int method, long crc, long compressedSize, long size, long offset) {
+    }
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final int level;
+    private final int maxInFlight;
+    private final ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+    private final int dosTime;
+    private final byte[] dataName;
+    private long position;
+    private long size;
+    private long compressedSize;
+    private boolean finished;
+
+    /**
+     * @param level       the deflate level, 0 to 9, or -1 for the zlib default
+     * @param maxInFlight the number of chunks that may be queued or compressing before {@link #submit} waits
+     */
+    public LoincPbZipWriter(Path file, String dataEntryName, int level, ExecutorService executor, int maxInFlight)
+            throws IOException {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Deflate level must be between -1 and 9, was " + level);
+        }
+        this.out = Files.newOutputStream(file);
+        this.executor = executor;
+        this.level = level;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.dosTime = dosTime(LocalDateTime.now());
+        this.dataName = dataEntryName.getBytes(StandardCharsets.UTF_8);
+        writeLocalHeader(dataName, FLAG_DATA_DESCRIPTOR | FLAG_UTF8, DEFLATED, 0, 0, 0);
+    }
+
+    /**
+     * Produces and deflates a chunk of the data entry on the executor. Completed chunks are written to the file in
+     * submission order by this and later calls, on the calling thread.
+     */
+    public void submit(Supplier<byte[]> chunk) {
+        if (finished) {
+            throw new IllegalStateException("The data entry is already finished");
+        }
+        inFlight.add(executor.submit(() -> {
+            byte[] raw = chunk.get();
+            return new Chunk(raw, deflate(raw, level));
+        }));
+        while (!inFlight.isEmpty() && (inFlight.size() > maxInFlight || inFlight.peek().isDone())) {
+            writeChunk(await(inFlight.poll()));
+        }
+    }
+
+    /**
+     * Waits for the submitted chunks, ends the data entry and writes the stored entry and the central directory.
+     */
+    public void finish(String storedEntryName, byte[] storedContent) {
+        while (!inFlight.isEmpty()) {
+            writeChunk(await(inFlight.poll()));
+        }
+        finished = true;
+        try {
+            out.write(EMPTY_FINAL_BLOCK);
+            position += EMPTY_FINAL_BLOCK.length;
+            compressedSize += EMPTY_FINAL_BLOCK.length;
+            ByteBuffer descriptor = buffer(24)
+                    .putInt(DATA_DESCRIPTOR)
+                    .putInt((int) crc.getValue());
+            if (compressedSize > ZIP64_MAGIC || size > ZIP64_MAGIC) {
+                // java.util.zip.ZipInputStream expects 8 byte sizes once the entry passes 4 GiB.
+                descriptor.putLong(compressedSize).putLong(size);
+            } else {
+                descriptor.putInt((int) compressedSize).putInt((int) size);
+            }
+            write(descriptor);
+            entries.add(new Entry(dataName, FLAG_DATA_DESCRIPTOR | FLAG_UTF8, DEFLATED, crc.getValue(),
+                    compressedSize, size, 0));
+
+            if (storedEntryName != null) {
+                byte[] name = storedEntryName.getBytes(StandardCharsets.UTF_8);
+                CRC32 storedCrc = new CRC32();
+                storedCrc.update(storedContent);
+                long offset = position;
+                writeLocalHeader(name, FLAG_UTF8, STORED, storedCrc.getValue(), storedContent.length,
+                        storedContent.length);
+                out.write(storedContent);
+                position += storedContent.length;
+                entries.add(new Entry(name, FLAG_UTF8, STORED, storedCrc.getValue(), storedContent.length,
+                        storedContent.length, offset));
+            }
+            writeCentralDirectory();
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long uncompressedSize() {
+        return size;
+    }
+
+    public long compressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * Closes the file. Chunks still in flight are cancelled, so a writer that was not finished leaves an incomplete
+     * zip behind.
+     */
+    @Override
+    public void close() throws IOException {
+        inFlight.forEach(future -> future.cancel(true));
+        inFlight.clear();
+        out.close();
+    }
+
+    static byte[] deflate(byte[] raw, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(raw);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[64 * 1024];
+            int length;
+            do {
+                length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                compressed.write(buffer, 0, length);
+            } while (length == buffer.length || !deflater.needsInput());
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeChunk(Chunk chunk) {
+        try {
+            out.write(chunk.compressed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        crc.update(chunk.raw);
+        position += chunk.compressed.length;
+        compressedSize += chunk.compressed.length;
+        size += chunk.raw.length;
+    }
+
+    private static Chunk await(Future<Chunk> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to compress an export chunk", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void writeLocalHeader(byte[] name, int flags, int method, long crc, long compressedSize, long size)
+            throws IOException {
+        ByteBuffer header = buffer(30)
+                .putInt(LOCAL_HEADER)
+                .putShort((short) VERSION)
+                .putShort((short) flags)
+                .putShort((short) method)
+                .putInt(dosTime)
+                .putInt((int) crc)
+                .putInt((int) compressedSize)
+                .putInt((int) size)
+                .putShort((short) name.length)
+                .putShort((short) 0);
+        write(header);
+        out.write(name);
+        position += name.length;
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long start = position;
+        for (Entry entry : entries) {
+            // Values that do not fit are set to the magic value and follow in the ZIP64 extra field, in this order.
+            boolean sizes64 = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+            boolean offset64 = entry.offset >= ZIP64_MAGIC;
+            int zip64Length = (sizes64 ? 16 : 0) + (offset64 ? 8 : 0);
+            int extraLength = zip64Length == 0 ? 0 : 4 + zip64Length;
+            int version = zip64Length == 0 ? VERSION : VERSION_ZIP64;
+            ByteBuffer header = buffer(46 + extraLength)
+                    .putInt(CENTRAL_HEADER)
+                    .putShort((short) version)
+                    .putShort((short) version)
+                    .putShort((short) entry.flags)
+                    .putShort((short) entry.method)
+                    .putInt(dosTime)
+                    .putInt((int) entry.crc)
+                    .putInt((int) (sizes64 ? ZIP64_MAGIC : entry.compressedSize))
+                    .putInt((int) (sizes64 ? ZIP64_MAGIC : entry.size))
+                    .putShort((short) entry.name.length)
+                    .putShort((short) extraLength)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putInt(0)
+                    .putInt((int) (offset64 ? ZIP64_MAGIC : entry.offset));
+            write(header);
+            out.write(entry.name);
+            position += entry.name.length;
+            if (extraLength > 0) {
+                ByteBuffer extra = buffer(extraLength)
+                        .putShort(ZIP64_EXTRA)
+                        .putShort((short) zip64Length);
+                if (sizes64) {
+                    extra.putLong(entry.size).putLong(entry.compressedSize);
+                }
+                if (offset64) {
+                    extra.putLong(entry.offset);
+                }
+                write(extra);
+            }
+        }
+        long length = position - start;
+        if (start >= ZIP64_MAGIC || length >= ZIP64_MAGIC) {
+            long zip64End = position;
+            ByteBuffer zip64 = buffer(76)
+                    .putInt(ZIP64_END_OF_CENTRAL_DIRECTORY)
+                    .putLong(44)
+                    .putShort((short) VERSION_ZIP64)
+                    .putShort((short) VERSION_ZIP64)
+                    .putInt(0)
+                    .putInt(0)
+                    .putLong(entries.size())
+                    .putLong(entries.size())
+                    .putLong(length)
+                    .putLong(start)
+                    .putInt(ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR)
+                    .putInt(0)
+                    .putLong(zip64End)
+                    .putInt(1);
+            write(zip64);
+        }
+        ByteBuffer end = buffer(22)
+                .putInt(END_OF_CENTRAL_DIRECTORY)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) entries.size())
+                .putShort((short) entries.size())
+                .putInt((int) Math.min(length, ZIP64_MAGIC))
+                .putInt((int) Math.min(start, ZIP64_MAGIC))
+                .putShort((short) 0);
+        write(end);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        position += buffer.position();
+    }
+
+    private static ByteBuffer buffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int dosTime(LocalDateTime time) {
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+                | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import org.eclipse.collections.api.factory.primitive.ObjectLongMaps;
+import org.eclipse.collections.api.map.primitive.MutableObjectLongMap;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The content fingerprint of every LOINC and Part row of an imported release, used to import only the rows that
+ * changed in a later release.
+ * <p>
+ * A fingerprint is a 64-bit FNV-1a hash over all fields of a row, so a change in any column, including
+ * {@link LoincConstants#CHNG_TYPE} and {@link LoincConstants#VERSION_LAST_CHANGED}, changes it. The manifest is
+ * stored as a tab separated file in the datastore directory, headed by the highest
+ * {@link LoincConstants#VERSION_LAST_CHANGED} of the release.
+ */
+public class LoincReleaseManifest {
+
+    public static final String FILE_NAME = "loinc-release-manifest.tsv";
+
+    private static final String VERSION_HEADER = "#version\t";
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final MutableObjectLongMap<String> fingerprints = ObjectLongMaps.mutable.empty();
+    private String releaseVersion = "";
+
+    /**
+     * @param storeOrManifest a datastore directory holding a manifest, or the manifest file itself
+     */
+    public static LoincReleaseManifest read(File storeOrManifest) throws IOException {
+        Path manifestFile = storeOrManifest.isDirectory()
+                ? storeOrManifest.toPath().resolve(FILE_NAME)
+                : storeOrManifest.toPath();
+        if (!Files.exists(manifestFile)) {
+            throw new IOException("No LOINC release manifest found at " + manifestFile);
+        }
+        LoincReleaseManifest manifest = new LoincReleaseManifest();
+        try (BufferedReader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(VERSION_HEADER)) {
+                    manifest.releaseVersion = line.substring(VERSION_HEADER.length());
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    manifest.fingerprints.put(line.substring(0, tab), Long.parseUnsignedLong(line.substring(tab + 1), 16));
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest to {@link #FILE_NAME} in the datastore directory, replacing the previous one only once it
+     * is completely written.
+     */
+    public void write(File dataStore) throws IOException {
+        Path manifestFile = dataStore.toPath().resolve(FILE_NAME);
+        Path tempFile = dataStore.toPath().resolve(FILE_NAME + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            writer.write(VERSION_HEADER + releaseVersion);
+            writer.newLine();
+            for (var entry : fingerprints.keyValuesView()) {
+                writer.write(entry.getOne());
+                writer.write('\t');
+                writer.write(Long.toHexString(entry.getTwo()));
+                writer.newLine();
+            }
+        }
+        Files.move(tempFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Records the fingerprint of a row.
+     *
+     * @return the fingerprint
+     */
+    public long put(String key, String[] data) {
+        long fingerprint = fingerprint(data);
+        fingerprints.put(key, fingerprint);
+        return fingerprint;
+    }
+
+    /**
+     * @return true if the manifest holds the given fingerprint for the key
+     */
+    public boolean matches(String key, long fingerprint) {
+        return fingerprints.containsKey(key) && fingerprints.get(key) == fingerprint;
+    }
+
+    /**
+     * Raises the release version to the given {@link LoincConstants#VERSION_LAST_CHANGED} value if it is later.
+     */
+    public void noteVersion(String versionLastChanged) {
+        if (versionLastChanged != null && !versionLastChanged.isBlank()
+                && compareVersions(versionLastChanged, releaseVersion) > 0) {
+            releaseVersion = versionLastChanged;
+        }
+    }
+
+    public String getReleaseVersion() {
+        return releaseVersion;
+    }
+
+    public int size() {
+        return fingerprints.size();
+    }
+
+    static long fingerprint(String[] data) {
+        long hash = FNV_OFFSET_BASIS;
+        for (String field : data) {
+            for (int i = 0; i < field.length(); i++) {
+                char c = field.charAt(i);
+                hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+                hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+            }
+            hash = (hash ^ 0x1f) * FNV_PRIME; // field separator, so "a","bc" and "ab","c" differ
+        }
+        return hash;
+    }
+
+    /**
+     * Compares dotted LOINC versions such as {@code 2.9} and {@code 2.76} numerically, component by component.
+     */
+    static int compareVersions(String left, String right) {
+        String[] leftParts = left.split("\\.");
+        String[] rightParts = right.isEmpty() ? new String[0] : right.split("\\.");
+        for (int i = 0; i < Math.max(leftParts.length, rightParts.length); i++) {
+            String l = i < leftParts.length ? leftParts[i] : "0";
+            String r = i < rightParts.length ? rightParts[i] : "0";
+            int compared;
+            try {
+                compared = Integer.compare(Integer.parseInt(l.trim()), Integer.parseInt(r.trim()));
+            } catch (NumberFormatException e) {
+                compared = l.compareTo(r);
+            }
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return 0;
+    }
+}
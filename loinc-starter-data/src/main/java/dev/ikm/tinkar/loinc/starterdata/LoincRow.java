@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import java.util.Locale;
+
+/**
+ * The columns of a Loinc.csv row that are used while building the LOINC concepts.
+ */
+public record LoincRow(String loincNumber,
+                       String component,
+                       String property,
+                       String timeAspect,
+                       String system,
+                       String scaleType,
+                       String method,
+                       String loincClass,
+                       String status,
+                       String classType,
+                       String orderObs,
+                       String longCommonName,
+                       String exampleUcumUnits) {
+
+    public boolean isDeprecated() {
+        return status.toLowerCase(Locale.ROOT).contains("deprecated");
+    }
+
+    public String axis(LoincStarterData.LOINC_AXES axis) {
+        return switch (axis) {
+            case COMPONENT -> component;
+            case PROPERTY -> property;
+            case TIME_ASPECT -> timeAspect;
+            case SYSTEM -> system;
+            case SCALE_TYPE -> scaleType;
+            case METHOD -> method;
+        };
+    }
+}
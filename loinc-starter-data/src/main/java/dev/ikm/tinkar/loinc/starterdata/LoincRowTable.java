@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static dev.ikm.tinkar.loinc.starterdata.LoincStarterData.*;
+
+/**
+ * Loinc.csv parsed once and partitioned into active and deprecated rows, so that the concept, definition and
+ * semantic phases of the import iterate memory instead of re-reading and re-tokenizing the file.
+ * <p>
+ * Each partition is a {@link LoincColumnStore} holding only the columns of a {@link LoincRow}: the axis, class,
+ * status, class type, order/obs and UCUM values repeat across many rows and are dictionary encoded, the LOINC number
+ * and long common name are held as text. {@link #active()} and {@link #deprecated()} build each row when it is read.
+ */
+public class LoincRowTable {
+
+    private static final int LOINC_NUM_INDEX = 0;
+
+    /**
+     * The columns of the stores, in the order of the {@link LoincRow} components.
+     */
+    private static final String[] COLUMNS = {LoincConstants.LOINC_NUM, LoincConstants.COMPONENT,
+            LoincConstants.PROPERTY, LoincConstants.TIME_ASPCT, LoincConstants.SYSTEM, LoincConstants.SCALE_TYP,
+            LoincConstants.METHOD_TYP, LoincConstants.CLASS, LoincConstants.STATUS, LoincConstants.CLASSTYPE,
+            LoincConstants.ORDER_OBS, LoincConstants.LONG_COMMON_NAME, LoincConstants.EXAMPLE_UCUM_UNITS};
+
+    private final List<LoincRow> active;
+    private final List<LoincRow> deprecated;
+
+    private LoincRowTable(LoincColumnStore active, LoincColumnStore deprecated) {
+        this.active = new Rows(active);
+        this.deprecated = new Rows(deprecated);
+    }
+
+    public static LoincRowTable load(File loincConceptFile) throws IOException {
+        List<String[]> records = MappedCsvReader.read(loincConceptFile.toPath());
+        return from(records.stream().skip(1).iterator()); //skip first line, i.e. header line
+    }
+
+    public static LoincRowTable from(Iterator<String[]> records) {
+        Builder builder = new Builder();
+        while (records.hasNext()) {
+            builder.add(row(records.next()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Collects rows into a table, one at a time. Not safe for concurrent use.
+     */
+    public static final class Builder {
+        private final LoincColumnStore active = new LoincColumnStore(COLUMNS);
+        private final LoincColumnStore deprecated = new LoincColumnStore(COLUMNS);
+
+        public Builder add(LoincRow row) {
+            (row.isDeprecated() ? deprecated : active).addRow(new String[]{row.loincNumber(), row.component(),
+                    row.property(), row.timeAspect(), row.system(), row.scaleType(), row.method(), row.loincClass(),
+                    row.status(), row.classType(), row.orderObs(), row.longCommonName(), row.exampleUcumUnits()});
+            return this;
+        }
+
+        public LoincRowTable build() {
+            return new LoincRowTable(active, deprecated);
+        }
+    }
+
+    /**
+     * Maps a Loinc.csv record to a row.
+     */
+    public static LoincRow row(String[] data) {
+        return new LoincRow(
+                field(data, LOINC_NUM_INDEX),
+                field(data, LOINC_AXES.COMPONENT.value),
+                field(data, LOINC_AXES.PROPERTY.value),
+                field(data, LOINC_AXES.TIME_ASPECT.value),
+                field(data, LOINC_AXES.SYSTEM.value),
+                field(data, LOINC_AXES.SCALE_TYPE.value),
+                field(data, LOINC_AXES.METHOD.value),
+                field(data, CLASSNAME_INDEX),
+                field(data, STATUS_INDEX),
+                field(data, CLASS_TYPE_INDEX),
+                field(data, ORDER_OBS_INDEX),
+                field(data, LOINC_LONG_COMMON_NAME_INDEX),
+                field(data, UUCM_PATTERN_INDEX));
+    }
+
+    private static String field(String[] data, int index) {
+        return index < data.length ? data[index] : "";
+    }
+
+    public List<LoincRow> active() {
+        return active;
+    }
+
+    public List<LoincRow> deprecated() {
+        return deprecated;
+    }
+
+    public int size() {
+        return active.size() + deprecated.size();
+    }
+
+    /**
+     * Read only view of the rows of a store.
+     */
+    private static final class Rows extends AbstractList<LoincRow> implements RandomAccess {
+        private final LoincColumnStore store;
+
+        Rows(LoincColumnStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public LoincRow get(int index) {
+            return new LoincRow(store.get(index, 0), store.get(index, 1), store.get(index, 2), store.get(index, 3),
+                    store.get(index, 4), store.get(index, 5), store.get(index, 6), store.get(index, 7),
+                    store.get(index, 8), store.get(index, 9), store.get(index, 10), store.get(index, 11),
+                    store.get(index, 12));
+        }
+
+        @Override
+        public int size() {
+            return store.rowCount();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import dev.ikm.tinkar.entity.EntityService;
+import dev.ikm.tinkar.entity.RecordListBuilder;
+import dev.ikm.tinkar.entity.SemanticRecord;
+import dev.ikm.tinkar.entity.SemanticRecordBuilder;
+import dev.ikm.tinkar.entity.SemanticVersionRecord;
+import dev.ikm.tinkar.entity.SemanticVersionRecordBuilder;
+import org.eclipse.collections.api.list.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes single version semantics in batches.
+ * <p>
+ * Each semantic is built once, with a version list that is completed after the version referencing the chronology
+ * is added. The semantics of a batch are put in nid order, so consecutive writes land on the same spine.
+ */
+public class LoincSemanticWriter {
+
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private final int batchSize;
+    private final IngestMetrics metrics;
+    private final IngestMetrics.Gauge queueDepth;
+    private final List<SemanticRecord> pending;
+    private int semanticsWritten = 0;
+
+    /**
+     * @param metrics receives the write times, the number of semantics written and the depth of the queue
+     */
+    public LoincSemanticWriter(int batchSize, IngestMetrics metrics) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+        }
+        this.batchSize = batchSize;
+        this.metrics = metrics;
+        this.queueDepth = metrics.gauge(IngestMetrics.SEMANTIC_QUEUE_DEPTH);
+        this.pending = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Queues a semantic with a single version, writing the batch once it is full.
+     */
+    public void add(int semanticNid, UUID primordialUUID, int patternNid, int referencedComponentNid, int stampNid,
+                    ImmutableList<Object> fieldValues) {
+        RecordListBuilder<SemanticVersionRecord> versions = RecordListBuilder.make();
+
+        SemanticRecord semanticRecord = SemanticRecordBuilder.builder()
+                .nid(semanticNid)
+                .leastSignificantBits(primordialUUID.getLeastSignificantBits())
+                .mostSignificantBits(primordialUUID.getMostSignificantBits())
+                .additionalUuidLongs(null)
+                .patternNid(patternNid)
+                .referencedComponentNid(referencedComponentNid)
+                .versions(versions)
+                .build();
+
+        versions.add(SemanticVersionRecordBuilder.builder()
+                .chronology(semanticRecord)
+                .stampNid(stampNid)
+                .fieldValues(fieldValues)
+                .build());
+        versions.build();
+
+        pending.add(semanticRecord);
+        queueDepth.set(pending.size());
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the queued semantics.
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        LoincIngestEvents.SemanticBatch event = new LoincIngestEvents.SemanticBatch();
+        event.begin();
+        try (IngestMetrics.Timing ignored = metrics.start(IngestMetrics.SEMANTIC_WRITE)) {
+            pending.sort(Comparator.comparingInt(SemanticRecord::nid));
+            EntityService entityService = EntityService.get();
+            pending.forEach(entityService::putEntity);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.rows = pending.size();
+            event.firstNid = pending.get(0).nid();
+            event.lastNid = pending.get(pending.size() - 1).nid();
+            event.commit();
+        }
+        semanticsWritten += pending.size();
+        metrics.add(IngestMetrics.SEMANTICS, pending.size());
+        pending.clear();
+        queueDepth.set(0);
+    }
+
+    public int getSemanticsWritten() {
+        return semanticsWritten;
+    }
+}
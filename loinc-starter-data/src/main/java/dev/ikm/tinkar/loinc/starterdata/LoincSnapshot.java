@@ -0,0 +1,383 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A parsed LOINC release in a binary file that is memory mapped and read without tokenizing.
+ * <p>
+ * A snapshot holds named tables of csv records, the header record first. Every table keeps its distinct field values
+ * once, in a dictionary of length prefixed UTF-8 strings, and its records as a fixed width grid of dictionary
+ * indexes, so any field is found by arithmetic on the mapping. A value is decoded the first time it is read and the
+ * records of a table share the decoded strings.
+ * <p>
+ * Layout, big endian, offsets from the start of the file:
+ * <pre>
+ * file:       magic (long) | format version (int) | table count (int)
+ *             | table count x (name length (int) | UTF-8 name | table offset (int))
+ * table:      record count (int) | column count (int) | string count (int)
+ *             | record count x width (int)
+ *             | record count x column count x string index (int), -1 past the width of the record
+ *             | string count x string offset (int), from the start of the string data
+ *             | string data: string count x (byte length (int) | UTF-8 bytes)
+ * </pre>
+ * A snapshot is limited to 2GB, the size of a single mapping. Convert a release with
+ * {@code LoincSnapshot <Loinc.csv> <Part.csv> <snapshot>}.
+ */
+public class LoincSnapshot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoincSnapshot.class.getSimpleName());
+
+    public static final String LOINC_TABLE = "Loinc";
+    public static final String PART_TABLE = "Part";
+
+    private static final long MAGIC = 0x4C4F494E43534E50L; // "LOINCSNP"
+    private static final int FORMAT_VERSION = 1;
+    private static final int TABLE_HEADER_SIZE = 3 * Integer.BYTES;
+
+    private final Path file;
+    private final Map<String, Table> tables;
+
+    private LoincSnapshot(Path file, Map<String, Table> tables) {
+        this.file = file;
+        this.tables = tables;
+    }
+
+    /**
+     * The records of one csv file.
+     */
+    public static final class Table {
+        private final ByteBuffer mapping;
+        private final int recordCount;
+        private final int columnCount;
+        private final int widthsOffset;
+        private final int cellsOffset;
+        private final int stringOffsetsOffset;
+        private final int stringDataOffset;
+        private final String[] strings;
+
+        /**
+         * Checks that the widths, the cell grid, the string offsets and the strings they point at are inside the
+         * mapping, so that reading a record cannot run off a truncated or foreign file.
+         */
+        private Table(ByteBuffer mapping, int offset, Path file) throws IOException {
+            if (!fits(mapping, offset, TABLE_HEADER_SIZE)) {
+                throw notASnapshot(file);
+            }
+            this.mapping = mapping;
+            this.recordCount = mapping.getInt(offset);
+            this.columnCount = mapping.getInt(offset + Integer.BYTES);
+            int stringCount = mapping.getInt(offset + 2 * Integer.BYTES);
+            if (recordCount < 0 || columnCount < 0 || stringCount < 0
+                    || (long) recordCount * columnCount > mapping.capacity() / Integer.BYTES) {
+                throw notASnapshot(file);
+            }
+            long widths = (long) offset + TABLE_HEADER_SIZE;
+            long cells = widths + (long) recordCount * Integer.BYTES;
+            long stringOffsets = cells + (long) recordCount * columnCount * Integer.BYTES;
+            long stringData = stringOffsets + (long) stringCount * Integer.BYTES;
+            if (!fits(mapping, stringData, 0)) {
+                throw notASnapshot(file);
+            }
+            this.widthsOffset = (int) widths;
+            this.cellsOffset = (int) cells;
+            this.stringOffsetsOffset = (int) stringOffsets;
+            this.stringDataOffset = (int) stringData;
+            for (int index = 0; index < recordCount; index++) {
+                int width = mapping.getInt(widthsOffset + index * Integer.BYTES);
+                if (width < 0 || width > columnCount) {
+                    throw notASnapshot(file);
+                }
+            }
+            for (int index = 0; index < stringCount; index++) {
+                long position = stringData + mapping.getInt(stringOffsetsOffset + index * Integer.BYTES);
+                if (!fits(mapping, position, Integer.BYTES)
+                        || !fits(mapping, position + Integer.BYTES, mapping.getInt((int) position))) {
+                    throw notASnapshot(file);
+                }
+            }
+            this.strings = new String[stringCount];
+        }
+
+        /**
+         * @return the number of records, header included
+         */
+        public int size() {
+            return recordCount;
+        }
+
+        /**
+         * @param index the record, 0 being the header
+         */
+        public String[] record(int index) {
+            if (index < 0 || index >= recordCount) {
+                throw new IndexOutOfBoundsException("Record " + index + " of " + recordCount);
+            }
+            String[] record = new String[mapping.getInt(widthsOffset + index * Integer.BYTES)];
+            int cell = cellsOffset + index * columnCount * Integer.BYTES;
+            for (int column = 0; column < record.length; column++) {
+                record[column] = string(mapping.getInt(cell + column * Integer.BYTES));
+            }
+            return record;
+        }
+
+        /**
+         * @return the records from {@code from} up to {@code to}, exclusive
+         */
+        public List<String[]> records(int from, int to) {
+            List<String[]> records = new ArrayList<>(to - from);
+            for (int index = from; index < to; index++) {
+                records.add(record(index));
+            }
+            return records;
+        }
+
+        /**
+         * @return all records, header included, as {@link MappedCsvReader#read} returns them
+         */
+        public List<String[]> records() {
+            return records(0, recordCount);
+        }
+
+        // Racing threads decode the same string; either copy is kept.
+        private String string(int index) {
+            String string = strings[index];
+            if (string == null) {
+                int position = stringDataOffset + mapping.getInt(stringOffsetsOffset + index * Integer.BYTES);
+                int length = mapping.getInt(position);
+                byte[] bytes = new byte[length];
+                mapping.get(position + Integer.BYTES, bytes);
+                string = new String(bytes, StandardCharsets.UTF_8);
+                strings[index] = string;
+            }
+            return string;
+        }
+    }
+
+    /**
+     * Maps a snapshot. The mapping is released once the snapshot is no longer referenced.
+     *
+     * @throws IOException if the file is not a snapshot of this format version, or its offsets point outside of it
+     */
+    public static LoincSnapshot open(Path file) throws IOException {
+        MappedByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Unable to map " + file + ", file is larger than 2GB.");
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (mapping.capacity() < Long.BYTES + 2 * Integer.BYTES || mapping.getLong(0) != MAGIC) {
+            throw notASnapshot(file);
+        }
+        int formatVersion = mapping.getInt(Long.BYTES);
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException(file + " is a version " + formatVersion + " LOINC snapshot, expected version "
+                    + FORMAT_VERSION + "; convert the release again");
+        }
+        int tableCount = mapping.getInt(Long.BYTES + Integer.BYTES);
+        Map<String, Table> tables = new LinkedHashMap<>();
+        int position = Long.BYTES + 2 * Integer.BYTES;
+        for (int i = 0; i < tableCount; i++) {
+            int nameLength = fits(mapping, position, Integer.BYTES) ? mapping.getInt(position) : -1;
+            // The name is followed by the offset of its table.
+            if (nameLength < 0 || !fits(mapping, position + Integer.BYTES, nameLength + (long) Integer.BYTES)) {
+                throw notASnapshot(file);
+            }
+            byte[] name = new byte[nameLength];
+            mapping.get(position + Integer.BYTES, name);
+            position += Integer.BYTES + name.length;
+            tables.put(new String(name, StandardCharsets.UTF_8), new Table(mapping, mapping.getInt(position), file));
+            position += Integer.BYTES;
+        }
+        return new LoincSnapshot(file, Collections.unmodifiableMap(tables));
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public Set<String> tableNames() {
+        return tables.keySet();
+    }
+
+    public boolean hasTable(String name) {
+        return tables.containsKey(name);
+    }
+
+    public Table table(String name) {
+        Table table = tables.get(name);
+        if (table == null) {
+            throw new IllegalArgumentException(file + " has no " + name + " table");
+        }
+        return table;
+    }
+
+    /**
+     * Writes the tables to a snapshot, replacing the file only once it is completely written.
+     *
+     * @param tables the records of each table, header first
+     */
+    public static void write(Path file, Map<String, List<String[]>> tables) throws IOException {
+        List<EncodedTable> encoded = new ArrayList<>(tables.size());
+        long position = Long.BYTES + 2 * Integer.BYTES;
+        for (String name : tables.keySet()) {
+            position += 2 * Integer.BYTES + name.getBytes(StandardCharsets.UTF_8).length;
+        }
+        for (Map.Entry<String, List<String[]>> entry : tables.entrySet()) {
+            EncodedTable table = new EncodedTable(entry.getKey(), entry.getValue(), position);
+            encoded.add(table);
+            position += table.size();
+        }
+        if (position > Integer.MAX_VALUE) {
+            throw new IOException("A snapshot of " + position + " bytes is larger than 2GB");
+        }
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16))) {
+            output.writeLong(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(encoded.size());
+            for (EncodedTable table : encoded) {
+                writeBytes(output, table.name.getBytes(StandardCharsets.UTF_8));
+                output.writeInt((int) table.offset);
+            }
+            for (EncodedTable table : encoded) {
+                table.write(output);
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Parses Loinc.csv and Part.csv and writes them to a snapshot.
+     */
+    public static void convert(File loincCsv, File partCsv, File snapshot) throws IOException {
+        long start = System.nanoTime();
+        Map<String, List<String[]>> tables = new LinkedHashMap<>();
+        tables.put(LOINC_TABLE, MappedCsvReader.read(loincCsv.toPath()));
+        tables.put(PART_TABLE, MappedCsvReader.read(partCsv.toPath()));
+        write(snapshot.toPath(), tables);
+        LOG.info("Wrote " + tables.get(LOINC_TABLE).size() + " LOINC and " + tables.get(PART_TABLE).size()
+                + " Part records to " + snapshot + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            throw new IllegalArgumentException("Usage: LoincSnapshot <Loinc.csv> <Part.csv> <snapshot>");
+        }
+        convert(new File(args[0]), new File(args[1]), new File(args[2]));
+    }
+
+    /**
+     * @return whether the {@code length} bytes at {@code offset} are inside the mapping
+     */
+    private static boolean fits(ByteBuffer mapping, long offset, long length) {
+        return offset >= 0 && length >= 0 && offset + length <= mapping.capacity();
+    }
+
+    private static IOException notASnapshot(Path file) {
+        return new IOException(file + " is not a LOINC snapshot");
+    }
+
+    private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * A table with its dictionary built, ready to be written at its offset.
+     */
+    private static final class EncodedTable {
+        private final String name;
+        private final List<String[]> records;
+        private final long offset;
+        private final int columnCount;
+        private final List<byte[]> strings = new ArrayList<>();
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private long stringDataSize;
+
+        private EncodedTable(String name, List<String[]> records, long offset) {
+            this.name = name;
+            this.records = records;
+            this.offset = offset;
+            int columns = 0;
+            for (String[] record : records) {
+                columns = Math.max(columns, record.length);
+                for (String field : record) {
+                    dictionary.computeIfAbsent(field, value -> {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        strings.add(bytes);
+                        stringDataSize += Integer.BYTES + bytes.length;
+                        return strings.size() - 1;
+                    });
+                }
+            }
+            this.columnCount = columns;
+        }
+
+        private long size() {
+            return TABLE_HEADER_SIZE + (long) records.size() * Integer.BYTES
+                    + (long) records.size() * columnCount * Integer.BYTES
+                    + (long) strings.size() * Integer.BYTES + stringDataSize;
+        }
+
+        private void write(DataOutputStream output) throws IOException {
+            output.writeInt(records.size());
+            output.writeInt(columnCount);
+            output.writeInt(strings.size());
+            for (String[] record : records) {
+                output.writeInt(record.length);
+            }
+            for (String[] record : records) {
+                for (int column = 0; column < columnCount; column++) {
+                    output.writeInt(column < record.length ? dictionary.get(record[column]) : -1);
+                }
+            }
+            int stringOffset = 0;
+            for (byte[] string : strings) {
+                output.writeInt(stringOffset);
+                stringOffset += Integer.BYTES + string.length;
+            }
+            for (byte[] string : strings) {
+                writeBytes(output, string);
+            }
+        }
+    }
+}
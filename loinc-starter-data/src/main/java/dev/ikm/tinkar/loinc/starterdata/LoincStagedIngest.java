@@ -0,0 +1,312 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import dev.ikm.tinkar.common.service.PrimitiveData;
+import dev.ikm.tinkar.composer.Session;
+import dev.ikm.tinkar.loinc.starterdata.IngestCheckpoint.Phase;
+import dev.ikm.tinkar.terms.EntityProxy;
+import dev.ikm.tinkar.terms.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Ingests Loinc.csv in blocks through a {@link StagedPipeline}: reader, tokenizer, row mapper, concept builder and
+ * writer. The builders compose the rows of each block into a session for its active and one for its deprecated
+ * concepts. The writer commits the sessions of each block in file order, registers its concepts and checkpoints the
+ * number of lines committed. The row table for the definitions is collected on the way.
+ * <p>
+ * An ingest reads one file or snapshot table; create a new one for the next.
+ */
+public class LoincStagedIngest {
+
+    /**
+     * The import the LOINC concepts are ingested into.
+     */
+    public interface Target {
+
+        /**
+         * Opens a session for the given state with the STAMP values of the import. Called from the builder threads.
+         */
+        Session openSession(State state);
+
+        void commitSession(Session session);
+
+        void composeConcept(Session session, LoincRow row, EntityProxy.Concept concept);
+
+        /**
+         * Runs a commit or save of the datastore, timed and reported like the other commits of the import.
+         */
+        void timeCommit(String phase, int rows, Runnable commit);
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoincStagedIngest.class.getSimpleName());
+
+    private record RecordBatch(long firstLine, long endLine, List<String[]> records) {
+    }
+
+    private record RowBatch(long firstLine, long endLine, int records, List<LoincRow> rows, UUID[] uuids) {
+    }
+
+    private record ComposedBatch(RowBatch batch, Session active, Session inactive) {
+    }
+
+    private final LoincIngestStages stages;
+    private final IngestCheckpoint checkpoint;
+    private final IngestMetrics metrics;
+    private final LoincReleaseManifest releaseManifest;
+    private final LoincReleaseManifest previousRelease;
+    private final LoincConceptIndex conceptIndex;
+    private final Target target;
+    private final LoincRowTable.Builder rowTable = new LoincRowTable.Builder();
+    private final Map<String, Integer> changeTypes = new ConcurrentHashMap<>();
+    private boolean virtualThreadIo;
+    private boolean started;
+    private int records;
+
+    /**
+     * @param releaseManifest the manifest of this release, each row is recorded in it
+     * @param previousRelease the manifest of the release a delta import compares with, or {@code null}
+     * @param conceptIndex    the concepts are added to it once their block is committed
+     */
+    public LoincStagedIngest(LoincIngestStages stages, IngestCheckpoint checkpoint, IngestMetrics metrics,
+                             LoincReleaseManifest releaseManifest, LoincReleaseManifest previousRelease,
+                             LoincConceptIndex conceptIndex, Target target) {
+        this.stages = stages;
+        this.checkpoint = checkpoint;
+        this.metrics = metrics;
+        this.releaseManifest = releaseManifest;
+        this.previousRelease = previousRelease;
+        this.conceptIndex = conceptIndex;
+        this.target = target;
+    }
+
+    /**
+     * Runs the reader and writer stages on virtual threads, see {@link StagedPipeline#setVirtualThreadIo(boolean)}.
+     */
+    public void setVirtualThreadIo(boolean virtualThreadIo) {
+        this.virtualThreadIo = virtualThreadIo;
+    }
+
+    /**
+     * Ingests a Loinc.csv file, cut into blocks by a {@link CsvBlockReader}.
+     *
+     * @return the rows that changed since the previous release, all of them unless this is a delta import
+     */
+    public LoincRowTable ingest(Path loincCsv) throws IOException {
+        start();
+        try (CsvBlockReader reader = new CsvBlockReader(loincCsv)) {
+            CsvBlockReader.Block headerBlock = reader.next(1);
+            String[] header = headerBlock == null ? new String[0] : CsvTokenizer.split(headerBlock.text());
+            StagedPipeline pipeline = pipeline();
+            StagedPipeline.Stage<CsvBlockReader.Block> blocks = pipeline.source("reader",
+                    (Consumer<CsvBlockReader.Block> downstream) -> {
+                        CsvBlockReader.Block block;
+                        while ((block = reader.next(stages.blockRows())) != null) {
+                            downstream.accept(block);
+                        }
+                    });
+            run(pipeline, header, pipeline.map("tokenizer", blocks, stages.tokenizers(), LoincStagedIngest::tokenize));
+        }
+        return finish();
+    }
+
+    /**
+     * Ingests the Loinc.csv table of a {@link LoincSnapshot}. The records need no tokenizing; the record index stands
+     * in for the line number.
+     *
+     * @return the rows that changed since the previous release, all of them unless this is a delta import
+     */
+    public LoincRowTable ingest(LoincSnapshot.Table table) {
+        start();
+        String[] header = table.size() == 0 ? new String[0] : table.record(0);
+        StagedPipeline pipeline = pipeline();
+        run(pipeline, header, pipeline.source("reader", (Consumer<RecordBatch> downstream) -> {
+            for (int first = 1; first < table.size(); first += stages.blockRows()) {
+                int end = Math.min(first + stages.blockRows(), table.size());
+                downstream.accept(new RecordBatch(first, end, table.records(first, end)));
+            }
+        }));
+        return finish();
+    }
+
+    /**
+     * @return the number of Loinc.csv records read, changed or not, header excluded
+     */
+    public int getRecords() {
+        return records;
+    }
+
+    private void start() {
+        if (started) {
+            throw new IllegalStateException("The staged ingest has already run");
+        }
+        started = true;
+    }
+
+    private StagedPipeline pipeline() {
+        StagedPipeline pipeline = new StagedPipeline("loinc-ingest", stages.queueCapacity(), stages.maxInFlight(),
+                metrics);
+        pipeline.setVirtualThreadIo(virtualThreadIo);
+        return pipeline;
+    }
+
+    private void run(StagedPipeline pipeline, String[] header, StagedPipeline.Stage<RecordBatch> tokenized) {
+        long resumeLine = checkpoint.resumeRow(Phase.LOINC_CONCEPTS);
+        int versionLastChangedIndex = columnIndex(header, LoincConstants.VERSION_LAST_CHANGED);
+        int changeTypeIndex = columnIndex(header, LoincConstants.CHNG_TYPE);
+
+        StagedPipeline.Stage<RowBatch> mapped = pipeline.map("mapper", tokenized, stages.mappers(),
+                batch -> mapRows(batch, versionLastChangedIndex, changeTypeIndex));
+        StagedPipeline.Stage<ComposedBatch> composed = pipeline.map("builder", mapped, stages.builders(),
+                batch -> composeRows(batch, resumeLine));
+        pipeline.sink("writer", composed, batch -> {
+            commitRows(batch);
+            records += batch.batch().records();
+        });
+        pipeline.run();
+    }
+
+    private LoincRowTable finish() {
+        LoincRowTable table = rowTable.build();
+        if (previousRelease != null) {
+            LOG.info("Delta import: " + table.size() + " of " + records
+                    + " LOINC rows changed since release " + previousRelease.getReleaseVersion()
+                    + ", by change type " + new TreeMap<>(changeTypes));
+        }
+        return table;
+    }
+
+    private static RecordBatch tokenize(CsvBlockReader.Block block) throws IOException {
+        List<String[]> records = new ArrayList<>(block.lines());
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(block.text()))) {
+            String[] record;
+            while ((record = tokenizer.next()) != null) {
+                records.add(record);
+            }
+        }
+        return new RecordBatch(block.firstLine(), block.endLine(), records);
+    }
+
+    private RowBatch mapRows(RecordBatch batch, int versionLastChangedIndex, int changeTypeIndex) {
+        List<LoincRow> rows = new ArrayList<>(batch.records().size());
+        for (String[] data : batch.records()) {
+            boolean changed;
+            synchronized (releaseManifest) {
+                if (versionLastChangedIndex >= 0 && versionLastChangedIndex < data.length) {
+                    releaseManifest.noteVersion(data[versionLastChangedIndex]);
+                }
+                long fingerprint = releaseManifest.put(data[0], data);
+                changed = previousRelease == null || !previousRelease.matches(data[0], fingerprint);
+            }
+            if (!changed) {
+                metrics.increment(IngestMetrics.ROWS_SKIPPED);
+                continue;
+            }
+            if (changeTypeIndex >= 0 && changeTypeIndex < data.length) {
+                changeTypes.merge(data[changeTypeIndex], 1, Integer::sum);
+            }
+            rows.add(LoincRowTable.row(data));
+        }
+        UUID[] uuids = LoincUuids.nameUuids(rows.stream().map(LoincRow::loincNumber).toList());
+        return new RowBatch(batch.firstLine(), batch.endLine(), batch.records().size(), rows, uuids);
+    }
+
+    /**
+     * Composes the rows of a batch into a session for the active and one for the deprecated concepts. Batches that
+     * an earlier run committed are passed on without sessions.
+     */
+    private ComposedBatch composeRows(RowBatch batch, long resumeLine) {
+        if (batch.endLine() <= resumeLine || batch.rows().isEmpty()) {
+            if (!batch.rows().isEmpty()) {
+                metrics.add(IngestMetrics.ROWS_SKIPPED, batch.rows().size());
+            }
+            return new ComposedBatch(batch, null, null);
+        }
+        LoincIngestEvents.ComposeBatch event = new LoincIngestEvents.ComposeBatch();
+        event.begin();
+        Session activeSession = null;
+        Session inactiveSession = null;
+        try (IngestMetrics.Timing ignored = metrics.start(IngestMetrics.COMPOSE)) {
+            for (int i = 0; i < batch.rows().size(); i++) {
+                LoincRow row = batch.rows().get(i);
+                Session session;
+                if (row.isDeprecated()) {
+                    inactiveSession = inactiveSession != null ? inactiveSession : target.openSession(State.INACTIVE);
+                    session = inactiveSession;
+                } else {
+                    activeSession = activeSession != null ? activeSession : target.openSession(State.ACTIVE);
+                    session = activeSession;
+                }
+                target.composeConcept(session, row, EntityProxy.Concept.make(row.loincNumber(), batch.uuids()[i]));
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = Phase.LOINC_CONCEPTS.name();
+            event.rows = batch.rows().size();
+            event.sessions = (activeSession != null ? 1 : 0) + (inactiveSession != null ? 1 : 0);
+            event.firstCode = batch.rows().get(0).loincNumber();
+            event.lastCode = batch.rows().get(batch.rows().size() - 1).loincNumber();
+            event.commit();
+        }
+        return new ComposedBatch(batch, activeSession, inactiveSession);
+    }
+
+    private void commitRows(ComposedBatch composed) {
+        RowBatch batch = composed.batch();
+        for (Session session : new Session[]{composed.active(), composed.inactive()}) {
+            if (session != null) {
+                // Builders are composing later blocks, so the export is drained once the pipeline has finished.
+                target.timeCommit(Phase.LOINC_CONCEPTS.name(), batch.rows().size(),
+                        () -> target.commitSession(session));
+            }
+        }
+        for (int i = 0; i < batch.rows().size(); i++) {
+            LoincRow row = batch.rows().get(i);
+            conceptIndex.add(row.loincNumber(), row.loincNumber(), batch.uuids()[i]);
+            rowTable.add(row);
+        }
+        metrics.add(IngestMetrics.ROWS_READ, batch.records());
+        if (composed.active() != null || composed.inactive() != null) {
+            metrics.add(IngestMetrics.CONCEPTS, batch.rows().size());
+            if (checkpoint.isDurable()) {
+                target.timeCommit(Phase.LOINC_CONCEPTS.name(), batch.rows().size(), PrimitiveData::save);
+                checkpoint.commit(Phase.LOINC_CONCEPTS, Math.toIntExact(batch.endLine()));
+            }
+        }
+    }
+
+    private static int columnIndex(String[] header, String columnName) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
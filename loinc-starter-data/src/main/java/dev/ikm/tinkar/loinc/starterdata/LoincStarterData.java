@@ -15,48 +15,40 @@
  */
 package dev.ikm.tinkar.loinc.starterdata;
 
-import dev.ikm.tinkar.common.id.IntIds;
 import dev.ikm.tinkar.common.id.PublicId;
 import dev.ikm.tinkar.common.id.PublicIds;
 import dev.ikm.tinkar.common.service.PrimitiveData;
-import dev.ikm.tinkar.common.util.uuid.UuidT5Generator;
 import dev.ikm.tinkar.composer.Composer;
 import dev.ikm.tinkar.composer.Session;
 import dev.ikm.tinkar.composer.assembler.ConceptAssembler;
 import dev.ikm.tinkar.composer.template.*;
-import dev.ikm.tinkar.coordinate.stamp.*;
-import dev.ikm.tinkar.coordinate.stamp.calculator.Latest;
 import dev.ikm.tinkar.entity.*;
 import dev.ikm.tinkar.entity.export.ExportEntitiesController;
-import dev.ikm.tinkar.entity.graph.DiTreeEntity;
-import dev.ikm.tinkar.entity.graph.adaptor.axiom.LogicalExpression;
-import dev.ikm.tinkar.entity.graph.isomorphic.IsomorphicResults;
-import dev.ikm.tinkar.entity.graph.isomorphic.IsomorphicResultsLeafHash;
-import dev.ikm.tinkar.entity.transaction.Transaction;
-import dev.ikm.tinkar.ext.lang.owl.SctOwlUtilities;
+import dev.ikm.tinkar.loinc.starterdata.IngestCheckpoint.Phase;
 import dev.ikm.tinkar.starterdata.StarterData;
 import dev.ikm.tinkar.starterdata.UUIDUtility;
 import dev.ikm.tinkar.terms.EntityProxy;
 import dev.ikm.tinkar.terms.State;
 import dev.ikm.tinkar.terms.TinkarTerm;
 import org.eclipse.collections.api.factory.Lists;
-import org.eclipse.collections.api.list.ImmutableList;
 import org.eclipse.collections.api.list.MutableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
-import static dev.ikm.tinkar.loinc.starterdata.LoincConstants.REGEX_LINEDATA;
-import static dev.ikm.tinkar.loinc.starterdata.TinkarizerUtility.processHeaders;
 import static dev.ikm.tinkar.terms.TinkarTerm.*;
 
 
@@ -76,11 +68,11 @@ public class LoincStarterData {
     private static final int PART_FQN_INDEX = 2;
     private static final int PART_SYNOMYM_INDEX = 3;
     private static final int PART_TYPE_INDEX = 1;
-    private static final int LOINC_LONG_COMMON_NAME_INDEX = 25;
+    static final int LOINC_LONG_COMMON_NAME_INDEX = 25;
     public static final String LOINC_NUMBER = "LOINC Number";
     public static final String OBSERVABLE_ENTITY = "Observable Entity";
     public static final String CLASS = "CLASS";
-    private static final int STATUS_INDEX = 11;
+    static final int STATUS_INDEX = 11;
     public static final int CLASSNAME_INDEX = 7;
     public static final int CLASS_TYPE_INDEX = 13;
     public static final String EXAMPLE_UCUM_UNITS_PATTERN = "Example UCUM Units Pattern";
@@ -102,7 +94,6 @@ public class LoincStarterData {
     private final int DESTINATIONS_INDEX = 6;
 
     private static final int CLASS_INDEX = 7;
-    private final int destinationPatternNid = TinkarTerm.EL_PLUS_PLUS_STATED_AXIOMS_PATTERN.nid();
 
     private final State status = State.ACTIVE;
     //private final long time = PrimitiveData.PREMUNDANE_TIME;
@@ -111,7 +102,7 @@ public class LoincStarterData {
     private EntityProxy.Concept module = TinkarTerm.PRIMORDIAL_MODULE;
     private final EntityProxy.Concept path = TinkarTerm.PRIMORDIAL_PATH;
 
-    private final HashMap<String, EntityProxy.Concept> fqnToConceptHashMap = new HashMap<>();
+    private final LoincConceptIndex conceptIndex = new LoincConceptIndex();
 
     private static final Logger LOG = LoggerFactory.getLogger(LoincStarterData.class.getSimpleName());
 
@@ -120,6 +111,11 @@ public class LoincStarterData {
 
     public static final File PB_EXPORT_DATA = createFilePathInTarget.apply("data/tinkar-export-data-1.0.0-pb.zip");
     public static final Composer COMPOSER_SESSION_MANAGER = new Composer("LOINC Composer");
+    /**
+     * Every session of {@link #COMPOSER_SESSION_MANAGER} is opened and committed through it.
+     */
+    private static final LoincComposerSessions COMPOSER_SESSIONS =
+            new LoincComposerSessions(COMPOSER_SESSION_MANAGER);
 
     UUIDUtility uuidUtility = new UUIDUtility();
     public static List<String> partTypeNames = List.of("COMPONENT", "PROPERTY", "TIME", "SYSTEM", "SCALE", "METHOD", "CLASS", "CLASSTYPE");
@@ -127,17 +123,113 @@ public class LoincStarterData {
 
     private final File loincPartCSVFile;
 
+    private final boolean keepDataStoreOpen;
+
     private File loincConceptFile = null;
 
+    private LoincRowTable loincRowTable;
+
+    private List<String[]> loincPartRows;
+
+    private List<String[]> changedLoincPartRows;
+
+    private LoincReleaseManifest previousRelease;
+
+    private final LoincReleaseManifest releaseManifest = new LoincReleaseManifest();
+
+    private LoincDefinitionFingerprints definitionFingerprints = new LoincDefinitionFingerprints();
+
     private Session session;
+    private int composeParallelism = 1;
+    private int checkpointInterval = 50_000;
+    private IngestCheckpoint checkpoint;
     private int conceptCount = 0;
-    private int semanticsCreated = 0;
+    private final IngestMetrics metrics = new IngestMetrics();
+    private final IngestErrorReport errorReport = new IngestErrorReport(metrics);
+    private final LoincSemanticWriter semanticWriter =
+            new LoincSemanticWriter(LoincSemanticWriter.DEFAULT_BATCH_SIZE, metrics);
 
     public void setDataStore(File dataStore) {
         this.dataStore = dataStore;
     }
 
     private File dataStore;
+    private File metricsDirectory;
+    private LoincPbExport pbExport;
+    private LoincIngestStages ingestStages;
+    private boolean virtualThreadIo;
+    private ExecutorService ioExecutor;
+    private Future<List<String[]>> prefetchedPartRecords;
+    private Future<List<String[]>> prefetchedLoincRecords;
+    private LoincSnapshot snapshot;
+
+    /**
+     * Sets the directory the {@link IngestMetrics} files and the {@link IngestErrorReport} quarantine csv are written
+     * to when the ingest ends. Defaults to the datastore directory; without either they are only logged.
+     */
+    public void setMetricsDirectory(File metricsDirectory) {
+        this.metricsDirectory = metricsDirectory;
+    }
+
+    public IngestMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the problems the ingest ran into; its quarantine csv is written next to the metrics
+     */
+    public IngestErrorReport getErrorReport() {
+        return errorReport;
+    }
+
+    /**
+     * Streams every entity the ingest writes into a pb.zip while it runs, deflated on background threads. The archive
+     * holds what this ingest adds to the datastore and is complete when {@link #processLoincStarterDataCSVFile()}
+     * returns. Needs the single datastore mode.
+     *
+     * @param deflateLevel 0 to 9, or -1 for the zlib default
+     * @param threads      the number of threads that serialize and compress entities
+     */
+    public void setPbExport(File pbZip, int deflateLevel, int threads) {
+        if (!keepDataStoreOpen) {
+            throw new IllegalStateException("The streaming export needs the datastore to be kept open");
+        }
+        this.pbExport = new LoincPbExport(pbZip, deflateLevel, threads, metrics);
+    }
+
+    /**
+     * Ingests Loinc.csv as a staged pipeline: reading, tokenizing, mapping, composing and committing blocks of rows
+     * overlap instead of running one after another, and active and deprecated LOINC concepts are composed in one pass.
+     * Without stages the whole file is parsed before the first concept is composed.
+     */
+    public void setIngestStages(LoincIngestStages ingestStages) {
+        this.ingestStages = ingestStages;
+    }
+
+    /**
+     * Runs the blocking work of the ingest on virtual threads: Part.csv and Loinc.csv are read ahead while the
+     * starter concepts are composed, each batch is committed while the next one is composed, the reader and writer of
+     * the staged ingest and the pb.zip writer run on virtual threads. Tokenizing, hashing and composing stay on
+     * platform threads. The datastore is still saved and checkpointed after every batch, once its commit has finished,
+     * while the next batch is being composed; as that batch is not committed yet, the export is drained once per
+     * phase instead.
+     */
+    public void setVirtualThreadIo(boolean virtualThreadIo) {
+        this.virtualThreadIo = virtualThreadIo;
+    }
+
+    /**
+     * Sets the number of worker threads, each with its own Composer session, used to compose the starter, part and
+     * LOINC concepts. The default of 1 composes everything on the calling thread. A higher parallelism writes each
+     * batch under one STAMP per session, so the datastore is not identical to one composed sequentially, see
+     * {@link ParallelComposer}.
+     */
+    public void setComposeParallelism(int composeParallelism) {
+        if (composeParallelism < 1) {
+            throw new IllegalArgumentException("Compose parallelism must be at least 1");
+        }
+        this.composeParallelism = composeParallelism;
+    }
 
     public enum LOINC_AXES {
         COMPONENT(1),
@@ -147,7 +239,7 @@ public enum LOINC_AXES {
         SCALE_TYPE(5),
         METHOD(6);
 
-        private final int value;
+        final int value;
 
         LOINC_AXES(int i) {
             this.value = i;
@@ -157,6 +249,16 @@ public enum LOINC_AXES {
     private final String[] AXIS_FQNS = {"Component", "Property", "Time Aspect", "System", "Scale", "Method"};
 
     public LoincStarterData(File loincStarterDataCSVfile, File loincPartsCSVfile) {
+        this(loincStarterDataCSVfile, loincPartsCSVfile, false);
+    }
+
+    /**
+     * @param keepDataStoreOpen when true every phase runs against the datastore that is already started, sessions are
+     *                          committed without stopping and restarting it, and it is shut down once at the end of
+     *                          {@link #processLoincStarterDataCSVFile()}
+     */
+    public LoincStarterData(File loincStarterDataCSVfile, File loincPartsCSVfile, boolean keepDataStoreOpen) {
+        this.keepDataStoreOpen = keepDataStoreOpen;
         this.loincStarterDataCSVfile = loincStarterDataCSVfile;
         this.loincPartCSVFile = loincPartsCSVfile;
         if (!loincStarterDataCSVfile.getName().toLowerCase().endsWith(".csv"))
@@ -166,9 +268,9 @@ public LoincStarterData(File loincStarterDataCSVfile, File loincPartsCSVfile) {
             throw new IllegalArgumentException("This argument should be the Part.csv file");
         }
 
-        author = EntityProxy.Concept.make(LOINC_AUTHOR, UUID.nameUUIDFromBytes(LOINC_AUTHOR.getBytes()));
+        author = EntityProxy.Concept.make(LOINC_AUTHOR, LoincUuids.nameUuid(LOINC_AUTHOR));
 
-        session = COMPOSER_SESSION_MANAGER.open(status, time, TinkarTerm.USER, module, path);
+        session = COMPOSER_SESSIONS.open(status, time, TinkarTerm.USER, module, path);
 
         session.compose((ConceptAssembler conceptAssembler) -> conceptAssembler
                 .attach((FullyQualifiedName fqn) -> fqn
@@ -185,11 +287,9 @@ public LoincStarterData(File loincStarterDataCSVfile, File loincPartsCSVfile) {
                         .caseSignificance(CASE_SENSITIVE_EVALUATION))
         );
 
-        stopIngest();
-        PrimitiveData.start();
-        session = COMPOSER_SESSION_MANAGER.open(status, time, author, module, path);
+        restartSession(status);
 
-        fqnToConceptHashMap.put(LOINC_AUTHOR, author);
+        conceptIndex.add(LOINC_AUTHOR, author);
 
     }
 
@@ -215,543 +315,781 @@ public static void main(String[] args) throws IOException {
 
     }
 
-    public void setLoincConceptFile(File loincConceptFile) {
-        this.loincConceptFile = loincConceptFile;
+    /**
+     * Switches to a delta import against a previously imported release. Only the starter, Part and LOINC rows whose
+     * content differs from that release are composed and defined, as new versions of the existing concepts.
+     *
+     * @param storeOrManifest the datastore of the previous release, or its {@link LoincReleaseManifest} file
+     */
+    public void setPreviousRelease(File storeOrManifest) throws IOException {
+        this.previousRelease = LoincReleaseManifest.read(storeOrManifest);
+        LOG.info("Delta import against LOINC release " + previousRelease.getReleaseVersion()
+                + " with " + previousRelease.size() + " rows");
     }
 
-    public void processLoincConceptDataFile() throws IOException {
+    /**
+     * Sets the number of rows composed between two commits of the Composer sessions. After every commit the datastore
+     * is saved and an {@link IngestCheckpoint} is written next to it, so a failed run resumes after the last commit.
+     */
+    public void setCheckpointInterval(int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be at least 1");
+        }
+        this.checkpointInterval = checkpointInterval;
+    }
 
-        if (loincConceptFile == null)
-            return;
+    public void setLoincConceptFile(File loincConceptFile) {
+        this.loincConceptFile = loincConceptFile;
+        this.loincRowTable = null;
+    }
 
-        try (Stream<String> lines = Files.lines(loincConceptFile.toPath())) {
-            lines.skip(1) //skip first line, i.e. header line
-                    .map(row -> row.split(REGEX_LINEDATA, -1))
-                    .filter(data -> !(String.valueOf(data[STATUS_INDEX]).toLowerCase().contains("deprecated")))
-                    .forEach(data -> {
-                        conceptCount++;
-                        // LOG.info(String.format("%s | %s | %s | %s | %s",data[0], data[1],data[2],data[3],data[4]));
-                        String loincLongCommonName = fixString(data[LOINC_LONG_COMMON_NAME_INDEX]);
-                        String conceptID = fixString(data[CONCEPT_INDEX]);
+    /**
+     * Reads the Loinc.csv and Part.csv records from a {@link LoincSnapshot} instead of parsing the csv files. The
+     * LOINC concepts are ingested when the snapshot has a {@value LoincSnapshot#LOINC_TABLE} table, whether or not a
+     * Loinc.csv file is set.
+     */
+    public void setSnapshot(File snapshotFile) throws IOException {
+        this.snapshot = LoincSnapshot.open(snapshotFile.toPath());
+        this.loincRowTable = null;
+        this.loincPartRows = null;
+        this.changedLoincPartRows = null;
+    }
 
-                        //if (fqnToConceptHashMap.get(loincLongCommonName) != null) {
-                        EntityProxy.Concept newConcept = EntityProxy.Concept.make(conceptID, UUID.nameUUIDFromBytes(conceptID.getBytes()));
+    private boolean inSnapshot(String table) {
+        return snapshot != null && snapshot.hasTable(table);
+    }
 
-                        session.compose((ConceptAssembler conceptAssembler) -> conceptAssembler
-                                .attach((FullyQualifiedName fqn) -> fqn
-                                        .language(ENGLISH_LANGUAGE)
-                                        .text(loincLongCommonName)
-                                        .caseSignificance(DESCRIPTION_NOT_CASE_SENSITIVE))
-                                .attach((Synonym syn) -> syn
-                                        .language(ENGLISH_LANGUAGE)
-                                        .text( loincLongCommonName)
-                                        .caseSignificance(DESCRIPTION_NOT_CASE_SENSITIVE))
-                                .attach((Definition defn) -> defn
-                                        .language(ENGLISH_LANGUAGE)
-                                        .text(loincLongCommonName)
-                                        .caseSignificance(CASE_SENSITIVE_EVALUATION))
-                                .attach((Identifier identifier) -> identifier
-                                        .identifier(conceptID)
-                                        .source(newConcept))
+    /**
+     * @return the file the Loinc.csv records are read from, the snapshot or Loinc.csv itself, or {@code null}
+     */
+    private File loincConceptSource() {
+        return inSnapshot(LoincSnapshot.LOINC_TABLE) ? snapshot.getFile().toFile() : loincConceptFile;
+    }
 
-                        );
+    private File loincPartSource() {
+        return inSnapshot(LoincSnapshot.PART_TABLE) ? snapshot.getFile().toFile() : loincPartCSVFile;
+    }
 
-                        fqnToConceptHashMap.put(conceptID, newConcept);
-                    });
+    public void processLoincConceptDataFile() throws IOException {
 
+        if (loincConceptSource() == null)
+            return;
 
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        checkpoint().checkLoincConceptMode(ingestStages != null);
+        if (ingestStages != null) {
+            composeLoincConceptsStaged();
+            return;
         }
 
-        stopIngest();
-        PrimitiveData.start();
-        session = COMPOSER_SESSION_MANAGER.open(State.INACTIVE, time, author, module, path);
+        registerLoincConcepts(loincRows().active());
+        compose(Phase.ACTIVE_LOINC_CONCEPTS, loincRows().active(), State.ACTIVE, this::composeLoincConcept);
 
-        try (Stream<String> lines = Files.lines(loincConceptFile.toPath())) {
-            lines.skip(1) //skip first line, i.e. header line
-                    .map(row -> row.split(REGEX_LINEDATA, -1))
-                    .filter(data -> (String.valueOf(data[STATUS_INDEX]).toLowerCase().contains("deprecated")))
-                    .forEach(data -> {
-                        conceptCount++;
-                        // LOG.info(String.format("%s | %s | %s | %s | %s",data[0], data[1],data[2],data[3],data[4]));
-                        String loincLongCommonName = fixString(data[LOINC_LONG_COMMON_NAME_INDEX]);
-                        String conceptID = fixString(data[CONCEPT_INDEX]);
+        restartSession(State.INACTIVE);
 
-                        EntityProxy.Concept newConcept = EntityProxy.Concept.make(conceptID, UUID.nameUUIDFromBytes(conceptID.getBytes()));
-                        session.compose((ConceptAssembler conceptAssembler) -> conceptAssembler
-                                        .attach((FullyQualifiedName fqn) -> fqn
-                                                .language(ENGLISH_LANGUAGE)
-                                                .text(loincLongCommonName)
-                                                .caseSignificance(DESCRIPTION_NOT_CASE_SENSITIVE))
-                                        .attach((Synonym syn) -> syn
-                                                .language(ENGLISH_LANGUAGE)
-                                                .text( loincLongCommonName)
-                                                .caseSignificance(DESCRIPTION_NOT_CASE_SENSITIVE))
-                                        .attach((Definition defn) -> defn
-                                                .language(ENGLISH_LANGUAGE)
-                                                .text(loincLongCommonName)
-                                                .caseSignificance(CASE_SENSITIVE_EVALUATION))
-                                        .attach((Identifier identifier) -> identifier
-                                                .identifier(conceptID)
-                                                .source(newConcept)));
-
-                        fqnToConceptHashMap.put(conceptID, newConcept);
+        registerLoincConcepts(loincRows().deprecated());
+        compose(Phase.DEPRECATED_LOINC_CONCEPTS, loincRows().deprecated(), State.INACTIVE, this::composeLoincConcept);
 
-                    });
+        restartSession(State.ACTIVE);
 
+    }
 
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * Ingests Loinc.csv through a {@link LoincStagedIngest}, composing into sessions opened and committed through
+     * {@link #COMPOSER_SESSIONS}.
+     */
+    private void composeLoincConceptsStaged() throws IOException {
+        IngestCheckpoint checkpoint = checkpoint();
+        if (checkpoint.isComplete(Phase.DEPRECATED_LOINC_CONCEPTS)) {
+            LOG.info("Skipping " + Phase.LOINC_CONCEPTS + ", it was completed by an earlier run");
+            loincRows();
+            return;
         }
+        LoincStagedIngest.Target target = new LoincStagedIngest.Target() {
+            @Override
+            public Session openSession(State state) {
+                return LoincStarterData.this.openSession(state);
+            }
 
-        stopIngest();
-        PrimitiveData.start();
-        session = COMPOSER_SESSION_MANAGER.open(State.ACTIVE, time, author, module, path);
+            @Override
+            public void commitSession(Session session) {
+                LoincStarterData.this.commitSession(session);
+            }
 
+            @Override
+            public void composeConcept(Session session, LoincRow row, EntityProxy.Concept concept) {
+                composeLoincConcept(session, row, concept);
+            }
+
+            @Override
+            public void timeCommit(String phase, int rows, Runnable commit) {
+                LoincStarterData.this.timeCommit(phase, rows, commit);
+            }
+        };
+        LoincStagedIngest stagedIngest = new LoincStagedIngest(ingestStages, checkpoint, metrics, releaseManifest,
+                previousRelease, conceptIndex, target);
+        stagedIngest.setVirtualThreadIo(virtualThreadIo);
+
+        LoincIngestEvents.CsvPass event = new LoincIngestEvents.CsvPass();
+        event.begin();
+        loincRowTable = inSnapshot(LoincSnapshot.LOINC_TABLE)
+                ? stagedIngest.ingest(snapshot.table(LoincSnapshot.LOINC_TABLE))
+                : stagedIngest.ingest(loincConceptFile.toPath());
+        drainExport();
+        commitCsvPass(event, loincConceptSource(), stagedIngest.getRecords());
+        conceptCount += loincRowTable.size();
+        checkpoint.complete(Phase.DEPRECATED_LOINC_CONCEPTS);
+
+        LOG.info("Loaded " + loincRowTable.size() + " rows from " + loincConceptSource().getName() + " in stages");
     }
 
-    public void processLoincPartCsvFile() throws IOException {
+    private Session openSession(State state) {
+        return COMPOSER_SESSIONS.open(state, time, author, module, path);
+    }
 
-        processHeaderLine(loincPartCSVFile);
+    private void commitSession(Session session) {
+        COMPOSER_SESSIONS.commit(session);
+    }
 
-        try (Stream<String> lines = Files.lines(loincPartCSVFile.toPath())) {
-            lines.skip(1) //skip first line, i.e. header line
-                    .map(row -> row.split(REGEX_LINEDATA, -1))
+    private LoincRowTable loincRows() throws IOException {
+        if (loincRowTable == null) {
+            LoincIngestEvents.CsvPass event = new LoincIngestEvents.CsvPass();
+            event.begin();
+            IngestMetrics.Timing parseTiming = metrics.start(IngestMetrics.PARSE);
+            List<String[]> records = readRecords(loincConceptSource(), LoincSnapshot.LOINC_TABLE,
+                    prefetchedLoincRecords);
+            prefetchedLoincRecords = null;
+            metrics.add(IngestMetrics.ROWS_READ, Math.max(0, records.size() - 1));
+            String[] header = records.isEmpty() ? new String[0] : records.get(0);
+            int versionLastChangedIndex = columnIndex(header, LoincConstants.VERSION_LAST_CHANGED);
+            int changeTypeIndex = columnIndex(header, LoincConstants.CHNG_TYPE);
+            TreeMap<String, Integer> changeTypes = new TreeMap<>();
+
+            loincRowTable = LoincRowTable.from(records.stream()
+                    .skip(1) //skip first line, i.e. header line
                     .filter(data -> {
-                                String cleanString = fixString(data[1]);
-                                return partTypeNames.contains(fixString(cleanString));
-                            }
-                    )
-                    .forEach(data -> {
-                        // LOG.info(String.format("%s | %s | %s | %s | %s",data[0], data[1],data[2],data[3],data[4]));
-                        EntityProxy.Concept newConcept = EntityProxy.Concept.make(fixString(data[PART_SYNOMYM_INDEX]), UUID.nameUUIDFromBytes(fixString(data[CONCEPT_INDEX]).getBytes()));
-
-                        session.compose((ConceptAssembler conceptAssembler) -> conceptAssembler
-                                .attach((FullyQualifiedName fqn) -> fqn
-                                        .language(ENGLISH_LANGUAGE)
-                                        .text(fixString(data[PART_FQN_INDEX]))
-                                        .caseSignificance(DESCRIPTION_NOT_CASE_SENSITIVE))
-                                .attach((Synonym syn) -> syn
-                                        .language(ENGLISH_LANGUAGE)
-                                        .text( fixString(data[PART_SYNOMYM_INDEX]))
-                                        .caseSignificance(DESCRIPTION_NOT_CASE_SENSITIVE))
-                                .attach((Definition defn) -> defn
-                                        .language(ENGLISH_LANGUAGE)
-                                        .text(fixString(data[PART_SYNOMYM_INDEX]))
-                                        .caseSignificance(CASE_SENSITIVE_EVALUATION))
-                                .attach((Identifier identifier) -> identifier
-                                        .identifier(fixString(data[PART_SYNOMYM_INDEX]))
-                                        .source(newConcept)));
+                        if (versionLastChangedIndex >= 0 && versionLastChangedIndex < data.length) {
+                            releaseManifest.noteVersion(data[versionLastChangedIndex]);
+                        }
+                        if (!changedSincePreviousRelease(data[0], data)) {
+                            metrics.increment(IngestMetrics.ROWS_SKIPPED);
+                            return false;
+                        }
+                        if (changeTypeIndex >= 0 && changeTypeIndex < data.length) {
+                            changeTypes.merge(data[changeTypeIndex], 1, Integer::sum);
+                        }
+                        return true;
+                    })
+                    .iterator());
+            parseTiming.close();
+            commitCsvPass(event, loincConceptSource(), records.size() - 1);
+            LOG.info("Loaded " + loincRowTable.size() + " rows from " + loincConceptSource().getName());
+            if (previousRelease != null) {
+                LOG.info("Delta import: " + loincRowTable.size() + " of " + (records.size() - 1)
+                        + " LOINC rows changed since release " + previousRelease.getReleaseVersion()
+                        + ", by change type " + changeTypes);
+            }
+        }
+        return loincRowTable;
+    }
 
-                        fqnToConceptHashMap.put(fixString(data[PART_FQN_INDEX]), newConcept);
-                        fqnToConceptHashMap.put(fixString(data[CONCEPT_INDEX]), newConcept);
+    /**
+     * Composes the rows of a phase in batches of {@link #setCheckpointInterval(int) checkpointInterval} rows,
+     * committing and checkpointing after each batch. Rows committed by an earlier run are skipped.
+     */
+    private <T> void compose(Phase phase, List<T> rows, State state, BiConsumer<Session, T> composeRow) {
+        IngestCheckpoint checkpoint = checkpoint();
+        if (checkpoint.isComplete(phase)) {
+            LOG.info("Skipping " + phase + ", it was completed by an earlier run");
+            return;
+        }
+        metrics.add(IngestMetrics.ROWS_SKIPPED, Math.min(checkpoint.resumeRow(phase), rows.size()));
+        Future<?> pendingCommit = null;
+        int pendingEnd = -1;
+        for (int start = checkpoint.resumeRow(phase); start < rows.size(); start += checkpointInterval) {
+            int end = Math.min(start + checkpointInterval, rows.size());
+            List<T> batch = rows.subList(start, end);
+            LoincIngestEvents.ComposeBatch event = new LoincIngestEvents.ComposeBatch();
+            event.begin();
+            if (composeParallelism <= 1) {
+                try (IngestMetrics.Timing ignored = metrics.start(IngestMetrics.COMPOSE)) {
+                    batch.forEach(row -> composeRow.accept(session, row));
+                }
+                event.end();
+                Session composed = session;
+                if (ioExecutor != null) {
+                    // Commit on a virtual thread while the next batch is composed, one commit at a time. Once the
+                    // previous commit is done its rows are checkpointed; the export is drained after the last one,
+                    // as the batch just composed is not committed yet.
+                    await(pendingCommit);
+                    if (pendingEnd >= 0) {
+                        checkpointBatch(phase, pendingEnd);
+                    }
+                    pendingCommit = ioExecutor.submit(() -> timeCommit(phase.name(), batch.size(),
+                            () -> commitSession(composed)));
+                    pendingEnd = end;
+                    session = openSession(state);
+                } else {
+                    session = openSession(state);
+                    commitBatch(phase, batch.size(), end, composed);
+                }
+            } else {
+                // The parallel composer commits its sessions itself, so its commits count as compose time.
+                try (IngestMetrics.Timing ignored = metrics.start(IngestMetrics.COMPOSE)) {
+                    new ParallelComposer(COMPOSER_SESSIONS, composeParallelism).composeAll(batch,
+                            () -> openSession(state), composeRow);
+                }
+                event.end();
+                drainExport();
+                commitBatch(phase, batch.size(), end, null);
+            }
+            if (event.shouldCommit()) {
+                event.phase = phase.name();
+                event.rows = batch.size();
+                event.sessions = Math.min(composeParallelism, batch.size());
+                event.firstCode = rowCode(batch.get(0));
+                event.lastCode = rowCode(batch.get(batch.size() - 1));
+                event.commit();
+            }
+            metrics.add(IngestMetrics.CONCEPTS, batch.size());
+        }
+        await(pendingCommit);
+        if (pendingEnd >= 0) {
+            drainExport();
+            commitBatch(phase, 0, pendingEnd, null);
+        }
+        checkpoint.complete(phase);
+    }
 
-                    });
+    /**
+     * Commits the session of a batch, if it is not committed yet, saves the datastore and checkpoints the first
+     * {@code end} rows of the phase.
+     */
+    private void commitBatch(Phase phase, int rows, int end, Session composed) {
+        if (composed != null) {
+            commit(phase.name(), rows, () -> commitSession(composed));
+        }
+        if (checkpoint().isDurable()) {
+            commit(phase.name(), rows, PrimitiveData::save);
+        }
+        checkpoint().commit(phase, end);
+    }
 
+    /**
+     * Saves the datastore and checkpoints the first {@code end} rows of the phase, without draining the export.
+     */
+    private void checkpointBatch(Phase phase, int end) {
+        if (checkpoint().isDurable()) {
+            timeCommit(phase.name(), 0, PrimitiveData::save);
+        }
+        checkpoint().commit(phase, end);
+    }
 
-        } catch (IOException e) {
+    private static void await(Future<?> future) {
+        if (future == null) {
+            return;
+        }
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException
+                    ? runtimeException : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
         }
-
     }
 
-    private static String fixString(String inputString) {
-        String cleanString;
-        cleanString = inputString.replaceAll("\"", "");
-        return cleanString;
+    private IngestCheckpoint checkpoint() {
+        if (checkpoint == null) {
+            checkpoint = IngestCheckpoint.open(dataStore, loincStarterDataCSVfile, loincPartSource(),
+                    loincConceptSource());
+        }
+        return checkpoint;
     }
 
-    public void processLoincStarterDataCSVFile() throws IOException {
-
-        try (Stream<String> lines = Files.lines(loincStarterDataCSVfile.toPath())) {
-            lines.skip(1) //skip first line, i.e. header line
-                    .map(row -> row.split(REGEX_LINEDATA, -1))
-                    .forEach(data -> {
+    private void registerLoincConcepts(List<LoincRow> rows) {
+        List<String> conceptIDs = rows.stream().map(LoincRow::loincNumber).toList();
+        UUID[] uuids = LoincUuids.nameUuids(conceptIDs);
+        for (int i = 0; i < uuids.length; i++) {
+            conceptIndex.add(conceptIDs.get(i), conceptIDs.get(i), uuids[i]);
+        }
+        conceptCount += uuids.length;
+    }
 
-                        String synonym = getSynonym(data);
-                        String definition = getDefinition(data);
+    private void composeLoincConcept(Session session, LoincRow row) {
+        composeLoincConcept(session, row, conceptIndex.get(row.loincNumber()));
+    }
 
-                        EntityProxy.Concept newConcept = EntityProxy.Concept.make(data[CONCEPT_INDEX], UUID.nameUUIDFromBytes(data[CONCEPT_INDEX].getBytes()));
+    private void composeLoincConcept(Session session, LoincRow row, EntityProxy.Concept newConcept) {
+        String loincLongCommonName = row.longCommonName();
+        String conceptID = row.loincNumber();
 
-                        session.compose((ConceptAssembler conceptAssembler) -> conceptAssembler
-                                .attach((FullyQualifiedName fqn) -> fqn
-                                        .language(ENGLISH_LANGUAGE)
-                                        .text(data[FQN_INDEX])
-                                        .caseSignificance(DESCRIPTION_NOT_CASE_SENSITIVE))
-                                .attach((Synonym syn) -> syn
-                                        .language(ENGLISH_LANGUAGE)
-                                        .text( synonym)
-                                        .caseSignificance(DESCRIPTION_NOT_CASE_SENSITIVE))
-                                .attach((Definition defn) -> defn
-                                        .language(ENGLISH_LANGUAGE)
-                                        .text(definition)
-                                        .caseSignificance(CASE_SENSITIVE_EVALUATION))
-                                .attach((Identifier identifier) -> identifier
-                                        .identifier(data[CONCEPT_INDEX])
-                                        .source(newConcept)));
+        session.compose((ConceptAssembler conceptAssembler) -> conceptAssembler
+                .attach((FullyQualifiedName fqn) -> fqn
+                        .language(ENGLISH_LANGUAGE)
+                        .text(loincLongCommonName)
+                        .caseSignificance(DESCRIPTION_NOT_CASE_SENSITIVE))
+                .attach((Synonym syn) -> syn
+                        .language(ENGLISH_LANGUAGE)
+                        .text( loincLongCommonName)
+                        .caseSignificance(DESCRIPTION_NOT_CASE_SENSITIVE))
+                .attach((Definition defn) -> defn
+                        .language(ENGLISH_LANGUAGE)
+                        .text(loincLongCommonName)
+                        .caseSignificance(CASE_SENSITIVE_EVALUATION))
+                .attach((Identifier identifier) -> identifier
+                        .identifier(conceptID)
+                        .source(newConcept)));
+    }
 
-                        fqnToConceptHashMap.put(data[CONCEPT_INDEX], newConcept);
+    public void processLoincPartCsvFile() throws IOException {
 
+        try {
+            loincPartRows()
+                    .forEach(data -> {
+                        int slot = conceptIndex.add(data[CONCEPT_INDEX], data[PART_SYNOMYM_INDEX],
+                                LoincUuids.nameUuid(data[CONCEPT_INDEX]));
+                        conceptIndex.alias(data[PART_FQN_INDEX], slot);
                     });
 
-            processLoincPartCsvFile();
-
-            processLoincConceptDataFile();
-
+            compose(Phase.PART_CONCEPTS, changedLoincPartRows(), status, this::composeLoincPart);
 
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
-        //Stop the composer and release the lock on the database so StartData can use it.
-        stopIngest();
-
-        addStatedDefinitionAndNavigation();
-
-        LOG.info(conceptCount + " LOINC Concepts were created");
     }
 
+    private void composeLoincPart(Session session, String[] data) {
+        // LOG.info(String.format("%s | %s | %s | %s | %s",data[0], data[1],data[2],data[3],data[4]));
+        EntityProxy.Concept newConcept = conceptIndex.get(data[CONCEPT_INDEX]);
 
+        session.compose((ConceptAssembler conceptAssembler) -> conceptAssembler
+                .attach((FullyQualifiedName fqn) -> fqn
+                        .language(ENGLISH_LANGUAGE)
+                        .text(data[PART_FQN_INDEX])
+                        .caseSignificance(DESCRIPTION_NOT_CASE_SENSITIVE))
+                .attach((Synonym syn) -> syn
+                        .language(ENGLISH_LANGUAGE)
+                        .text( data[PART_SYNOMYM_INDEX])
+                        .caseSignificance(DESCRIPTION_NOT_CASE_SENSITIVE))
+                .attach((Definition defn) -> defn
+                        .language(ENGLISH_LANGUAGE)
+                        .text(data[PART_SYNOMYM_INDEX])
+                        .caseSignificance(CASE_SENSITIVE_EVALUATION))
+                .attach((Identifier identifier) -> identifier
+                        .identifier(data[PART_SYNOMYM_INDEX])
+                        .source(newConcept)));
+    }
 
-    private void addStatedDefinitionAndNavigation() {
-
-        StarterData starterData = new StarterData(dataStore, uuidUtility)
-                .init()
-                .authoringSTAMP(
-                        TinkarTerm.ACTIVE_STATE,
-                        time,
-                        author,
-                        module,
-                        path);
-
-
-        addNavigationAndDefintionToStarterConcepts(starterData, uuidUtility);
-
-        addNavigationAndDefinitionToPartsConcepts(starterData);
-
-        addNavigationAndDefinitionToMainLoincConcepts(starterData);
-
-        starterData.build(); //Natively writing data to spined array
-        //exportStarterData(); //exports starter data to pb.zip
-        starterData.shutdown();
+    /**
+     * The Part.csv rows of the part types that are imported. The file is mapped and tokenized once and the rows
+     * are shared by the concept and the definition passes.
+     */
+    private List<String[]> loincPartRows() throws IOException {
+        if (loincPartRows == null) {
+            LoincIngestEvents.CsvPass event = new LoincIngestEvents.CsvPass();
+            event.begin();
+            try (IngestMetrics.Timing ignored = metrics.start(IngestMetrics.PARSE)) {
+                List<String[]> records = readRecords(loincPartSource(), LoincSnapshot.PART_TABLE,
+                        prefetchedPartRecords);
+                metrics.add(IngestMetrics.ROWS_READ, Math.max(0, records.size() - 1));
+                loincPartRows = records.stream()
+                        .skip(1) //skip first line, i.e. header line
+                        .filter(data -> partTypeNames.contains(data[PART_TYPE_INDEX]))
+                        .toList();
+                commitCsvPass(event, loincPartSource(), records.size() - 1);
+            }
+        }
+        return loincPartRows;
+    }
 
-        starterData = new StarterData(dataStore, uuidUtility)
-                .init()
-                .authoringSTAMP(
-                        TinkarTerm.INACTIVE_STATE,
-                        time,
-                        author,
-                        module,
-                        path);
+    /**
+     * @return the records of the snapshot table, the records read ahead on a virtual thread, or the file read now
+     */
+    private List<String[]> readRecords(File file, String table, Future<List<String[]>> prefetched)
+            throws IOException {
+        if (inSnapshot(table)) {
+            return snapshot.table(table).records();
+        }
+        if (prefetched == null) {
+            return MappedCsvReader.read(file.toPath());
+        }
+        try {
+            return prefetched.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new RuntimeException("Unable to read " + file, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + file, e);
+        }
+    }
 
-        addNavigationAndDefinitionToDeprecatedMainLoincConcepts(starterData);
+    /**
+     * The Part.csv rows that differ from the previous release, or all of them when this is not a delta import.
+     */
+    private List<String[]> changedLoincPartRows() throws IOException {
+        if (changedLoincPartRows == null) {
+            changedLoincPartRows = loincPartRows().stream()
+                    .filter(data -> changedSincePreviousRelease(data[CONCEPT_INDEX], data))
+                    .toList();
+            metrics.add(IngestMetrics.ROWS_SKIPPED, loincPartRows().size() - changedLoincPartRows.size());
+            if (previousRelease != null) {
+                LOG.info("Delta import: " + changedLoincPartRows.size() + " of " + loincPartRows().size()
+                        + " Part rows changed since release " + previousRelease.getReleaseVersion());
+            }
+        }
+        return changedLoincPartRows;
+    }
 
-        starterData.build(); //Natively writing data to spined array
-        //exportStarterData(); //exports starter data to pb.zip
-        starterData.shutdown();
+    /**
+     * Records the row in the manifest of this release and compares it with the previous release.
+     */
+    private boolean changedSincePreviousRelease(String key, String[] data) {
+        long fingerprint = releaseManifest.put(key, data);
+        return previousRelease == null || !previousRelease.matches(key, fingerprint);
+    }
 
+    private static int columnIndex(String[] header, String columnName) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
+    public void processLoincStarterDataCSVFile() throws IOException {
+        boolean completed = false;
+        try {
+            if (virtualThreadIo) {
+                ioExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("loinc-io-", 0).factory());
+                if (!inSnapshot(LoincSnapshot.PART_TABLE)) {
+                    prefetchedPartRecords = ioExecutor.submit(() -> MappedCsvReader.read(loincPartCSVFile.toPath()));
+                }
+                if (loincConceptFile != null && ingestStages == null && !inSnapshot(LoincSnapshot.LOINC_TABLE)) {
+                    prefetchedLoincRecords = ioExecutor.submit(() -> MappedCsvReader.read(loincConceptFile.toPath()));
+                }
+            }
+            if (pbExport != null) {
+                if (virtualThreadIo) {
+                    pbExport = pbExport.withVirtualThreadWriter();
+                }
+                pbExport.start();
+                pbExport.include(conceptIndex.nid(LOINC_AUTHOR));
+            }
+            ingest();
+            completed = true;
+        } finally {
+            if (ioExecutor != null) {
+                if (!completed) {
+                    ioExecutor.shutdownNow();
+                }
+                ioExecutor.close();
+                ioExecutor = null;
+            }
+            if (pbExport != null) {
+                pbExport.close();
+            }
+            metrics.gauge(IngestMetrics.SUCCESS).set(completed ? 1 : 0);
+            LOG.info(metrics.summary());
+            if (errorReport.total() > 0) {
+                LOG.warn(errorReport.summary());
+            }
+            File directory = metricsDirectory != null ? metricsDirectory : dataStore;
+            if (directory != null && directory.isDirectory()) {
+                try {
+                    metrics.write(directory);
+                    errorReport.writeQuarantine(directory);
+                } catch (UncheckedIOException e) {
+                    LOG.warn("Unable to write the ingest metrics to " + directory, e);
+                }
+            }
+        }
     }
 
-    private void addNavigationAndDefinitionToMainLoincConcepts(StarterData starterData) {
+    private void ingest() throws IOException {
 
-        try (Stream<String> lines = Files.lines(loincConceptFile.toPath())) {
-            lines.skip(1) //skip first line, i.e. header line
-                    .map(row -> row.split(REGEX_LINEDATA, -1))
-                    .filter(data -> !(String.valueOf(data[STATUS_INDEX]).toLowerCase().contains("deprecated")))
-                    .forEach(data -> {
-                        // LOG.info(String.format("%s | %s | %s | %s | %s",data[0], data[1],data[2],data[3],data[4]));
-                        StringBuilder owlString = new StringBuilder();
-
-                        EntityProxy.Concept newConcept = fqnToConceptHashMap.get(fixString(data[CONCEPT_INDEX]));
-
-                        starterData.concept(newConcept)
-                                .identifier(TinkarTerm.UNIVERSALLY_UNIQUE_IDENTIFIER, data[CONCEPT_INDEX])
-                                //TODO Doing the below will cause the reasoner to break
-                                //.statedDefinition(Arrays.asList(fqnToConceptHashMap.get(fixString(data[CLASS_INDEX]))))
-                                .build();
-
-                        owlString.append("EquivalentClasses( \n");
-                        owlString.append(":[" + newConcept.publicId().asUuidArray()[0] + "] \n");
-                        owlString.append("\tObjectIntersectionOf( ");
-                        owlString.append(":[" + fqnToConceptHashMap.get(OBSERVABLE_ENTITY).publicId().asUuidArray()[0] + "] \n");
-
-
-                        for (LOINC_AXES axis : LOINC_AXES.values()) {
-                            EntityProxy.Concept loincAxisConcept = fqnToConceptHashMap.get(fixString(data[axis.value]));
-
-                            if (loincAxisConcept != null) {
-                                owlString.append("\tObjectSomeValuesFrom( \n");
-                                owlString.append("\t\t:[" + TinkarTerm.ROLE_GROUP.publicId().asUuidArray()[0] + "] \n");
-                                owlString.append("\t\t\tObjectSomeValuesFrom( \n");
-                                owlString.append("\t\t\t:[" + fqnToConceptHashMap.get(AXIS_FQNS[axis.value - 1]).publicId().asUuidArray()[0] + "] \n");
-                                owlString.append("\t\t\t:[" + loincAxisConcept.publicId().asUuidArray()[0] + "] \n");
-                                owlString.append("\t\t )\n");
-                                owlString.append("\t )\n");
-
-                            } else {
-                                LOG.info("There was no axis value for " + axis);
-                            }
-                        }
+        try (Stream<String[]> lines = CsvTokenizer.records(loincStarterDataCSVfile.toPath())) {
+            List<String[]> starterRows;
+            LoincIngestEvents.CsvPass event = new LoincIngestEvents.CsvPass();
+            event.begin();
+            try (IngestMetrics.Timing ignored = metrics.start(IngestMetrics.PARSE)) {
+                starterRows = lines.skip(1) //skip first line, i.e. header line
+                        .toList();
+            }
+            commitCsvPass(event, loincStarterDataCSVfile, starterRows.size());
+            metrics.add(IngestMetrics.ROWS_READ, starterRows.size());
 
-                        owlString.append("\t\t)");  // Close ObjectIntersectionOf
-                        owlString.append("\t"); // Close EquivalentClasses
+            starterRows.forEach(data -> conceptIndex.add(data[CONCEPT_INDEX], data[CONCEPT_INDEX],
+                    LoincUuids.nameUuid(data[CONCEPT_INDEX])));
+            List<String[]> changedStarterRows = starterRows.stream()
+                    .filter(data -> changedSincePreviousRelease(data[CONCEPT_INDEX], data))
+                    .toList();
+            metrics.add(IngestMetrics.ROWS_SKIPPED, starterRows.size() - changedStarterRows.size());
+            compose(Phase.STARTER_CONCEPTS, changedStarterRows, status, this::composeStarterConcept);
 
-                        //LOG.info(owlString.toString());
+            processLoincPartCsvFile();
 
-                        try {
-                            int nid = newConcept.nid();
-                            reasonOWLexpression(owlString.toString(), nid);
-                            addLoincClassSemanticPattern(newConcept, data[CLASSNAME_INDEX], data[CLASS_TYPE_INDEX], starterData);
-                            addUUCMSemanticPattern(newConcept, data[UUCM_PATTERN_INDEX], starterData);
-                            addLoincTestOrdObservationSemanticPattern(newConcept, data[ORDER_OBS_INDEX], starterData);
-                        } catch (NullPointerException nullPointerException) {
-                            LOG.error(nullPointerException.getMessage());
-                        }
+            processLoincConceptDataFile();
 
-                    });
 
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-    }
 
-    private void addNavigationAndDefinitionToDeprecatedMainLoincConcepts(StarterData starterData) {
+        if (keepDataStoreOpen) {
+            commit("CONCEPTS", 0, () -> commitSession(session));
+        } else {
+            //Stop the composer and release the lock on the database so StartData can use it.
+            stopIngest();
+        }
 
-        try (Stream<String> lines = Files.lines(loincConceptFile.toPath())) {
-            lines.skip(1) //skip first line, i.e. header line
-                    .map(row -> row.split(REGEX_LINEDATA, -1))
-                    .filter(data -> (String.valueOf(data[STATUS_INDEX]).toLowerCase().contains("deprecated")))
-                    .forEach(data -> {
-                        // LOG.info(String.format("%s | %s | %s | %s | %s",data[0], data[1],data[2],data[3],data[4]));
-                        StringBuilder owlString = new StringBuilder();
-
-                        EntityProxy.Concept newConcept = fqnToConceptHashMap.get(fixString(data[CONCEPT_INDEX]));
-
-                        starterData.concept(newConcept)
-                                .identifier(TinkarTerm.UNIVERSALLY_UNIQUE_IDENTIFIER, data[CONCEPT_INDEX])
-                                //TODO Doing the below will cause the reasoner to break
-                                //.statedDefinition(Arrays.asList(fqnToConceptHashMap.get(fixString(data[CLASS_INDEX]))))
-                                .build();
-
-                        owlString.append("EquivalentClasses( \n");
-                        owlString.append(":[" + newConcept.publicId().asUuidArray()[0] + "] \n");
-                        owlString.append("\tObjectIntersectionOf( ");
-                        owlString.append(":[" + fqnToConceptHashMap.get(OBSERVABLE_ENTITY).publicId().asUuidArray()[0] + "] \n");
-
-
-                        for (LOINC_AXES axis : LOINC_AXES.values()) {
-                            EntityProxy.Concept loincAxisConcept = fqnToConceptHashMap.get(fixString(data[axis.value]));
-
-                            if (loincAxisConcept != null) {
-                                owlString.append("\tObjectSomeValuesFrom( \n");
-                                owlString.append("\t\t:[" + TinkarTerm.ROLE_GROUP.publicId().asUuidArray()[0] + "] \n");
-                                owlString.append("\t\t\tObjectSomeValuesFrom( \n");
-                                owlString.append("\t\t\t:[" + fqnToConceptHashMap.get(AXIS_FQNS[axis.value - 1]).publicId().asUuidArray()[0] + "] \n");
-                                owlString.append("\t\t\t:[" + loincAxisConcept.publicId().asUuidArray()[0] + "] \n");
-                                owlString.append("\t\t )\n");
-                                owlString.append("\t )\n");
-
-                            } else {
-                                LOG.info("There was no axis value for " + axis);
-                            }
-                        }
+        addStatedDefinitionAndNavigation();
 
-                        owlString.append("\t\t)");  // Close ObjectIntersectionOf
-                        owlString.append("\t"); // Close EquivalentClasses
+        if (dataStore != null) {
+            releaseManifest.write(dataStore);
+        }
+        checkpoint().finish();
 
-                        //LOG.info(owlString.toString());
+        LOG.info(conceptCount + " LOINC Concepts were created");
+        LOG.info(metrics.count(IngestMetrics.SEMANTICS) + " semantics were created");
+    }
 
-                        try {
-                            int nid = newConcept.nid();
-                            reasonOWLexpression(owlString.toString(), nid);
-                            addLoincClassSemanticPattern(newConcept, data[CLASSNAME_INDEX], data[CLASS_TYPE_INDEX], starterData);
-                            addLoincTestOrdObservationSemanticPattern(newConcept, data[ORDER_OBS_INDEX], starterData);
-                            addUUCMSemanticPattern(newConcept, data[UUCM_PATTERN_INDEX], starterData);
-                        } catch (NullPointerException nullPointerException) {
-                            LOG.error(nullPointerException.getMessage());
-                            //severeErrors++;
-                        }
+    private void composeStarterConcept(Session session, String[] data) {
+        String synonym = getSynonym(data);
+        String definition = getDefinition(data);
 
-                    });
+        EntityProxy.Concept newConcept = conceptIndex.get(data[CONCEPT_INDEX]);
 
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        session.compose((ConceptAssembler conceptAssembler) -> conceptAssembler
+                .attach((FullyQualifiedName fqn) -> fqn
+                        .language(ENGLISH_LANGUAGE)
+                        .text(data[FQN_INDEX])
+                        .caseSignificance(DESCRIPTION_NOT_CASE_SENSITIVE))
+                .attach((Synonym syn) -> syn
+                        .language(ENGLISH_LANGUAGE)
+                        .text( synonym)
+                        .caseSignificance(DESCRIPTION_NOT_CASE_SENSITIVE))
+                .attach((Definition defn) -> defn
+                        .language(ENGLISH_LANGUAGE)
+                        .text(definition)
+                        .caseSignificance(CASE_SENSITIVE_EVALUATION))
+                .attach((Identifier identifier) -> identifier
+                        .identifier(data[CONCEPT_INDEX])
+                        .source(newConcept)));
     }
 
-    private void reasonOWLexpression(String owlString, int nid) {
-        try {
-            LOG.info("Attempting to reason this Ontology: ");
-            LOG.info(owlString);
-            LogicalExpression expression = SctOwlUtilities.sctToLogicalExpression(owlString, "");
-            // LOG.info(expression.toString());
-            Transaction transaction = new Transaction("LOINC concept " + nid);
-            StampPositionRecord stampPositionRecord = StampPositionRecordBuilder.builder().time(Long.MAX_VALUE).pathForPositionNid(path.nid()).build();
-            StampCoordinateRecord stampCoordinateRecord = StampCoordinateRecordBuilder.builder()
-                    .allowedStates(StateSet.ACTIVE)
-                    .stampPosition(stampPositionRecord)
-                    .moduleNids(IntIds.set.of(module.nid()))
-                    .build().withStampPositionTime(Long.MAX_VALUE);
-
-            LOG.info("Processing Concept : " + EntityService.get().getEntityFast(nid).description());
-            addLogicalExpression(transaction, nid,
-                    expression,
-                    System.currentTimeMillis(),
-                    stampCoordinateRecord);
 
 
-        } catch (IOException e) {
-            LOG.error(e.getMessage());
-            //severeErrors++;
-
-        } catch (Exception e) {
-            LOG.error(e.getMessage());
-            //severeErrors++;
+    private void addStatedDefinitionAndNavigation() throws IOException {
+        if (dataStore != null) {
+            definitionFingerprints = LoincDefinitionFingerprints.load(dataStore);
+            LOG.info("Loaded " + definitionFingerprints.size() + " stated definition fingerprints");
         }
-    }
 
-    /**
-     * Adds the relationship graph.
-     *
-     * @param conceptNid        the conceptNid
-     * @param logicalExpression the logical expression
-     * @param time              the time
-     * @param stampCoordinate   for determining current version if a graph already
-     */
-    private void addLogicalExpression(Transaction transaction, int conceptNid,
-                                      LogicalExpression logicalExpression,
-                                      long time, StampCoordinateRecord stampCoordinate) throws Exception {
+        if (checkpoint().isComplete(Phase.ACTIVE_DEFINITIONS)) {
+            LOG.info("Skipping " + Phase.ACTIVE_DEFINITIONS + ", it was completed by an earlier run");
+            module = starterDataModule();
+        } else {
+            StarterData starterData = openStarterData(TinkarTerm.ACTIVE_STATE);
+            LoincPatternRegistry patterns = new LoincPatternRegistry(starterData.getAuthoringSTAMP());
 
-        // See if a semantic already exists in this pattern referencing this concept...
 
-        int[] semanticNidsForComponentOfPattern = EntityService.get().semanticNidsForComponentOfPattern(conceptNid, destinationPatternNid);
-        if (semanticNidsForComponentOfPattern.length > 0) {
-            if (semanticNidsForComponentOfPattern.length != 1) {
-                throw new IllegalStateException("To many graphs for component: " + PrimitiveData.text(conceptNid));
-            }
-            SemanticRecord existingSemantic = EntityService.get().getEntityFast(semanticNidsForComponentOfPattern[0]);
-            Latest<SemanticVersionRecord> latest = stampCoordinate.stampCalculator().latest(existingSemantic);
+            addNavigationAndDefintionToStarterConcepts(starterData, uuidUtility);
 
-            if (latest.isPresent()) {
-                SemanticEntityVersion logicalExpressionSemanticVersion = latest.get();
-                DiTreeEntity latestExpression = (DiTreeEntity) logicalExpressionSemanticVersion.fieldValues().get(0);
-                DiTreeEntity newExpression = (DiTreeEntity) logicalExpression.sourceGraph();
+            addNavigationAndDefinitionToPartsConcepts(starterData, patterns);
 
-                IsomorphicResultsLeafHash isomorphicResultsComputer = new IsomorphicResultsLeafHash(latestExpression, newExpression, conceptNid);
-                IsomorphicResults isomorphicResults = isomorphicResultsComputer.call();
+            if (loincRowTable != null) {
+                addNavigationAndDefinitionToLoincConcepts(starterData, patterns, loincRowTable.active());
+            }
 
-                if (!isomorphicResults.equivalent()) {
-                    addNewVersion(transaction, logicalExpression, time, SemanticRecordBuilder.builder(existingSemantic));
-                }
-            } else {
-                // Latest is inactive or non-existent, need to add new.
-                addNewVersion(transaction, logicalExpression, time, SemanticRecordBuilder.builder(existingSemantic));
+            semanticWriter.flush();
+            buildStarterData(starterData, TinkarTerm.ACTIVE_STATE,
+                    loincRowTable != null ? loincRowTable.active().size() : 0);
+            //exportStarterData(); //exports starter data to pb.zip
+            if (!keepDataStoreOpen) {
+                starterData.shutdown();
+            } else if (checkpoint().isDurable()) {
+                PrimitiveData.save();
             }
-        } else {
-// Create UUID from seed and assign SemanticBuilder the value
-            UUID generartedSemanticUuid = UuidT5Generator.singleSemanticUuid(EntityService.get().getEntityFast(destinationPatternNid),
-                    EntityService.get().getEntityFast(conceptNid));
+            writeDefinitionFingerprints();
+            checkpoint().complete(Phase.ACTIVE_DEFINITIONS);
+        }
+
+        StarterData starterData = openStarterData(TinkarTerm.INACTIVE_STATE);
+        LoincPatternRegistry patterns = new LoincPatternRegistry(starterData.getAuthoringSTAMP());
 
-            SemanticRecordBuilder newSemanticBuilder = SemanticRecordBuilder.builder();
-            newSemanticBuilder.mostSignificantBits(generartedSemanticUuid.getMostSignificantBits());
-            newSemanticBuilder.leastSignificantBits(generartedSemanticUuid.getLeastSignificantBits());
-            newSemanticBuilder.patternNid(destinationPatternNid);
-            newSemanticBuilder.referencedComponentNid(conceptNid);
-            newSemanticBuilder.nid(PrimitiveData.nid(generartedSemanticUuid));
+        if (loincRowTable != null) {
+            addNavigationAndDefinitionToLoincConcepts(starterData, patterns, loincRowTable.deprecated());
+        }
 
-            addNewVersion(transaction, logicalExpression, time, newSemanticBuilder);
+        semanticWriter.flush();
+        buildStarterData(starterData, TinkarTerm.INACTIVE_STATE,
+                loincRowTable != null ? loincRowTable.deprecated().size() : 0);
+        //exportStarterData(); //exports starter data to pb.zip
+        if (pbExport != null) {
+            // The export reads the entities it writes, so it completes before the datastore shuts down.
+            pbExport.finish();
         }
+        starterData.shutdown();
+        writeDefinitionFingerprints();
+        checkpoint().complete(Phase.INACTIVE_DEFINITIONS);
+
     }
 
     /**
-     * Helper function used in building Semantics.
-     *
-     * @param transaction
-     * @param logicalExpression
-     * @param time
-     * @param newSemanticBuilder
+     * Writes the definition fingerprints once the definitions of a phase are saved. The file was removed when it was
+     * loaded, so a run resumed after {@link Phase#ACTIVE_DEFINITIONS} keeps the fingerprints of the active concepts.
      */
+    private void writeDefinitionFingerprints() throws IOException {
+        if (dataStore != null) {
+            definitionFingerprints.write(dataStore);
+        }
+    }
 
-    private void addNewVersion(Transaction transaction, LogicalExpression logicalExpression,
-                               long time, SemanticRecordBuilder newSemanticBuilder) {
-
-        ImmutableList<SemanticVersionRecord> oldSemanticVersions = newSemanticBuilder.versions();
-        RecordListBuilder<SemanticVersionRecord> versionListBuilder = new RecordListBuilder<>();
-        newSemanticBuilder.versions(versionListBuilder);
-        SemanticRecord newSemantic = newSemanticBuilder.build();
-
-        if (oldSemanticVersions != null) {
-            oldSemanticVersions.forEach(version -> {
-                versionListBuilder.add(SemanticVersionRecordBuilder.builder(version).chronology(newSemantic).build());
-            });
+    /**
+     * Creates the StarterData for the given authoring state. Only the legacy mode lets StarterData start the datastore;
+     * in the single datastore mode it writes to the store that is already running.
+     */
+    private StarterData openStarterData(EntityProxy.Concept authoringState) {
+        StarterData starterData = new StarterData(dataStore, uuidUtility);
+        if (!keepDataStoreOpen) {
+            starterData.init();
         }
+        return starterData.authoringSTAMP(
+                authoringState,
+                time,
+                author,
+                module,
+                path);
+    }
 
-        SemanticVersionRecordBuilder semanticVersionBuilder = SemanticVersionRecordBuilder.builder();
-        semanticVersionBuilder.fieldValues(Lists.immutable.of(logicalExpression.sourceGraph()));
-        StampEntity transactionStamp = transaction.getStamp(State.ACTIVE, time, author.nid(), module.nid(), path.nid());
-        semanticVersionBuilder.stampNid(transactionStamp.nid());
-        semanticVersionBuilder.chronology(newSemantic);
-        versionListBuilder.add(semanticVersionBuilder.build());
-        versionListBuilder.build();
+    private void addNavigationAndDefinitionToLoincConcepts(StarterData starterData, LoincPatternRegistry patterns,
+                                                         List<LoincRow> rows) {
+        LoincDefinitionWriter definitionWriter = new LoincDefinitionWriter(author, module, path,
+                LoincDefinitionWriter.DEFAULT_BATCH_SIZE, metrics, errorReport, definitionFingerprints);
+        EntityProxy.Concept[] axisAttributes = new EntityProxy.Concept[AXIS_FQNS.length];
+        for (int i = 0; i < AXIS_FQNS.length; i++) {
+            axisAttributes[i] = conceptIndex.get(AXIS_FQNS[i]);
+        }
+        LoincAxiomBuilder axiomBuilder = new LoincAxiomBuilder(conceptIndex.get(OBSERVABLE_ENTITY), axisAttributes);
+
+        IngestMetrics.Timer defineTimer = metrics.timer(IngestMetrics.DEFINE);
+        rows.forEach(row -> {
+            long start = System.nanoTime();
+            int conceptSlot = conceptIndex.slot(row.loincNumber());
+            EntityProxy.Concept newConcept = EntityProxy.Concept.make(row.loincNumber(),
+                    conceptIndex.uuid(conceptSlot));
+
+            starterData.concept(newConcept)
+                    .identifier(TinkarTerm.UNIVERSALLY_UNIQUE_IDENTIFIER, row.loincNumber())
+                    //TODO Doing the below will cause the reasoner to break
+                    //.statedDefinition(Arrays.asList(conceptIndex.get(row.loincClass())))
+                    .build();
+
+            // Slots and nids only; proxies are made for the definitions that are written.
+            int[] axisSlots = new int[AXIS_FQNS.length];
+            int[] axisValueNids = new int[AXIS_FQNS.length];
+            StringBuilder missingAxes = null;
+            for (LOINC_AXES axis : LOINC_AXES.values()) {
+                String axisValue = row.axis(axis);
+                int slot = conceptIndex.slot(axisValue);
+                axisSlots[axis.value - 1] = slot;
+                if (slot >= 0) {
+                    axisValueNids[axis.value - 1] = conceptIndex.nid(slot);
+                } else if (axisValue != null && !axisValue.isBlank()) {
+                    // Terms have no value for some axes, such as the method; only a value without a part is wrong.
+                    metrics.increment(IngestMetrics.MISSING_AXES);
+                    missingAxes = missingAxes == null ? new StringBuilder() : missingAxes.append(' ');
+                    missingAxes.append(axis).append('=').append(axisValue);
+                }
+            }
+            if (missingAxes != null) {
+                errorReport.report(IngestErrorReport.Category.MISSING_AXIS, row.loincNumber(), missingAxes.toString());
+            }
 
-        EntityService.get().putEntity(newSemantic);
+            try {
+                int nid = conceptIndex.nid(conceptSlot);
+                long fingerprint = axiomBuilder.fingerprint(axisValueNids);
+                if (!definitionWriter.isUnchanged(nid, fingerprint)) {
+                    EntityProxy.Concept[] axisValues = new EntityProxy.Concept[axisSlots.length];
+                    for (int i = 0; i < axisSlots.length; i++) {
+                        axisValues[i] = axisSlots[i] < 0 ? null : conceptIndex.concept(axisSlots[i]);
+                    }
+                    definitionWriter.add(nid, row.loincNumber(), fingerprint, axiomBuilder.definition(axisValues));
+                }
+                addLoincClassSemanticPattern(newConcept, row.loincClass(), row.classType(), patterns);
+                addUUCMSemanticPattern(newConcept, row.exampleUcumUnits(), patterns);
+                addLoincTestOrdObservationSemanticPattern(newConcept, row.orderObs(), patterns);
+            } catch (NullPointerException nullPointerException) {
+                errorReport.report(IngestErrorReport.Category.CONCEPT_SEMANTICS, row.loincNumber(),
+                        nullPointerException);
+            }
+            defineTimer.record(System.nanoTime() - start);
+        });
+        definitionWriter.flush();
+        LOG.info(definitionWriter.getDefinitionsWritten() + " stated definitions were written");
     }
 
-    private void addNavigationAndDefinitionToPartsConcepts(StarterData starterData) {
-        try (Stream<String> lines = Files.lines(loincPartCSVFile.toPath())) {
-            lines.skip(1) //skip first line, i.e. header line
-                    .map(row -> row.split(REGEX_LINEDATA, -1)).filter(data -> {
-                                String cleanString = data[1];
-                                return partTypeNames.contains(fixString(cleanString));
-                            }
-                    )
-
+    private void addNavigationAndDefinitionToPartsConcepts(StarterData starterData, LoincPatternRegistry patterns) {
+        // Looked up once rather than for every part.
+        EntityProxy.Concept loincNumber = conceptIndex.get(LOINC_NUMBER);
+        EntityProxy.Concept component = conceptIndex.get("Component");
+        EntityProxy.Concept method = conceptIndex.get("Method");
+        EntityProxy.Concept property = conceptIndex.get("Property");
+        EntityProxy.Concept scale = conceptIndex.get("Scale");
+        EntityProxy.Concept timeAspect = conceptIndex.get("Time Aspect");
+        EntityProxy.Concept system = conceptIndex.get("System");
+        try {
+            changedLoincPartRows()
                     .forEach(data -> {
 
-                        String conceptIdentifier = fixString(data[CONCEPT_INDEX]);
-                        EntityProxy.Concept newConcept = fqnToConceptHashMap.get(conceptIdentifier);
+                        String conceptIdentifier = data[CONCEPT_INDEX];
+                        EntityProxy.Concept newConcept = conceptIndex.get(conceptIdentifier);
 
                         if (String.valueOf(data[PART_TYPE_INDEX]).toLowerCase().contains("component")) {
                             starterData.concept(newConcept)
-                                    .identifier(fqnToConceptHashMap.get(LOINC_NUMBER), conceptIdentifier)
-                                    .statedDefinition(Collections.singletonList(fqnToConceptHashMap.get("Component")))
-                                    .statedNavigation(List.of(newConcept), Collections.singletonList(fqnToConceptHashMap.get("Component")))
+                                    .identifier(loincNumber, conceptIdentifier)
+                                    .statedDefinition(Collections.singletonList(component))
+                                    .statedNavigation(List.of(newConcept), Collections.singletonList(component))
                                     .build();
                         } else if (String.valueOf(data[PART_TYPE_INDEX]).toLowerCase().contains("method")) {
                             starterData.concept(newConcept)
-                                    .identifier(fqnToConceptHashMap.get(LOINC_NUMBER), conceptIdentifier)
-                                    .statedDefinition(Collections.singletonList(fqnToConceptHashMap.get("Method")))
-                                    .statedNavigation(List.of(newConcept), Collections.singletonList(fqnToConceptHashMap.get("Method")))
+                                    .identifier(loincNumber, conceptIdentifier)
+                                    .statedDefinition(Collections.singletonList(method))
+                                    .statedNavigation(List.of(newConcept), Collections.singletonList(method))
                                     .build();
                         } else if (String.valueOf(data[PART_TYPE_INDEX]).toLowerCase().contains("property")) {
                             starterData.concept(newConcept)
-                                    .identifier(fqnToConceptHashMap.get(LOINC_NUMBER), conceptIdentifier)
-                                    .statedDefinition(Collections.singletonList(fqnToConceptHashMap.get("Property")))
-                                    .statedNavigation(List.of(newConcept), Collections.singletonList(fqnToConceptHashMap.get("Property")))
+                                    .identifier(loincNumber, conceptIdentifier)
+                                    .statedDefinition(Collections.singletonList(property))
+                                    .statedNavigation(List.of(newConcept), Collections.singletonList(property))
                                     .build();
                         } else if (String.valueOf(data[PART_TYPE_INDEX]).toLowerCase().contains("scale")) {
                             starterData.concept(newConcept)
-                                    .identifier(fqnToConceptHashMap.get(LOINC_NUMBER), conceptIdentifier)
-                                    .statedDefinition(Collections.singletonList(fqnToConceptHashMap.get("Scale")))
-                                    .statedNavigation(List.of(newConcept), Collections.singletonList(fqnToConceptHashMap.get("Scale")))
+                                    .identifier(loincNumber, conceptIdentifier)
+                                    .statedDefinition(Collections.singletonList(scale))
+                                    .statedNavigation(List.of(newConcept), Collections.singletonList(scale))
                                     .build();
                         } else if (String.valueOf(data[PART_TYPE_INDEX]).toLowerCase().contains("time")) {
                             starterData.concept(newConcept)
-                                    .identifier(fqnToConceptHashMap.get(LOINC_NUMBER), conceptIdentifier)
-                                    .statedDefinition(Collections.singletonList(fqnToConceptHashMap.get("Time Aspect")))
-                                    .statedNavigation(List.of(newConcept), Collections.singletonList(fqnToConceptHashMap.get("Time Aspect")))
+                                    .identifier(loincNumber, conceptIdentifier)
+                                    .statedDefinition(Collections.singletonList(timeAspect))
+                                    .statedNavigation(List.of(newConcept), Collections.singletonList(timeAspect))
                                     .build();
                         } else if (String.valueOf(data[PART_TYPE_INDEX]).toLowerCase().contains("system")) {
                             starterData.concept(newConcept)
-                                    .identifier(fqnToConceptHashMap.get(LOINC_NUMBER), conceptIdentifier)
-                                    .statedDefinition(Collections.singletonList(fqnToConceptHashMap.get("System")))
-                                    .statedNavigation(List.of(newConcept), Collections.singletonList(fqnToConceptHashMap.get("System")))
+                                    .identifier(loincNumber, conceptIdentifier)
+                                    .statedDefinition(Collections.singletonList(system))
+                                    .statedNavigation(List.of(newConcept), Collections.singletonList(system))
                                     .build();
                         }
 
-                        addStatusSemanticPatterns(newConcept, data[PART_STATUS_INDEX], starterData);
+                        addStatusSemanticPatterns(newConcept, data[PART_STATUS_INDEX], patterns);
 
                     });
 
@@ -760,13 +1098,28 @@ private void addNavigationAndDefinitionToPartsConcepts(StarterData starterData)
         }
     }
 
+    /**
+     * The module concept of the starter data, which {@link #addNavigationAndDefintionToStarterConcepts} switches to
+     * when it defines the starter concepts.
+     */
+    private EntityProxy.Concept starterDataModule() {
+        try (Stream<String[]> lines = CsvTokenizer.records(loincStarterDataCSVfile.toPath())) {
+            return lines.skip(1) //skip first line, i.e. header line
+                    .filter(data -> String.valueOf(data[ORIGINS_INDEX]).trim().equals(MODULE))
+                    .map(data -> conceptIndex.get(data[CONCEPT_INDEX]))
+                    .reduce((first, second) -> second)
+                    .orElse(module);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private void addNavigationAndDefintionToStarterConcepts(StarterData starterData, UUIDUtility uuidUtility) {
-        try (Stream<String> lines = Files.lines(loincStarterDataCSVfile.toPath())) {
+        try (Stream<String[]> lines = CsvTokenizer.records(loincStarterDataCSVfile.toPath())) {
             lines.skip(1) //skip first line, i.e. header line
-                    .map(row -> row.split(REGEX_LINEDATA, -1))
                     .forEach(data -> {
 
-                        EntityProxy.Concept newConcept = fqnToConceptHashMap.get(data[CONCEPT_INDEX]);
+                        EntityProxy.Concept newConcept = conceptIndex.get(data[CONCEPT_INDEX]);
 
                         if (String.valueOf(data[ORIGINS_INDEX]).trim().equals(PHENOMENON)) {
                             starterData.concept(newConcept)
@@ -775,8 +1128,8 @@ private void addNavigationAndDefintionToStarterConcepts(StarterData starterData,
                                     .build();
                         } else if (String.valueOf(data[ORIGINS_INDEX]).trim().equals(ATTRIBUTE)) {
                             starterData.concept(newConcept)
-                                    .statedDefinition(Collections.singletonList(fqnToConceptHashMap.get(ATTRIBUTE)))
-                                    .statedNavigation(List.of(newConcept), Collections.singletonList(fqnToConceptHashMap.get(ATTRIBUTE)))
+                                    .statedDefinition(Collections.singletonList(conceptIndex.get(ATTRIBUTE)))
+                                    .statedNavigation(List.of(newConcept), Collections.singletonList(conceptIndex.get(ATTRIBUTE)))
                                     .build();
                         } else if (String.valueOf(data[ORIGINS_INDEX]).trim().equals(IDENTIFIER_SOURCE)) {
                             starterData.concept(newConcept)
@@ -785,8 +1138,8 @@ private void addNavigationAndDefintionToStarterConcepts(StarterData starterData,
                                     .build();
                         } else if (String.valueOf(data[ORIGINS_INDEX]).trim().equals(ORDER_VS_OBSERVATION)) {
                             starterData.concept(newConcept)
-                                    .statedDefinition(Collections.singletonList(fqnToConceptHashMap.get(ORDER_VS_OBSERVATION)))
-                                    .statedNavigation(List.of(newConcept), Collections.singletonList(fqnToConceptHashMap.get(ORDER_VS_OBSERVATION)))
+                                    .statedDefinition(Collections.singletonList(conceptIndex.get(ORDER_VS_OBSERVATION)))
+                                    .statedNavigation(List.of(newConcept), Collections.singletonList(conceptIndex.get(ORDER_VS_OBSERVATION)))
                                     .build();
                         } else if (String.valueOf(data[ORIGINS_INDEX]).trim().equals(STATUS_VALUE)) {
                             starterData.concept(newConcept)
@@ -817,7 +1170,7 @@ private void addNavigationAndDefintionToStarterConcepts(StarterData starterData,
         }
     }
 
-    private void addLoincClassSemanticPattern(EntityProxy.Concept loincConcept, String loincClass, String loincClassType, StarterData starterData) {
+    private void addLoincClassSemanticPattern(EntityProxy.Concept loincConcept, String loincClass, String loincClassType, LoincPatternRegistry patterns) {
 
         if (loincConcept == null) {
             return;
@@ -825,31 +1178,19 @@ private void addLoincClassSemanticPattern(EntityProxy.Concept loincConcept, Stri
 
         MutableList<Object> classPatternFields = Lists.mutable.empty();
 
-        EntityProxy.Concept loincClassConcept = fqnToConceptHashMap.get(fixString(loincClass));
-
-        if (loincClassConcept == null) {
+        if (!conceptIndex.contains(loincClass)) {
             return;
         }
 
-        //classPatternFields.add(loincClassConcept.nid());
-        //classPatternFields.add(fixString(loincClassType));
-
-        UUIDUtility uuidUtility = new UUIDUtility();
-        PublicId patternPublicId = PublicIds.of(uuidUtility.createUUID(LOINC_CLASS_PATTERN));
-        int patternNid = EntityService.get().nidForPublicId(patternPublicId);
-        PublicId referencedComponentPublicID = loincConcept.publicId();
-        int referencedComponentNid = EntityService.get().nidForPublicId(referencedComponentPublicID);
-        PublicId semantic = PublicIds.singleSemanticId(patternPublicId, referencedComponentPublicID);
-        int semanticNid = EntityService.get().nidForPublicId(semantic);
-        UUID primordialUUID = semantic.asUuidArray()[0];
-        int stampNid = EntityService.get().nidForPublicId(starterData.getAuthoringSTAMP());
+        //classPatternFields.add(conceptIndex.nid(loincClass));
+        //classPatternFields.add(loincClassType);
 
-        writeSemantic(semanticNid, primordialUUID, patternNid, referencedComponentNid, stampNid, classPatternFields);
+        writeSemantic(patterns.pattern(LOINC_CLASS_PATTERN), loincConcept, patterns.stampNid(), classPatternFields);
 
 
     }
 
-    private void addUUCMSemanticPattern(EntityProxy.Concept loincConcept, String uucmPattern, StarterData starterData) {
+    private void addUUCMSemanticPattern(EntityProxy.Concept loincConcept, String uucmPattern, LoincPatternRegistry patterns) {
 
         if (loincConcept == null) {
             return;
@@ -857,27 +1198,17 @@ private void addUUCMSemanticPattern(EntityProxy.Concept loincConcept, String uuc
 
         MutableList<Object> classPatternFields = Lists.mutable.empty();
 
-        if (fixString(uucmPattern).isEmpty() || fixString(uucmPattern).isBlank()) {
+        if (uucmPattern.isBlank()) {
             return;
         }
 
-        classPatternFields.add(fixString(uucmPattern));
+        classPatternFields.add(uucmPattern);
 
-        UUIDUtility uuidUtility = new UUIDUtility();
-        PublicId patternPublicId = PublicIds.of(uuidUtility.createUUID(EXAMPLE_UCUM_UNITS_PATTERN));
-        int patternNid = EntityService.get().nidForPublicId(patternPublicId);
-        PublicId referencedComponentPublicID = loincConcept.publicId();
-        int referencedComponentNid = EntityService.get().nidForPublicId(referencedComponentPublicID);
-        PublicId semantic = PublicIds.singleSemanticId(patternPublicId, referencedComponentPublicID);
-        int semanticNid = EntityService.get().nidForPublicId(semantic);
-        UUID primordialUUID = semantic.asUuidArray()[0];
-        int stampNid = EntityService.get().nidForPublicId(starterData.getAuthoringSTAMP());
-
-        writeSemantic(semanticNid, primordialUUID, patternNid, referencedComponentNid, stampNid, classPatternFields);
+        writeSemantic(patterns.pattern(EXAMPLE_UCUM_UNITS_PATTERN), loincConcept, patterns.stampNid(), classPatternFields);
 
     }
 
-    private void addStatusSemanticPatterns(EntityProxy.Concept loincPartConcept, String status, StarterData starterData) {
+    private void addStatusSemanticPatterns(EntityProxy.Concept loincPartConcept, String status, LoincPatternRegistry patterns) {
 
         if (loincPartConcept == null) {
             return;
@@ -886,34 +1217,24 @@ private void addStatusSemanticPatterns(EntityProxy.Concept loincPartConcept, Str
         MutableList<Object> classPatternFields = Lists.mutable.empty();
         String semanticPattern;
 
-        if (fixString(status).isEmpty() || fixString(status).isBlank()) {
+        if (status.isBlank()) {
             return;
         }
 
         if (status.toLowerCase().contains("active")) {
             semanticPattern = LOINC_TRIAL_STATUS_PATTERN;
-            //classPatternFields.add(fqnToConceptHashMap.get("Trial Status").nid());
+            //classPatternFields.add(conceptIndex.get("Trial Status").nid());
         } else if (status.toLowerCase().contains("deprecated")) {
             semanticPattern = LOINC_DISCOURAGED_STATUS_PATTERN;
-            //classPatternFields.add(fqnToConceptHashMap.get("Discouraged Status").nid());
+            //classPatternFields.add(conceptIndex.get("Discouraged Status").nid());
         } else return;
 
-        UUIDUtility uuidUtility = new UUIDUtility();
-        PublicId patternPublicId = PublicIds.of(uuidUtility.createUUID(semanticPattern));
-        int patternNid = EntityService.get().nidForPublicId(patternPublicId);
-        PublicId referencedComponentPublicID = loincPartConcept.publicId();
-        int referencedComponentNid = EntityService.get().nidForPublicId(referencedComponentPublicID);
-        PublicId semantic = PublicIds.singleSemanticId(patternPublicId, referencedComponentPublicID);
-        int semanticNid = EntityService.get().nidForPublicId(semantic);
-        UUID primordialUUID = semantic.asUuidArray()[0];
-        int stampNid = EntityService.get().nidForPublicId(starterData.getAuthoringSTAMP());
-
-        writeSemantic(semanticNid, primordialUUID, patternNid, referencedComponentNid, stampNid, classPatternFields);
+        writeSemantic(patterns.pattern(semanticPattern), loincPartConcept, patterns.stampNid(), classPatternFields);
 
     }
 
 
-    private void addLoincTestOrdObservationSemanticPattern(EntityProxy.Concept loincConcept, String orderObsValue, StarterData starterData) {
+    private void addLoincTestOrdObservationSemanticPattern(EntityProxy.Concept loincConcept, String orderObsValue, LoincPatternRegistry patterns) {
 
 
         ArrayList<String> requiredPatterns = new ArrayList<>();
@@ -941,54 +1262,16 @@ private void addLoincTestOrdObservationSemanticPattern(EntityProxy.Concept loinc
         //classPatternFields.add(loincClassConcept);
         //classPatternFields.add(loincClassType);
         for (String pattern : requiredPatterns) {
-            UUIDUtility uuidUtility = new UUIDUtility();
-            PublicId patternPublicId = PublicIds.of(uuidUtility.createUUID(pattern));
-            int patternNid = EntityService.get().nidForPublicId(patternPublicId);
-            PublicId referencedComponentPublicID = loincConcept.publicId();
-            int referencedComponentNid = EntityService.get().nidForPublicId(referencedComponentPublicID);
-            PublicId semantic = PublicIds.singleSemanticId(patternPublicId, referencedComponentPublicID);
-            int semanticNid = EntityService.get().nidForPublicId(semantic);
-            UUID primordialUUID = semantic.asUuidArray()[0];
-            int stampNid = EntityService.get().nidForPublicId(starterData.getAuthoringSTAMP());
-
-            writeSemantic(semanticNid, primordialUUID, patternNid, referencedComponentNid, stampNid, classPatternFields);
-        }
-
-    }
-
-    private void writeSemantic(int semanticNid, UUID primordialUUID, int patternNid, int referencedComponentNid, int stampNid, MutableList<Object> lidrRecordFields) {
-        /************
-         * Below: Creates the semantic with one version and write it to the database
-         */
-        //Create empty version list
-        RecordListBuilder<SemanticVersionRecord> versions = RecordListBuilder.make();
-
-        //Create Semantic Chronology
-        SemanticRecord semanticRecord = SemanticRecordBuilder.builder()
-                .nid(semanticNid)
-                .leastSignificantBits(primordialUUID.getLeastSignificantBits())
-                .mostSignificantBits(primordialUUID.getMostSignificantBits())
-                .additionalUuidLongs(null)
-                .patternNid(patternNid)
-                .referencedComponentNid(referencedComponentNid)
-                .versions(versions.toImmutable())
-                .build();
-
-        //Create Semantic Version
-        SemanticVersionRecord semanticVersionRecord = SemanticVersionRecordBuilder.builder()
-                .chronology(semanticRecord)
-                .stampNid(stampNid)
-                .fieldValues(lidrRecordFields.toImmutable())
-                .build();
+            writeSemantic(patterns.pattern(pattern), loincConcept, patterns.stampNid(), classPatternFields);
+        }
 
-        versions.add(semanticVersionRecord);
+    }
 
-        //Rebuild the Semantic with the now populated version data
-        SemanticEntity<? extends SemanticEntityVersion> semanticEntity = SemanticRecordBuilder
-                .builder(semanticRecord)
-                .versions(versions.toImmutable()).build();
-        EntityService.get().putEntity(semanticEntity);
-        this.semanticsCreated++;
+    private void writeSemantic(LoincPatternRegistry.ResolvedPattern pattern, EntityProxy.Concept referencedComponent,
+                               int stampNid, MutableList<Object> fields) {
+        PublicId semantic = PublicIds.singleSemanticId(pattern.publicId(), referencedComponent.publicId());
+        semanticWriter.add(EntityService.get().nidForPublicId(semantic), semantic.asUuidArray()[0], pattern.nid(),
+                referencedComponent.nid(), stampNid, fields.toImmutable());
     }
 
     private String getSynonym(String[] data) {
@@ -1024,49 +1307,49 @@ private String getDefinition(String[] data) {
 
     private void buildLoincPatterns(StarterData starterData, UUIDUtility uuidUtility) {
         starterData.pattern(EntityProxy.Pattern.make(LOINC_TRIAL_STATUS_PATTERN, uuidUtility.createUUID(LOINC_TRIAL_STATUS_PATTERN)))
-                .meaning(fqnToConceptHashMap.get("Trial Status"))
+                .meaning(conceptIndex.get("Trial Status"))
                 .purpose(TinkarTerm.STATUS_VALUE)
                 .build();
 
         starterData.pattern(EntityProxy.Pattern.make(LOINC_DISCOURAGED_STATUS_PATTERN, uuidUtility.createUUID(LOINC_DISCOURAGED_STATUS_PATTERN)))
-                .meaning(fqnToConceptHashMap.get("Discouraged Status"))
+                .meaning(conceptIndex.get("Discouraged Status"))
                 .purpose(TinkarTerm.STATUS_VALUE)
                 .build();
 
         starterData.pattern(EntityProxy.Pattern.make(LOINC_CLASS_PATTERN, uuidUtility.createUUID(LOINC_CLASS_PATTERN)))
-                .meaning(fqnToConceptHashMap.get("LOINC Class"))
-                .purpose(fqnToConceptHashMap.get("LOINC Class"))
+                .meaning(conceptIndex.get("LOINC Class"))
+                .purpose(conceptIndex.get("LOINC Class"))
                 .fieldDefinition(
-                        fqnToConceptHashMap.get("LOINC Class"),
-                        fqnToConceptHashMap.get("LOINC Class"),
+                        conceptIndex.get("LOINC Class"),
+                        conceptIndex.get("LOINC Class"),
                         TinkarTerm.CONCEPT_TYPE)
                 .fieldDefinition(
-                        fqnToConceptHashMap.get("LOINC ClassType"),
-                        fqnToConceptHashMap.get("LOINC ClassType"),
+                        conceptIndex.get("LOINC ClassType"),
+                        conceptIndex.get("LOINC ClassType"),
                         TinkarTerm.STRING)
                 .build();
 
         starterData.pattern(EntityProxy.Pattern.make(EXAMPLE_UCUM_UNITS_PATTERN, uuidUtility.createUUID(EXAMPLE_UCUM_UNITS_PATTERN)))
-                .meaning(fqnToConceptHashMap.get("Example Units (UCUM)"))
-                .purpose(fqnToConceptHashMap.get("Example Units (UCUM)"))
+                .meaning(conceptIndex.get("Example Units (UCUM)"))
+                .purpose(conceptIndex.get("Example Units (UCUM)"))
                 .fieldDefinition(
-                        fqnToConceptHashMap.get("Example Units (UCUM)"),
-                        fqnToConceptHashMap.get("Example Units (UCUM)"),
+                        conceptIndex.get("Example Units (UCUM)"),
+                        conceptIndex.get("Example Units (UCUM)"),
                         TinkarTerm.STRING)
                 .build();
 
         starterData.pattern(EntityProxy.Pattern.make(TEST_REPORTABLE_MEMBERSHIP_PATTERN, uuidUtility.createUUID(TEST_REPORTABLE_MEMBERSHIP_PATTERN)))
-                .meaning(fqnToConceptHashMap.get("Test Reportable"))
+                .meaning(conceptIndex.get("Test Reportable"))
                 .purpose(TinkarTerm.MEMBERSHIP_SEMANTIC)
                 .build();
 
         starterData.pattern(EntityProxy.Pattern.make(TEST_SUBSET_MEMBERSHIP_PATTERN, uuidUtility.createUUID(TEST_SUBSET_MEMBERSHIP_PATTERN)))
-                .meaning(fqnToConceptHashMap.get("Test Subset"))
+                .meaning(conceptIndex.get("Test Subset"))
                 .purpose(TinkarTerm.MEMBERSHIP_SEMANTIC)
                 .build();
 
         starterData.pattern(EntityProxy.Pattern.make(TEST_ORDERABLE_PATTERN, uuidUtility.createUUID(TEST_ORDERABLE_PATTERN)))
-                .meaning(fqnToConceptHashMap.get("Test Orderable"))
+                .meaning(conceptIndex.get("Test Orderable"))
                 .purpose(TinkarTerm.MEMBERSHIP_SEMANTIC)
                 .build();
     }
@@ -1081,28 +1364,12 @@ private void exportStarterData() {
     }
 
 
-    private void processHeaderLine(File datafile) throws IOException {
-        try (Stream<String> headerLines = Files.lines(datafile.toPath())) {
-            Optional<String> headerRow = headerLines.findFirst();
-            headerRow.ifPresent((x) -> processHeaders(x));
-        } catch (IOException e) {
-            throw new IOException("Unable to process csv file.");
-        }
-    }
-
     public void processLoincPartCSVfile() {
-        try {
-            processHeaderLine(loincPartCSVFile);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        try (Stream<String> lines = Files.lines(loincPartCSVFile.toPath())) {
+        try (Stream<String[]> lines = CsvTokenizer.records(loincPartCSVFile.toPath())) {
             lines.skip(1) //skip first line, i.e. header line
-                    .map(row -> row.split(REGEX_LINEDATA, -1))
                     .forEach(data -> {
 
-                        EntityProxy.Concept newConcept = EntityProxy.Concept.make(data[CONCEPT_INDEX], UUID.nameUUIDFromBytes(data[CONCEPT_INDEX].getBytes()));
+                        EntityProxy.Concept newConcept = EntityProxy.Concept.make(data[CONCEPT_INDEX], LoincUuids.nameUuid(data[CONCEPT_INDEX]));
 
                         session.compose((ConceptAssembler conceptAssembler) -> conceptAssembler
                                 .attach((FullyQualifiedName fqn) -> fqn
@@ -1132,9 +1399,99 @@ public void processLoincPartCSVfile() {
     }
 
 
+    /**
+     * Commits the current session and opens a new one for the given state. Unless the datastore is kept open, it is
+     * stopped and started again in between.
+     */
+    private void restartSession(State state) {
+        if (keepDataStoreOpen) {
+            commit("RESTART_SESSION", 0, () -> commitSession(session));
+        } else {
+            stopIngest();
+            PrimitiveData.start();
+        }
+        session = openSession(state);
+    }
+
     public void stopIngest() {
-        COMPOSER_SESSION_MANAGER.commitSession(session);
-        PrimitiveData.stop();
+        commit("STOP_INGEST", 0, () -> {
+            commitSession(session);
+            PrimitiveData.stop();
+        });
+    }
+
+    /**
+     * Writes the entities committed so far to the protobuf export, if one is running.
+     */
+    private void drainExport() {
+        if (pbExport != null) {
+            pbExport.drain();
+        }
+    }
+
+    /**
+     * Runs a commit, save or stop of the datastore, timing it and reporting it as a
+     * {@link LoincIngestEvents.Commit} event.
+     */
+    private void commit(String phase, int rows, Runnable commit) {
+        timeCommit(phase, rows, commit);
+        drainExport();
+    }
+
+    /**
+     * Times a commit like {@link #commit} but leaves the export alone, for commits that run while the next batch is
+     * still being composed.
+     */
+    private void timeCommit(String phase, int rows, Runnable commit) {
+        LoincIngestEvents.Commit event = new LoincIngestEvents.Commit();
+        event.begin();
+        try (IngestMetrics.Timing ignored = metrics.start(IngestMetrics.COMMIT)) {
+            commit.run();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.rows = rows;
+            event.commit();
+        }
+    }
+
+    private void buildStarterData(StarterData starterData, EntityProxy.Concept authoringState, int loincRows) {
+        LoincIngestEvents.StarterDataBuild event = new LoincIngestEvents.StarterDataBuild();
+        event.begin();
+        try (IngestMetrics.Timing ignored = metrics.start(IngestMetrics.STARTER_DATA_BUILD)) {
+            starterData.build(); //Natively writing data to spined array
+        }
+        event.end();
+        drainExport();
+        if (event.shouldCommit()) {
+            event.state = authoringState.description();
+            event.rows = loincRows;
+            event.commit();
+        }
+    }
+
+    private static void commitCsvPass(LoincIngestEvents.CsvPass event, File file, int rows) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = file.getName();
+            event.rows = rows;
+            event.bytes = file.length();
+            event.commit();
+        }
+    }
+
+    /**
+     * The LOINC, part or starter concept code of a row, for events.
+     */
+    private static String rowCode(Object row) {
+        if (row instanceof LoincRow loincRow) {
+            return loincRow.loincNumber();
+        }
+        if (row instanceof String[] data && data.length > 0) {
+            return data[0];
+        }
+        return String.valueOf(row);
     }
 
 
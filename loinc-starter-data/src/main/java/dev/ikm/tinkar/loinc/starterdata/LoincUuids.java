@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * Name based UUIDs for LOINC numbers, part numbers and LOINC namespaced text.
+ * <p>
+ * {@link #nameUuid(String)} is equal to {@code UUID.nameUUIDFromBytes(name.getBytes(UTF_8))}, the version 3 ids given
+ * to LOINC and part concepts, and {@link #namespacedUuid(UUID, String)} is equal to
+ * {@code Generators.nameBasedGenerator(namespace).generate(text)}, the version 5 ids of {@link Bindings}. Digests are
+ * kept per thread instead of being looked up on every call, and recent results are kept in a bounded, lock free memo
+ * so the same code resolved in several phases is hashed once. All methods are safe to call from any thread.
+ */
+public final class LoincUuids {
+
+    /**
+     * Memo slots, enough for the LOINC terms and parts of a release. Colliding names replace each other.
+     */
+    static final int MEMO_SIZE = 1 << 18;
+
+    /**
+     * Bulk requests smaller than this are hashed on the calling thread.
+     */
+    static final int PARALLEL_THRESHOLD = 4_096;
+
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> digest("MD5"));
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> digest("SHA-1"));
+
+    private static final AtomicReferenceArray<Entry> MEMO = new AtomicReferenceArray<>(MEMO_SIZE);
+
+    private record Entry(UUID namespace, String name, UUID uuid) {
+    }
+
+    private LoincUuids() {
+    }
+
+    /**
+     * @return the version 3 (MD5) UUID of the UTF-8 bytes of {@code name}
+     */
+    public static UUID nameUuid(String name) {
+        return memoized(null, name);
+    }
+
+    /**
+     * @return the version 5 (SHA-1) UUID of {@code text} in {@code namespace}
+     */
+    public static UUID namespacedUuid(UUID namespace, String text) {
+        if (namespace == null) {
+            throw new IllegalArgumentException("namespace is required");
+        }
+        return memoized(namespace, text);
+    }
+
+    /**
+     * {@link #nameUuid(String)} of every name, in order, hashed in parallel for large lists.
+     */
+    public static UUID[] nameUuids(List<String> names) {
+        return bulk(null, names);
+    }
+
+    /**
+     * {@link #namespacedUuid(UUID, String)} of every text, in order, hashed in parallel for large lists.
+     */
+    public static UUID[] namespacedUuids(UUID namespace, List<String> texts) {
+        if (namespace == null) {
+            throw new IllegalArgumentException("namespace is required");
+        }
+        return bulk(namespace, texts);
+    }
+
+    private static UUID[] bulk(UUID namespace, List<String> names) {
+        UUID[] uuids = new UUID[names.size()];
+        IntStream indexes = IntStream.range(0, uuids.length);
+        if (uuids.length >= PARALLEL_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> uuids[i] = memoized(namespace, names.get(i)));
+        return uuids;
+    }
+
+    private static UUID memoized(UUID namespace, String name) {
+        int hash = name.hashCode() * 31 + (namespace == null ? 0 : namespace.hashCode());
+        int slot = (hash ^ (hash >>> 16)) & (MEMO_SIZE - 1);
+        Entry entry = MEMO.get(slot);
+        if (entry != null && entry.name.equals(name) && Objects.equals(entry.namespace, namespace)) {
+            return entry.uuid;
+        }
+        UUID uuid = namespace == null
+                ? compute(MD5.get(), null, name, 0x30)
+                : compute(SHA1.get(), namespace, name, 0x50);
+        MEMO.set(slot, new Entry(namespace, name, uuid));
+        return uuid;
+    }
+
+    /**
+     * Hashes the namespace and name as RFC 4122 describes, then stamps the version and the IETF variant.
+     */
+    private static UUID compute(MessageDigest digest, UUID namespace, String name, int version) {
+        digest.reset();
+        if (namespace != null) {
+            digest.update(ByteBuffer.allocate(16)
+                    .putLong(namespace.getMostSignificantBits())
+                    .putLong(namespace.getLeastSignificantBits())
+                    .array());
+        }
+        byte[] hash = digest.digest(name.getBytes(StandardCharsets.UTF_8));
+        hash[6] = (byte) ((hash[6] & 0x0f) | version);
+        hash[8] = (byte) ((hash[8] & 0x3f) | 0x80);
+        ByteBuffer bytes = ByteBuffer.wrap(hash, 0, 16);
+        return new UUID(bytes.getLong(), bytes.getLong());
+    }
+
+    private static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " is not available", e);
+        }
+    }
+}
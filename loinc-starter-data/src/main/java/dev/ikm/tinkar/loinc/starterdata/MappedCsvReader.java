@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Reads a UTF-8 csv file by memory mapping it and tokenizing chunks of the mapping in parallel.
+ * <p>
+ * Chunks are aligned to record boundaries in two parallel passes: the first counts the quotes in each nominal
+ * chunk so the quoting state at every chunk start is known, the second moves each start forward to the first line
+ * break that is outside of a quoted field. Records with quoted line breaks therefore never straddle two chunks.
+ * Each aligned chunk is then decoded and handed to a {@link CsvTokenizer}, and the records are returned in file
+ * order.
+ */
+public class MappedCsvReader {
+
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private MappedCsvReader() {
+    }
+
+    public static List<String[]> read(Path path) throws IOException {
+        return read(path, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param path the csv file
+     * @param pool the pool the chunks are tokenized on
+     * @return all records of the file, header included, in file order
+     */
+    public static List<String[]> read(Path path, ForkJoinPool pool) throws IOException {
+        MappedByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return new ArrayList<>();
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Unable to map " + path + ", file is larger than 2GB.");
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        int size = mapping.capacity();
+        int chunkCount = (int) Math.max(1, Math.min((long) pool.getParallelism() * CHUNKS_PER_THREAD,
+                size / MIN_CHUNK_SIZE));
+        int[] nominalStarts = new int[chunkCount + 1];
+        for (int i = 0; i <= chunkCount; i++) {
+            nominalStarts[i] = (int) ((long) size * i / chunkCount);
+        }
+
+        List<Boolean> oddQuoteCounts = forEachChunk(pool, chunkCount,
+                chunk -> oddQuoteCount(mapping, nominalStarts[chunk], nominalStarts[chunk + 1]));
+
+        boolean[] quotedAtStart = new boolean[chunkCount];
+        for (int i = 1; i < chunkCount; i++) {
+            quotedAtStart[i] = quotedAtStart[i - 1] ^ oddQuoteCounts.get(i - 1);
+        }
+
+        int[] starts = new int[chunkCount + 1];
+        starts[chunkCount] = size;
+        forEachChunk(pool, chunkCount, chunk -> {
+            starts[chunk] = chunk == 0 ? 0 : recordStart(mapping, nominalStarts[chunk], quotedAtStart[chunk]);
+            return null;
+        });
+
+        List<List<String[]>> chunkRecords = forEachChunk(pool, chunkCount,
+                chunk -> tokenize(mapping, starts[chunk], starts[chunk + 1]));
+
+        List<String[]> records = new ArrayList<>(chunkRecords.stream().mapToInt(List::size).sum());
+        chunkRecords.forEach(records::addAll);
+        return records;
+    }
+
+    private static <T> List<T> forEachChunk(ForkJoinPool pool, int chunkCount, IntFunction<T> task) {
+        return pool.submit(() -> IntStream.range(0, chunkCount).parallel().mapToObj(task).toList()).join();
+    }
+
+    private static boolean oddQuoteCount(MappedByteBuffer mapping, int start, int end) {
+        boolean odd = false;
+        for (int i = start; i < end; i++) {
+            if (mapping.get(i) == '"') {
+                odd = !odd;
+            }
+        }
+        return odd;
+    }
+
+    /**
+     * Finds the first record start at or after {@code position}. The result may lie beyond the nominal chunk
+     * for very long records, in which case the chunk is simply empty.
+     */
+    private static int recordStart(MappedByteBuffer mapping, int position, boolean quoted) {
+        int size = mapping.capacity();
+        for (int i = position; i < size; i++) {
+            byte b = mapping.get(i);
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n' && !quoted) {
+                return i + 1;
+            }
+        }
+        return size;
+    }
+
+    private static List<String[]> tokenize(MappedByteBuffer mapping, int start, int end) {
+        List<String[]> records = new ArrayList<>();
+        if (start >= end) {
+            return records;
+        }
+        CharBuffer chars = StandardCharsets.UTF_8.decode(mapping.slice(start, end - start));
+        try (CsvTokenizer tokenizer = new CsvTokenizer(
+                new CharArrayReader(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining()))) {
+            String[] record;
+            while ((record = tokenizer.next()) != null) {
+                records.add(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return records;
+    }
+}
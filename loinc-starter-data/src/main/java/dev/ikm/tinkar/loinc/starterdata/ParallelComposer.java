@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import dev.ikm.tinkar.composer.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Spreads the composition of a list of rows over several worker threads, each composing into its own
+ * {@link Session}.
+ * <p>
+ * The rows are split into contiguous slices, one per worker. Sessions are opened on the calling thread before the
+ * workers start and are committed on the calling thread, in slice order, after all workers finish; if a worker fails
+ * every session is cancelled instead.
+ * <p>
+ * The output is not identical to a sequential run over a single session. When {@code composeRow} derives the ids of
+ * its components from the row, the same components are written with the same status, time, author, module, path and
+ * field values, but each session has its own transaction and STAMP, so the versions are spread over one STAMP per
+ * session instead of sharing one. Callers that need the output of a sequential run compose with a parallelism of 1.
+ */
+public class ParallelComposer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelComposer.class.getSimpleName());
+
+    private final LoincComposerSessions composerSessions;
+    private final int parallelism;
+
+    public ParallelComposer(LoincComposerSessions composerSessions, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, was " + parallelism);
+        }
+        this.composerSessions = composerSessions;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Composes and commits all rows.
+     *
+     * @param rows           the rows to compose
+     * @param sessionFactory opens a session with the STAMP values for the rows, through the same
+     *                       {@link LoincComposerSessions} the sessions are committed with
+     * @param composeRow     composes a single row into the given session
+     */
+    public <T> void composeAll(List<T> rows, Supplier<Session> sessionFactory, BiConsumer<Session, T> composeRow) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int workers = Math.min(parallelism, rows.size());
+        List<Session> sessions = new ArrayList<>(workers);
+        boolean composed = false;
+        try {
+            for (int i = 0; i < workers; i++) {
+                sessions.add(sessionFactory.get());
+            }
+            try (ExecutorService executor = Executors.newFixedThreadPool(workers)) {
+                List<Future<?>> slices = new ArrayList<>(workers);
+                for (int worker = 0; worker < workers; worker++) {
+                    Session session = sessions.get(worker);
+                    List<T> slice = rows.subList(rows.size() * worker / workers,
+                            rows.size() * (worker + 1) / workers);
+                    slices.add(executor.submit(() -> slice.forEach(row -> composeRow.accept(session, row))));
+                }
+                try {
+                    for (Future<?> slice : slices) {
+                        slice.get();
+                    }
+                } finally {
+                    // Stops the other slices after a failure; a no-op once all of them have finished.
+                    executor.shutdownNow();
+                }
+            }
+            composed = true;
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Parallel composition failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            if (!composed) {
+                sessions.forEach(composerSessions::cancel);
+            }
+        }
+
+        sessions.forEach(composerSessions::commit);
+        LOG.info("Composed " + rows.size() + " rows across " + workers + " sessions");
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.starterdata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * A linear pipeline of stages connected by bounded queues, each stage running on its own threads.
+ * <p>
+ * A single source thread emits items, any number of map stages transform them on as many threads as configured, and
+ * a single sink thread receives the results in the order the source emitted them. Puts into a full queue block, and
+ * the source blocks once {@code maxInFlight} items have been emitted but not yet delivered to the sink, so a slow
+ * stage holds back the stages before it and memory stays bounded. The first failure of any stage interrupts all
+ * threads and is rethrown by {@link #run()}.
+ * <p>
+ * Each stage records its time per item in the {@link IngestMetrics} timer {@code stage_<name>}, and the depth of its
+ * output queue in the gauge {@code stage_<name>_queue_depth}.
+ * <p>
+ * Map stages run on platform threads. The source and the sink, which read files and write to the datastore, can run
+ * on virtual threads instead, see {@link #setVirtualThreadIo(boolean)}.
+ */
+public class StagedPipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StagedPipeline.class.getSimpleName());
+
+    private static final Pattern STAGE_NAME = Pattern.compile("[a-z][a-z0-9_]*");
+
+    @FunctionalInterface
+    public interface Source<T> {
+        /**
+         * Emits all items of the pipeline, in order, then returns.
+         */
+        void emit(Consumer<T> downstream) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface StageFunction<I, O> {
+        O apply(I input) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Sink<T> {
+        void accept(T item) throws Exception;
+    }
+
+    /**
+     * The output of a stage, to be consumed by exactly one later stage.
+     */
+    public static final class Stage<T> {
+        private final String name;
+        private final BlockingQueue<Item<T>> queue;
+        private boolean consumed;
+
+        private Stage(String name, int capacity) {
+            this.name = name;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    private record Item<T>(long sequence, T value) {
+    }
+
+    private record Worker(String stage, int threads, boolean io, Runnable body) {
+    }
+
+    /**
+     * Thrown inside a stage thread when the pipeline is cancelled by a failure elsewhere.
+     */
+    private static final class Cancelled extends RuntimeException {
+        private Cancelled() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Carries a checked exception of a stage function to {@link #runWorker(Worker)}.
+     */
+    private static final class StageFailure extends RuntimeException {
+        private StageFailure(Exception cause) {
+            super(cause);
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final Item END = new Item<>(-1, null);
+
+    private final String name;
+    private final int queueCapacity;
+    private final IngestMetrics metrics;
+    private final Semaphore inFlight;
+    private final List<Worker> workers = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private boolean hasSource;
+    private boolean hasSink;
+    private boolean virtualThreadIo;
+
+    /**
+     * @param queueCapacity the capacity of the queue between two stages
+     * @param maxInFlight   the number of items that may be between the source and the sink
+     */
+    public StagedPipeline(String name, int queueCapacity, int maxInFlight, IngestMetrics metrics) {
+        if (queueCapacity < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Queue capacity and items in flight must be at least 1");
+        }
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+        this.metrics = metrics;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Runs the source and the sink on virtual threads, so their blocking reads and writes do not hold a platform
+     * thread.
+     */
+    public void setVirtualThreadIo(boolean virtualThreadIo) {
+        this.virtualThreadIo = virtualThreadIo;
+    }
+
+    public <T> Stage<T> source(String stage, Source<T> source) {
+        checkStageName(stage);
+        if (hasSource) {
+            throw new IllegalStateException("The pipeline already has a source");
+        }
+        hasSource = true;
+        Stage<T> output = new Stage<>(stage, queueCapacity);
+        IngestMetrics.Timer timer = metrics.timer("stage_" + stage);
+        workers.add(new Worker(stage, 1, true, () -> {
+            long[] sequence = {0};
+            long[] start = {System.nanoTime()};
+            call(() -> {
+                source.emit(value -> {
+                    timer.record(System.nanoTime() - start[0]);
+                    acquire();
+                    put(output, new Item<>(sequence[0]++, value));
+                    start[0] = System.nanoTime();
+                });
+                return null;
+            });
+            put(output, end());
+        }));
+        return output;
+    }
+
+    public <I, O> Stage<O> map(String stage, Stage<I> input, int parallelism, StageFunction<I, O> function) {
+        checkStageName(stage);
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Stage " + stage + " needs at least 1 thread, was " + parallelism);
+        }
+        checkInput(input);
+        Stage<O> output = new Stage<>(stage, queueCapacity);
+        IngestMetrics.Timer timer = metrics.timer("stage_" + stage);
+        AtomicInteger running = new AtomicInteger(parallelism);
+        workers.add(new Worker(stage, parallelism, false, () -> {
+            Item<I> item;
+            while ((item = take(input)) != END) {
+                long start = System.nanoTime();
+                I value = item.value;
+                O result = call(() -> function.apply(value));
+                timer.record(System.nanoTime() - start);
+                put(output, new Item<>(item.sequence, result));
+            }
+            // Leave the end marker for the other threads of this stage; the last one passes it on.
+            put(input, end());
+            if (running.decrementAndGet() == 0) {
+                put(output, end());
+            }
+        }));
+        return output;
+    }
+
+    public <T> void sink(String stage, Stage<T> input, Sink<T> sink) {
+        checkStageName(stage);
+        checkInput(input);
+        if (hasSink) {
+            throw new IllegalStateException("The pipeline already has a sink");
+        }
+        hasSink = true;
+        IngestMetrics.Timer timer = metrics.timer("stage_" + stage);
+        workers.add(new Worker(stage, 1, true, () -> {
+            PriorityQueue<Item<T>> pending = new PriorityQueue<>(Comparator.comparingLong(Item::sequence));
+            long next = 0;
+            Item<T> item;
+            while ((item = take(input)) != END) {
+                pending.add(item);
+                while (!pending.isEmpty() && pending.peek().sequence == next) {
+                    T value = pending.poll().value;
+                    long start = System.nanoTime();
+                    call(() -> {
+                        sink.accept(value);
+                        return null;
+                    });
+                    timer.record(System.nanoTime() - start);
+                    inFlight.release();
+                    next++;
+                }
+            }
+            if (!pending.isEmpty()) {
+                throw new IllegalStateException("Item " + next + " never reached the sink of " + name);
+            }
+        }));
+    }
+
+    /**
+     * Runs all stages and waits for the sink to receive the last item.
+     */
+    public void run() {
+        if (!hasSource || !hasSink) {
+            throw new IllegalStateException("The pipeline needs a source and a sink");
+        }
+        for (Worker worker : workers) {
+            String prefix = name + "-" + worker.stage + "-";
+            ThreadFactory factory = worker.io && virtualThreadIo
+                    ? Thread.ofVirtual().name(prefix, 0).factory()
+                    : Thread.ofPlatform().name(prefix, 0).factory();
+            for (int i = 0; i < worker.threads; i++) {
+                threads.add(factory.newThread(() -> runWorker(worker)));
+            }
+        }
+        LOG.info("Running " + name + " with " + threads.size() + " threads over " + workers.size() + " stages");
+        threads.forEach(Thread::start);
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    fail(new RuntimeException(name + " was interrupted", e));
+                }
+            }
+        }
+        threads.clear();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        RuntimeException cause = failure.get();
+        if (cause != null) {
+            throw cause;
+        }
+    }
+
+    private void runWorker(Worker worker) {
+        try {
+            worker.body.run();
+        } catch (Cancelled cancelled) {
+            // Another stage failed first.
+        } catch (Throwable t) {
+            Throwable cause = t instanceof StageFailure ? t.getCause() : t;
+            fail(new RuntimeException("Stage " + worker.stage + " of " + name + " failed", cause));
+        }
+    }
+
+    private void fail(RuntimeException cause) {
+        if (failure.compareAndSet(null, cause)) {
+            LOG.error(name + " failed, stopping all stages", cause);
+            threads.forEach(Thread::interrupt);
+        }
+    }
+
+    private void acquire() {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            throw new Cancelled();
+        }
+    }
+
+    private <T> Item<T> take(Stage<T> stage) {
+        try {
+            return stage.queue.take();
+        } catch (InterruptedException e) {
+            throw new Cancelled();
+        }
+    }
+
+    private <T> void put(Stage<T> stage, Item<T> item) {
+        try {
+            stage.queue.put(item);
+        } catch (InterruptedException e) {
+            throw new Cancelled();
+        }
+        metrics.gauge("stage_" + stage.name + "_queue_depth").set(stage.queue.size());
+    }
+
+    private <T> T call(Callable<T> body) {
+        try {
+            return body.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            throw new Cancelled();
+        } catch (Exception e) {
+            throw new StageFailure(e);
+        }
+    }
+
+    private void checkStageName(String stage) {
+        if (stage == null || !STAGE_NAME.matcher(stage).matches()) {
+            throw new IllegalArgumentException("Stage names are lower case metric names, was " + stage);
+        }
+    }
+
+    private void checkInput(Stage<?> input) {
+        if (input.consumed) {
+            throw new IllegalStateException("Stage " + input.name + " is already consumed by another stage");
+        }
+        input.consumed = true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Item<T> end() {
+        return END;
+    }
+}
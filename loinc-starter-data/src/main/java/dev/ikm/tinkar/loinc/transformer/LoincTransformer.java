@@ -1,24 +1,215 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package dev.ikm.tinkar.loinc.transformer;
 
+import dev.ikm.tinkar.common.service.CachingService;
+import dev.ikm.tinkar.common.service.PrimitiveData;
+import dev.ikm.tinkar.common.service.ServiceKeys;
+import dev.ikm.tinkar.common.service.ServiceProperties;
+import dev.ikm.tinkar.entity.EntityCountSummary;
+import dev.ikm.tinkar.entity.load.LoadEntitiesFromProtobufFile;
+import dev.ikm.tinkar.loinc.starterdata.LoincBuildCache;
+import dev.ikm.tinkar.loinc.starterdata.LoincIngestStages;
+import dev.ikm.tinkar.loinc.starterdata.LoincPbExport;
+import dev.ikm.tinkar.loinc.starterdata.LoincSnapshot;
+import dev.ikm.tinkar.loinc.starterdata.LoincStarterData;
+import dev.ikm.tinkar.loinc.starterdata.ParallelComposer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+/**
+ * Builds a LOINC datastore from the LOINC release files.
+ * <p>
+ * The datastore is started once and, when it is new, loaded with the Tinkar starter data. The starter and Part rows
+ * are composed first; Loinc.csv then runs through the staged ingest of {@link LoincStarterData}, where reading,
+ * tokenizing, mapping, composing and committing overlap and are connected by bounded queues. Definitions follow, and
+ * the datastore is shut down at the end.
+ * <pre>
+ * LoincTransformer &lt;starter data csv&gt; &lt;loinc part csv&gt; --loinc Loinc.csv --datastore dir
+ *      [--starter-pb tinkar-starter-data-pb.zip] [--export loinc-pb.zip] [--deflate-level -1] [--export-threads 2]
+ *      [--block-rows 2000] [--queue 8] [--tokenizers n] [--mappers n] [--builders n] [--checkpoint-interval 50000]
+ *      [--compose-parallelism 1] [--previous-release dir] [--virtual-threads] [--snapshot loinc.snapshot]
+ *      [--build-cache dir] [--build-cache-entries 3]
+ * </pre>
+ * Thread counts default to a share of the available processors, see {@link LoincIngestStages#defaults()}. With
+ * {@code --virtual-threads} file reads, commits and the export writes run on virtual threads, see
+ * {@link LoincStarterData#setVirtualThreadIo(boolean)}. Composition is sequential unless {@code --compose-parallelism}
+ * is above 1, which spreads the versions over one STAMP per Composer session and so does not write the same datastore
+ * as a sequential run, see {@link ParallelComposer}. With {@code --snapshot} the Loinc.csv and Part.csv records are
+ * read from a {@link LoincSnapshot} made by its converter, and {@code --loinc} may be left out. With
+ * {@code --build-cache} a new datastore is copied from a {@link LoincBuildCache} when the same inputs were built
+ * before, and stored there after it is built otherwise; builds with {@code --previous-release} or {@code --export}
+ * depend on more than the inputs and bypass the cache. The cache keeps the {@code --build-cache-entries} most recently
+ * used datastores.
+ */
 public class LoincTransformer {
 
     private static final Logger LOG = LoggerFactory.getLogger(LoincTransformer.class);
 
-    public LoincTransformer(File starterDataFile, File partFile) {
+    private final File starterDataFile;
+    private final File partFile;
+    private File loincFile;
+    private File dataStore;
+    private File starterPb;
+    private File export;
+    private int deflateLevel = LoincPbExport.DEFAULT_DEFLATE_LEVEL;
+    private int exportThreads = 2;
+    private LoincIngestStages stages = LoincIngestStages.defaults();
+    private Integer checkpointInterval;
+    private int composeParallelism = 1;
+    private File previousRelease;
+    private boolean virtualThreads;
+    private File snapshot;
+    private File buildCache;
+    private int buildCacheEntries = LoincBuildCache.DEFAULT_MAX_ENTRIES;
 
+    public LoincTransformer(File starterDataFile, File partFile) {
+        this.starterDataFile = starterDataFile;
+        this.partFile = partFile;
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         if (args.length < 2) {
-            LOG.info("Usage: LoincTransformer <starter data csv> <loinc part csv>");
+            LOG.info("Usage: LoincTransformer <starter data csv> <loinc part csv> --loinc <Loinc.csv> "
+                    + "--datastore <dir> [options]");
             System.exit(0);
         }
         LoincTransformer transformer = new LoincTransformer(new File(args[0]), new File(args[1]));
+        LoincIngestStages defaults = LoincIngestStages.defaults();
+        int blockRows = defaults.blockRows();
+        int queue = defaults.queueCapacity();
+        int tokenizers = defaults.tokenizers();
+        int mappers = defaults.mappers();
+        int builders = defaults.builders();
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--loinc" -> transformer.loincFile = new File(value(args, ++i));
+                case "--datastore" -> transformer.dataStore = new File(value(args, ++i));
+                case "--starter-pb" -> transformer.starterPb = new File(value(args, ++i));
+                case "--export" -> transformer.export = new File(value(args, ++i));
+                case "--deflate-level" -> transformer.deflateLevel = Integer.parseInt(value(args, ++i));
+                case "--export-threads" -> transformer.exportThreads = Integer.parseInt(value(args, ++i));
+                case "--block-rows" -> blockRows = Integer.parseInt(value(args, ++i));
+                case "--queue" -> queue = Integer.parseInt(value(args, ++i));
+                case "--tokenizers" -> tokenizers = Integer.parseInt(value(args, ++i));
+                case "--mappers" -> mappers = Integer.parseInt(value(args, ++i));
+                case "--builders" -> builders = Integer.parseInt(value(args, ++i));
+                case "--checkpoint-interval" -> transformer.checkpointInterval = Integer.parseInt(value(args, ++i));
+                case "--compose-parallelism" -> transformer.composeParallelism = Integer.parseInt(value(args, ++i));
+                case "--previous-release" -> transformer.previousRelease = new File(value(args, ++i));
+                case "--virtual-threads" -> transformer.virtualThreads = true;
+                case "--snapshot" -> transformer.snapshot = new File(value(args, ++i));
+                case "--build-cache" -> transformer.buildCache = new File(value(args, ++i));
+                case "--build-cache-entries" -> transformer.buildCacheEntries = Integer.parseInt(value(args, ++i));
+                default -> throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+        transformer.stages = new LoincIngestStages(blockRows, queue, tokenizers, mappers, builders);
+        transformer.transform();
+    }
+
+    /**
+     * Runs the whole ingest into the datastore and shuts it down.
+     */
+    public void transform() throws IOException {
+        if ((loincFile == null && snapshot == null) || dataStore == null) {
+            throw new IllegalArgumentException("--loinc or --snapshot, and --datastore are required");
+        }
+        File[] inputs = snapshot == null
+                ? new File[]{starterDataFile, partFile, loincFile}
+                : new File[]{starterDataFile, snapshot};
+        for (File input : inputs) {
+            if (!input.isFile()) {
+                throw new IllegalArgumentException("Input file " + input + " does not exist");
+            }
+        }
+        boolean newDataStore = !dataStore.exists();
+        LoincBuildCache cache = null;
+        String cacheKey = null;
+        if (buildCache != null) {
+            if (!newDataStore || previousRelease != null || export != null) {
+                LOG.warn("Not using the build cache, it only holds complete builds into a new datastore without "
+                        + "--previous-release or --export");
+            } else {
+                cache = new LoincBuildCache(buildCache, buildCacheEntries);
+                List<File> cacheInputs = new ArrayList<>(Arrays.asList(inputs));
+                if (starterPb != null) {
+                    cacheInputs.add(starterPb);
+                }
+                // Parallel composition spreads the versions over one STAMP per session.
+                cacheKey = cache.key(cacheInputs, List.of("compose-parallelism=" + composeParallelism));
+                if (cache.restore(cacheKey, dataStore)) {
+                    LOG.info("Restored " + dataStore + " from the build cache " + buildCache);
+                    return;
+                }
+            }
+        }
+        CachingService.clearAll();
+        ServiceProperties.set(ServiceKeys.DATA_STORE_ROOT, dataStore);
+        PrimitiveData.selectControllerByName("Open SpinedArrayStore");
+        PrimitiveData.start();
+        if (starterPb != null && newDataStore) {
+            LoadEntitiesFromProtobufFile load = new LoadEntitiesFromProtobufFile(starterPb);
+            EntityCountSummary count = load.compute();
+            LOG.info(count + " entities loaded from " + starterPb);
+        }
 
+        LoincStarterData loincStarterData = new LoincStarterData(starterDataFile, partFile, true);
+        loincStarterData.setDataStore(dataStore);
+        if (loincFile != null) {
+            loincStarterData.setLoincConceptFile(loincFile);
+        }
+        if (snapshot != null) {
+            loincStarterData.setSnapshot(snapshot);
+        }
+        loincStarterData.setIngestStages(stages);
+        if (composeParallelism > 1) {
+            LOG.warn("Composing with " + composeParallelism + " sessions, one STAMP per session: the datastore differs "
+                    + "from a sequential run");
+        }
+        loincStarterData.setComposeParallelism(composeParallelism);
+        loincStarterData.setVirtualThreadIo(virtualThreads);
+        if (checkpointInterval != null) {
+            loincStarterData.setCheckpointInterval(checkpointInterval);
+        }
+        if (previousRelease != null) {
+            loincStarterData.setPreviousRelease(previousRelease);
+        }
+        if (export != null) {
+            loincStarterData.setPbExport(export, deflateLevel, exportThreads);
+        }
+        LOG.info("Transforming " + (snapshot != null ? snapshot : loincFile) + " into " + dataStore
+                + " with " + stages);
+        loincStarterData.processLoincStarterDataCSVFile();
+        if (cache != null) {
+            // The ingest stopped the datastore, so all of it is on disk.
+            cache.store(cacheKey, dataStore);
+        }
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(args[i - 1] + " needs a value");
+        }
+        return args[i];
     }
 }
@@ -28,6 +28,7 @@
     requires dev.ikm.jpms.eclipse.collections.api;
     requires dev.ikm.tinkar.coordinate;
     requires dev.ikm.tinkar.ext.lang.owl;
+    requires jdk.jfr;
 
     requires dev.ikm.tinkar.provider.spinedarray;
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.common.service.CachingService;
+import dev.ikm.tinkar.common.service.PrimitiveData;
+import dev.ikm.tinkar.common.service.ServiceKeys;
+import dev.ikm.tinkar.common.service.ServiceProperties;
+import dev.ikm.tinkar.common.util.io.FileUtil;
+import dev.ikm.tinkar.entity.EntityCountSummary;
+import dev.ikm.tinkar.entity.load.LoadEntitiesFromProtobufFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Starts a spined array store under target for the tests that write entities, empty or preloaded with the Tinkar
+ * starter data. Tests that need the starter data are skipped when its pb.zip is not there.
+ */
+public final class LoincTestDataStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoincTestDataStore.class.getSimpleName());
+
+    private LoincTestDataStore() {
+    }
+
+    public static File start(String name) {
+        File dataStore = TestLoincStarterData.createFilePathInTarget.apply("generated-data/" + name);
+        FileUtil.recursiveDelete(dataStore);
+        return open(dataStore);
+    }
+
+    /**
+     * Starts the store in the directory again, keeping what was written to it.
+     */
+    public static File open(File dataStore) {
+        CachingService.clearAll();
+        ServiceProperties.set(ServiceKeys.DATA_STORE_ROOT, dataStore);
+        PrimitiveData.selectControllerByName("Open SpinedArrayStore");
+        PrimitiveData.start();
+        return dataStore;
+    }
+
+    public static File startWithStarterData(String name) {
+        assumeTrue(TestLoincStarterData.PB_STARTER_DATA.isFile(),
+                "Needs the Tinkar starter data in " + TestLoincStarterData.PB_STARTER_DATA);
+        File dataStore = start(name);
+        EntityCountSummary count = new LoadEntitiesFromProtobufFile(TestLoincStarterData.PB_STARTER_DATA).compute();
+        LOG.info(count + " entities loaded into " + dataStore);
+        return dataStore;
+    }
+
+    public static void stop(File dataStore) {
+        if (PrimitiveData.running()) {
+            PrimitiveData.stop();
+        }
+        FileUtil.recursiveDelete(dataStore);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Small LOINC release files for the tests that run the whole ingest: the starter data csv of the module, a Part.csv
+ * with one part per axis and a Loinc.csv with an active and a deprecated term built from those parts.
+ */
+public final class LoincTestFiles {
+
+    public static final File STARTER_DATA = new File(System.getProperty("user.dir")
+            + "/src/main/resources/LOINC_Starter_Data.csv");
+    public static final String ACTIVE_TERM = "5802-4";
+    public static final String DEPRECATED_TERM = "5803-2";
+    public static final String COMPONENT_PART = "LP15437-9";
+
+    private static final String[] LOINC_HEADER = {"LOINC_NUM", "COMPONENT", "PROPERTY", "TIME_ASPCT", "SYSTEM",
+            "SCALE_TYP", "METHOD_TYP", "CLASS", "VersionLastChanged", "CHNG_TYPE", "DefinitionDescription", "STATUS",
+            "CONSUMER_NAME", "CLASSTYPE", "FORMULA", "EXMPL_ANSWERS", "SURVEY_QUEST_TEXT", "SURVEY_QUEST_SRC",
+            "UNITSREQUIRED", "RELATEDNAMES2", "SHORTNAME", "ORDER_OBS", "HL7_FIELD_SUBFIELD_ID",
+            "EXTERNAL_COPYRIGHT_NOTICE", "EXAMPLE_UNITS", "LONG_COMMON_NAME", "EXAMPLE_UCUM_UNITS"};
+
+    private LoincTestFiles() {
+    }
+
+    /**
+     * @return the Part.csv written to the directory
+     */
+    public static File writePartCsv(File directory) {
+        return write(new File(directory, "Part.csv"), List.of(
+                new String[]{"PartNumber", "PartTypeName", "PartName", "PartDisplayName", "Status"},
+                new String[]{COMPONENT_PART, "COMPONENT", "Nitrite", "Nitrite", "ACTIVE"},
+                new String[]{"LP6850-4", "PROPERTY", "PrThr", "Presence or Threshold", "ACTIVE"},
+                new String[]{"LP6960-1", "TIME", "Pt", "Point in time (spot)", "ACTIVE"},
+                new String[]{"LP7681-2", "SYSTEM", "Urine", "Urine", "ACTIVE"},
+                new String[]{"LP7750-5", "SCALE", "Ord", "Ordinal", "ACTIVE"},
+                new String[]{"LP6462-8", "METHOD", "Test strip", "Test strip", "ACTIVE"},
+                new String[]{"LP7785-1", "CLASS", "UA", "Urinalysis", "ACTIVE"}));
+    }
+
+    /**
+     * @return the Loinc.csv written to the directory
+     */
+    public static File writeLoincCsv(File directory) {
+        return write(new File(directory, "Loinc.csv"), List.of(LOINC_HEADER,
+                term(ACTIVE_TERM, "Test strip", "ACTIVE", "Nitrite [Presence] in Urine by Test strip"),
+                term(DEPRECATED_TERM, "", "DEPRECATED", "Nitrite [Presence] in Urine")));
+    }
+
+    private static String[] term(String loincNumber, String method, String status, String longCommonName) {
+        String[] term = new String[LOINC_HEADER.length];
+        Arrays.fill(term, "");
+        term[0] = loincNumber;
+        term[1] = "Nitrite";
+        term[2] = "PrThr";
+        term[3] = "Pt";
+        term[4] = "Urine";
+        term[5] = "Ord";
+        term[6] = method;
+        term[7] = "UA";
+        term[11] = status;
+        term[13] = "1";
+        term[21] = "Both";
+        term[25] = longCommonName;
+        return term;
+    }
+
+    private static File write(File file, List<String[]> records) {
+        List<String> lines = records.stream()
+                .map(record -> Arrays.stream(record).map(field -> "\"" + field + "\"").collect(Collectors.joining(",")))
+                .toList();
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return file;
+    }
+}
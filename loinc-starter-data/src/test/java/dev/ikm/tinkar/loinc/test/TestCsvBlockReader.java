@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.CsvBlockReader;
+import dev.ikm.tinkar.loinc.starterdata.CsvTokenizer;
+import dev.ikm.tinkar.loinc.starterdata.IngestMetrics;
+import dev.ikm.tinkar.loinc.starterdata.StagedPipeline;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestCsvBlockReader {
+
+    /**
+     * Quoted line breaks, escaped quotes, CRLF endings, a blank line and a last record without a line break.
+     */
+    private static final String CSV = "\"LOINC_NUM\",\"COMPONENT\",\"STATUS\"\r\n"
+            + "\"1-8\",\"Acyclovir\",\"ACTIVE\"\r\n"
+            + "\"2-6\",\"line one\nline two\",\"ACTIVE\"\r\n"
+            + "\"3-4\",\"a \"\"quoted\"\"\r\nvalue\",\"TRIAL\"\r\n"
+            + "\r\n"
+            + "\"4-2\",\"\",\"DEPRECATED\"\r\n"
+            + "\"5-9\",\"Ångström\",\"ACTIVE\"";
+
+    @Test
+    public void cutsBlocksAtRecordBoundaries() throws IOException {
+        Path file = write(CSV);
+        try (CsvBlockReader reader = new CsvBlockReader(file)) {
+            CsvBlockReader.Block header = reader.next(1);
+            assertEquals(0, header.firstLine());
+            assertEquals(1, header.lines());
+            assertEquals("\"LOINC_NUM\",\"COMPONENT\",\"STATUS\"\r\n", header.text());
+
+            CsvBlockReader.Block quoted = reader.next(2);
+            assertEquals(1, quoted.firstLine());
+            assertEquals(3, quoted.endLine());
+            assertTrue(quoted.text().endsWith("\"line one\nline two\",\"ACTIVE\"\r\n"));
+
+            CsvBlockReader.Block rest = reader.next(10);
+            assertEquals(3, rest.firstLine());
+            assertEquals(4, rest.lines());
+            assertTrue(rest.text().endsWith("\"Ångström\",\"ACTIVE\""));
+
+            assertNull(reader.next(10));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void readsNothingFromAnEmptyFile() throws IOException {
+        Path file = write("");
+        try (CsvBlockReader reader = new CsvBlockReader(file)) {
+            assertNull(reader.next(1));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void keepsRecordOrderAcrossBlocksTokenizedInParallel() throws IOException {
+        StringBuilder csv = new StringBuilder(CSV).append("\r\n");
+        // Long enough to fill the 64 KiB read buffer several times, so quoted fields straddle buffer boundaries.
+        for (int i = 0; i < 5_000; i++) {
+            csv.append('"').append(i).append("-0\",");
+            csv.append(i % 3 == 0 ? "\"multi\nline \"\"" + i + "\"\"\"" : "\"plain " + i + "\"");
+            csv.append(",\"ACTIVE\"\n");
+        }
+        Path file = write(csv.toString());
+        try {
+            List<String[]> expected;
+            try (Stream<String[]> records = CsvTokenizer.records(file)) {
+                expected = records.toList();
+            }
+            for (int blockRows : new int[]{1, 3, 7, 2_000}) {
+                assertRecordsInOrder(file, blockRows, expected);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void assertRecordsInOrder(Path file, int blockRows, List<String[]> expected) throws IOException {
+        List<String[]> received = new ArrayList<>();
+        long[] nextLine = {0};
+        try (CsvBlockReader reader = new CsvBlockReader(file)) {
+            StagedPipeline pipeline = new StagedPipeline("blocks", 2, 16, new IngestMetrics());
+            StagedPipeline.Stage<CsvBlockReader.Block> blocks = pipeline.source("reader",
+                    (Consumer<CsvBlockReader.Block> downstream) -> {
+                        CsvBlockReader.Block block;
+                        while ((block = reader.next(blockRows)) != null) {
+                            downstream.accept(block);
+                        }
+                    });
+            StagedPipeline.Stage<Tokenized> tokenized = pipeline.map("tokenizer", blocks, 4,
+                    TestCsvBlockReader::tokenize);
+            pipeline.sink("writer", tokenized, batch -> {
+                assertEquals(nextLine[0], batch.block.firstLine(), "blocks of " + blockRows);
+                nextLine[0] = batch.block.endLine();
+                received.addAll(batch.records);
+            });
+            pipeline.run();
+        }
+        assertEquals(expected.size(), received.size(), "blocks of " + blockRows);
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), received.get(i), "record " + i + " in blocks of " + blockRows);
+        }
+    }
+
+    private record Tokenized(CsvBlockReader.Block block, List<String[]> records) {
+    }
+
+    private static Tokenized tokenize(CsvBlockReader.Block block) throws IOException {
+        List<String[]> records = new ArrayList<>(block.lines());
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(block.text()))) {
+            String[] record;
+            while ((record = tokenizer.next()) != null) {
+                records.add(record);
+            }
+        }
+        return new Tokenized(block, records);
+    }
+
+    private static Path write(String csv) throws IOException {
+        Path file = Files.createTempFile("Loinc", ".csv");
+        Files.writeString(file, csv);
+        return file;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.CsvTokenizer;
+import dev.ikm.tinkar.loinc.starterdata.LoincStarterData;
+import dev.ikm.tinkar.loinc.starterdata.LoincUuids;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TestCsvTokenizer {
+
+    @Test
+    public void splitsQuotedLoincRow() {
+        String[] fields = CsvTokenizer.split("\"10000-8\",\"R wave duration.lead AVR\",\"Time\",\"Pt\",\"\",\"Heart\"");
+        assertArrayEquals(new String[]{"10000-8", "R wave duration.lead AVR", "Time", "Pt", "", "Heart"}, fields);
+    }
+
+    @Test
+    public void keepsCommasAndEscapedQuotesInsideQuotedFields() {
+        String[] fields = CsvTokenizer.split("Property,\"Second axis (e.g., mass vs. \"\"substance\"\")\",,Attribute");
+        assertArrayEquals(new String[]{"Property", "Second axis (e.g., mass vs. \"substance\")", "", "Attribute"}, fields);
+    }
+
+    @Test
+    public void splitsTheQuotedAuthorStarterRow() {
+        // LOINC_Starter_Data.csv row 18; the old regex split kept the quotes on the concept key and its uuid
+        String[] fields = CsvTokenizer.split("\"Regenstrief Institute, Inc. Author\","
+                + "\"Regenstrief Institute, Inc. Author\",LOINC Author,"
+                + "\"Regenstrief Institute, Inc. Author - The entity responsible for publishing LOINC\",AUTHOR,");
+        assertArrayEquals(new String[]{"Regenstrief Institute, Inc. Author",
+                "Regenstrief Institute, Inc. Author", "LOINC Author",
+                "Regenstrief Institute, Inc. Author - The entity responsible for publishing LOINC",
+                "AUTHOR", ""}, fields);
+        assertEquals(LoincStarterData.LOINC_AUTHOR, fields[0]);
+        assertEquals(LoincUuids.nameUuid(LoincStarterData.LOINC_AUTHOR), LoincUuids.nameUuid(fields[0]));
+    }
+
+    @Test
+    public void readsRecordsWithEmbeddedLineBreaks() throws IOException {
+        String csv = "\uFEFF\"LOINC_NUM\",\"STATUS\"\r\n"
+                + "\"1-8\",\"line one\nline two\"\r\n"
+                + "\r\n"
+                + "\"2-6\",\"ACTIVE\",\n";
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(csv), 16)) {
+            assertArrayEquals(new String[]{"LOINC_NUM", "STATUS"}, tokenizer.next());
+            assertArrayEquals(new String[]{"1-8", "line one\nline two"}, tokenizer.next());
+            assertArrayEquals(new String[]{"2-6", "ACTIVE", ""}, tokenizer.next());
+            assertNull(tokenizer.next());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.IngestCheckpoint;
+import dev.ikm.tinkar.loinc.starterdata.IngestCheckpoint.Phase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestIngestCheckpoint {
+
+    private Path directory;
+    private File dataStore;
+    private File loincFile;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("checkpoint");
+        dataStore = Files.createDirectory(directory.resolve("datastore")).toFile();
+        loincFile = Files.writeString(directory.resolve("Loinc.csv"), "\"LOINC_NUM\"\n\"1-8\"\n").toFile();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private Path checkpointFile() {
+        return dataStore.toPath().resolve(IngestCheckpoint.FILE_NAME);
+    }
+
+    @Test
+    public void completesPhasesInOrder() {
+        IngestCheckpoint checkpoint = IngestCheckpoint.open(null, loincFile);
+        assertFalse(checkpoint.isDurable());
+        for (Phase phase : Phase.values()) {
+            assertFalse(checkpoint.isComplete(phase), phase.name());
+            assertEquals(0, checkpoint.resumeRow(phase));
+        }
+
+        checkpoint.commit(Phase.PART_CONCEPTS, 500);
+        assertTrue(checkpoint.isComplete(Phase.STARTER_CONCEPTS));
+        assertFalse(checkpoint.isComplete(Phase.PART_CONCEPTS));
+        assertEquals(500, checkpoint.resumeRow(Phase.PART_CONCEPTS));
+        assertEquals(0, checkpoint.resumeRow(Phase.LOINC_CONCEPTS));
+
+        checkpoint.complete(Phase.PART_CONCEPTS);
+        assertTrue(checkpoint.isComplete(Phase.PART_CONCEPTS));
+        assertEquals(0, checkpoint.resumeRow(Phase.PART_CONCEPTS));
+        assertEquals(0, checkpoint.resumeRow(Phase.LOINC_CONCEPTS));
+
+        // Completing an earlier phase again does not move the checkpoint back.
+        checkpoint.commit(Phase.ACTIVE_LOINC_CONCEPTS, 20);
+        checkpoint.complete(Phase.STARTER_CONCEPTS);
+        assertEquals(20, checkpoint.resumeRow(Phase.ACTIVE_LOINC_CONCEPTS));
+
+        // The staged ingest completes both LOINC concept phases at once.
+        checkpoint.complete(Phase.DEPRECATED_LOINC_CONCEPTS);
+        assertTrue(checkpoint.isComplete(Phase.LOINC_CONCEPTS));
+        assertTrue(checkpoint.isComplete(Phase.DEPRECATED_LOINC_CONCEPTS));
+        assertFalse(checkpoint.isComplete(Phase.ACTIVE_DEFINITIONS));
+
+        checkpoint.complete(Phase.INACTIVE_DEFINITIONS);
+        checkpoint.complete(Phase.COMPLETE);
+        assertTrue(checkpoint.isComplete(Phase.INACTIVE_DEFINITIONS));
+        assertFalse(checkpoint.isComplete(Phase.COMPLETE));
+    }
+
+    @Test
+    public void resumesFromTheDatastore() {
+        IngestCheckpoint checkpoint = IngestCheckpoint.open(dataStore, loincFile, null);
+        assertTrue(checkpoint.isDurable());
+        assertFalse(Files.exists(checkpointFile()));
+        checkpoint.complete(Phase.STARTER_CONCEPTS);
+        checkpoint.commit(Phase.PART_CONCEPTS, 12_000);
+        assertTrue(Files.exists(checkpointFile()));
+
+        IngestCheckpoint resumed = IngestCheckpoint.open(dataStore, loincFile);
+        assertTrue(resumed.isComplete(Phase.STARTER_CONCEPTS));
+        assertEquals(12_000, resumed.resumeRow(Phase.PART_CONCEPTS));
+
+        resumed.complete(Phase.INACTIVE_DEFINITIONS);
+        resumed.finish();
+        assertFalse(Files.exists(checkpointFile()));
+        assertTrue(resumed.isComplete(Phase.INACTIVE_DEFINITIONS));
+
+        IngestCheckpoint next = IngestCheckpoint.open(dataStore, loincFile);
+        assertFalse(next.isComplete(Phase.STARTER_CONCEPTS));
+        assertEquals(0, next.resumeRow(Phase.PART_CONCEPTS));
+    }
+
+    @Test
+    public void ignoresACheckpointOfOtherInputs() throws IOException {
+        IngestCheckpoint.open(dataStore, loincFile).commit(Phase.PART_CONCEPTS, 7);
+
+        Files.writeString(loincFile.toPath(), "\"2-6\"\n", StandardOpenOption.APPEND);
+        IngestCheckpoint changed = IngestCheckpoint.open(dataStore, loincFile);
+        assertFalse(changed.isComplete(Phase.STARTER_CONCEPTS));
+        assertEquals(0, changed.resumeRow(Phase.PART_CONCEPTS));
+
+        // Another set of input files does not match either.
+        changed.commit(Phase.PART_CONCEPTS, 7);
+        File partFile = Files.writeString(directory.resolve("Part.csv"), "\"PartNumber\"\n").toFile();
+        assertEquals(0, IngestCheckpoint.open(dataStore, loincFile, partFile).resumeRow(Phase.PART_CONCEPTS));
+        assertEquals(7, IngestCheckpoint.open(dataStore, loincFile).resumeRow(Phase.PART_CONCEPTS));
+    }
+
+    @Test
+    public void refusesToResumeTheLoincConceptsOfTheOtherMode() {
+        IngestCheckpoint checkpoint = IngestCheckpoint.open(dataStore, loincFile);
+        checkpoint.complete(Phase.PART_CONCEPTS);
+        assertDoesNotThrow(() -> checkpoint.checkLoincConceptMode(true));
+        assertDoesNotThrow(() -> checkpoint.checkLoincConceptMode(false));
+
+        checkpoint.commit(Phase.LOINC_CONCEPTS, 10_001);
+        IngestCheckpoint staged = IngestCheckpoint.open(dataStore, loincFile);
+        assertDoesNotThrow(() -> staged.checkLoincConceptMode(true));
+        assertThrows(IllegalStateException.class, () -> staged.checkLoincConceptMode(false));
+
+        checkpoint.commit(Phase.ACTIVE_LOINC_CONCEPTS, 10_000);
+        IngestCheckpoint classic = IngestCheckpoint.open(dataStore, loincFile);
+        assertDoesNotThrow(() -> classic.checkLoincConceptMode(false));
+        assertThrows(IllegalStateException.class, () -> classic.checkLoincConceptMode(true));
+
+        checkpoint.complete(Phase.ACTIVE_LOINC_CONCEPTS);
+        assertEquals(0, checkpoint.resumeRow(Phase.DEPRECATED_LOINC_CONCEPTS));
+        assertThrows(IllegalStateException.class, () -> checkpoint.checkLoincConceptMode(true));
+
+        checkpoint.complete(Phase.DEPRECATED_LOINC_CONCEPTS);
+        assertDoesNotThrow(() -> checkpoint.checkLoincConceptMode(true));
+        assertDoesNotThrow(() -> checkpoint.checkLoincConceptMode(false));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.CsvTokenizer;
+import dev.ikm.tinkar.loinc.starterdata.IngestErrorReport;
+import dev.ikm.tinkar.loinc.starterdata.IngestErrorReport.Category;
+import dev.ikm.tinkar.loinc.starterdata.IngestErrorReport.Problem;
+import dev.ikm.tinkar.loinc.starterdata.IngestMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestIngestErrorReport {
+
+    @Test
+    public void keepsABoundedSampleAndQuarantine() {
+        IngestMetrics metrics = new IngestMetrics();
+        IngestErrorReport report = new IngestErrorReport(3, 5, metrics);
+        for (int i = 0; i < 10; i++) {
+            report.report(Category.MISSING_AXIS, i + "-0", "COMPONENT=LP" + i);
+        }
+        report.report(Category.DEFINITION, "99-9", new IllegalStateException("no stamp"));
+        report.report(Category.DEFINITION, "98-0", new NullPointerException());
+
+        assertEquals(10, report.count(Category.MISSING_AXIS));
+        assertEquals(0, report.count(Category.CONCEPT_SEMANTICS));
+        assertEquals(12, report.total());
+        assertEquals(12, metrics.count(IngestMetrics.ERRORS));
+        assertEquals(List.of("0-0", "1-0", "2-0"), report.sample(Category.MISSING_AXIS));
+        assertEquals(List.of("99-9", "98-0"), report.sample(Category.DEFINITION));
+        assertEquals(List.of(), report.sample(Category.CONCEPT_SEMANTICS));
+
+        List<Problem> quarantined = report.quarantined();
+        assertEquals(5, quarantined.size());
+        assertEquals(new Problem(Category.MISSING_AXIS, "0-0", "COMPONENT=LP0"), quarantined.get(0));
+        assertEquals("4-0", quarantined.get(4).code());
+
+        String summary = report.summary();
+        assertTrue(summary.startsWith("Ingest problems: 12"), summary);
+        assertTrue(summary.contains("e.g. 0-0, 1-0, 2-0"), summary);
+        assertTrue(summary.contains("7 problems were counted but not quarantined"), summary);
+        assertFalse(summary.contains(Category.CONCEPT_SEMANTICS.name()), summary);
+    }
+
+    @Test
+    public void describesExceptions() {
+        IngestErrorReport report = new IngestErrorReport(new IngestMetrics());
+        report.report(Category.DEFINITION, "99-9", new IllegalStateException("no stamp"));
+        report.report(Category.DEFINITION, "98-0", new NullPointerException());
+        assertEquals("IllegalStateException: no stamp", report.quarantined().get(0).detail());
+        assertEquals("NullPointerException", report.quarantined().get(1).detail());
+    }
+
+    @Test
+    public void staysBoundedWhenReportedConcurrently() throws Exception {
+        IngestMetrics metrics = new IngestMetrics();
+        IngestErrorReport report = new IngestErrorReport(4, 1_000, metrics);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int first = thread * 1_000;
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < first + 1_000; i++) {
+                        report.report(Category.CONCEPT_SEMANTICS, i + "-0", "detail");
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(8_000, report.count(Category.CONCEPT_SEMANTICS));
+        assertEquals(8_000, metrics.count(IngestMetrics.ERRORS));
+        assertEquals(4, report.sample(Category.CONCEPT_SEMANTICS).size());
+        assertEquals(1_000, report.quarantined().size());
+    }
+
+    @Test
+    public void writesTheQuarantineCsv() throws IOException {
+        IngestErrorReport report = new IngestErrorReport(new IngestMetrics());
+        report.report(Category.MISSING_AXIS, "2345-7", "COMPONENT=Glucose, \"free\" METHOD=");
+        report.report(Category.CONCEPT_SEMANTICS, "1-8", "line one\nline two");
+        report.report(Category.DEFINITION, null, (String) null);
+
+        Path directory = Files.createTempDirectory("quarantine");
+        Path file = directory.resolve(IngestErrorReport.QUARANTINE_FILE_NAME);
+        try {
+            report.writeQuarantine(directory.toFile());
+            assertFalse(Files.exists(directory.resolve(IngestErrorReport.QUARANTINE_FILE_NAME + ".tmp")));
+            List<String[]> records;
+            try (Stream<String[]> stream = CsvTokenizer.records(file)) {
+                records = stream.toList();
+            }
+            assertEquals(4, records.size());
+            assertArrayEquals(new String[]{"CATEGORY", "LOINC_NUM", "DETAIL"}, records.get(0));
+            assertArrayEquals(new String[]{"MISSING_AXIS", "2345-7", "COMPONENT=Glucose, \"free\" METHOD="},
+                    records.get(1));
+            assertArrayEquals(new String[]{"CONCEPT_SEMANTICS", "1-8", "line one\nline two"}, records.get(2));
+            assertArrayEquals(new String[]{"DEFINITION", "", ""}, records.get(3));
+
+            // Without problems the quarantine of an earlier run is removed.
+            new IngestErrorReport(new IngestMetrics()).writeQuarantine(directory.toFile());
+            assertFalse(Files.exists(file));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void rejectsNegativeLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new IngestErrorReport(-1, 10, new IngestMetrics()));
+        assertThrows(IllegalArgumentException.class, () -> new IngestErrorReport(10, -1, new IngestMetrics()));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.IngestMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestIngestMetrics {
+
+    private static IngestMetrics sampleMetrics() {
+        IngestMetrics metrics = new IngestMetrics();
+        metrics.timer(IngestMetrics.PARSE).record(1_500_000_000L);
+        metrics.timer(IngestMetrics.PARSE).record(500_000_000L);
+        metrics.timer(IngestMetrics.COMPOSE).record(2_000_000_000L);
+        metrics.add(IngestMetrics.ROWS_READ, 100);
+        metrics.increment(IngestMetrics.ERRORS);
+        metrics.gauge(IngestMetrics.SEMANTIC_QUEUE_DEPTH).set(7);
+        metrics.gauge(IngestMetrics.SEMANTIC_QUEUE_DEPTH).set(3);
+        return metrics;
+    }
+
+    @Test
+    public void writesPrometheusText() {
+        assertEquals("""
+                # HELP loinc_ingest_phase_seconds Time spent in each phase of the ingest.
+                # TYPE loinc_ingest_phase_seconds summary
+                loinc_ingest_phase_seconds_sum{phase="compose"} 2.000000
+                loinc_ingest_phase_seconds_count{phase="compose"} 1
+                loinc_ingest_phase_seconds_sum{phase="parse"} 2.000000
+                loinc_ingest_phase_seconds_count{phase="parse"} 2
+                # HELP loinc_ingest_phase_max_seconds Longest single run of each phase.
+                # TYPE loinc_ingest_phase_max_seconds gauge
+                loinc_ingest_phase_max_seconds{phase="compose"} 2.000000
+                loinc_ingest_phase_max_seconds{phase="parse"} 1.500000
+                # TYPE loinc_ingest_errors_total counter
+                loinc_ingest_errors_total 1
+                # TYPE loinc_ingest_rows_read_total counter
+                loinc_ingest_rows_read_total 100
+                # TYPE loinc_ingest_semantic_queue_depth gauge
+                loinc_ingest_semantic_queue_depth 3
+                # TYPE loinc_ingest_semantic_queue_depth_max gauge
+                loinc_ingest_semantic_queue_depth_max 7
+                """, sampleMetrics().toPrometheusText());
+    }
+
+    @Test
+    public void writesJson() {
+        assertEquals("""
+                {
+                  "timers": {
+                    "compose": {"count": 1, "seconds": 2.000000, "maxSeconds": 2.000000},
+                    "parse": {"count": 2, "seconds": 2.000000, "maxSeconds": 1.500000}
+                  },
+                  "counters": {
+                    "errors": 1,
+                    "rows_read": 100
+                  },
+                  "gauges": {
+                    "semantic_queue_depth": {"value": 3, "max": 7}
+                  }
+                }
+                """, sampleMetrics().toJson());
+        assertEquals("""
+                {
+                  "timers": {
+                  },
+                  "counters": {
+                  },
+                  "gauges": {
+                  }
+                }
+                """, new IngestMetrics().toJson());
+    }
+
+    @Test
+    public void writesBothFiles() throws IOException {
+        IngestMetrics metrics = sampleMetrics();
+        Path directory = Files.createTempDirectory("metrics");
+        Path prometheus = directory.resolve(IngestMetrics.PROMETHEUS_FILE_NAME);
+        Path json = directory.resolve(IngestMetrics.JSON_FILE_NAME);
+        try {
+            metrics.write(directory.toFile());
+            assertEquals(metrics.toPrometheusText(), Files.readString(prometheus));
+            assertEquals(metrics.toJson(), Files.readString(json));
+            assertFalse(Files.exists(directory.resolve(IngestMetrics.JSON_FILE_NAME + ".tmp")));
+        } finally {
+            Files.deleteIfExists(prometheus);
+            Files.deleteIfExists(json);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void countsFromSeveralThreads() {
+        IngestMetrics metrics = new IngestMetrics();
+        IntStream.range(0, 100_000).parallel().forEach(i -> {
+            metrics.increment(IngestMetrics.CONCEPTS);
+            metrics.timer(IngestMetrics.COMMIT).record(i);
+            metrics.gauge(IngestMetrics.DEFINITION_QUEUE_DEPTH).set(i);
+        });
+        assertEquals(100_000, metrics.count(IngestMetrics.CONCEPTS));
+        assertEquals(100_000, metrics.timer(IngestMetrics.COMMIT).count());
+        assertEquals(99_999L * 100_000 / 2, metrics.timer(IngestMetrics.COMMIT).totalNanos());
+        assertEquals(99_999, metrics.timer(IngestMetrics.COMMIT).maxNanos());
+        assertEquals(99_999, metrics.gauge(IngestMetrics.DEFINITION_QUEUE_DEPTH).max());
+        assertEquals(0, metrics.count(IngestMetrics.SEMANTICS));
+    }
+
+    @Test
+    public void timesARunAndSamplesTheHeap() {
+        IngestMetrics metrics = new IngestMetrics();
+        assertEquals(0, metrics.gauge(IngestMetrics.HEAP_USED_BYTES).max());
+        try (IngestMetrics.Timing ignored = metrics.start(IngestMetrics.EXPORT)) {
+            assertEquals(0, metrics.timer(IngestMetrics.EXPORT).count());
+        }
+        assertEquals(1, metrics.timer(IngestMetrics.EXPORT).count());
+        assertTrue(metrics.gauge(IngestMetrics.HEAP_USED_BYTES).max() > 0);
+        assertTrue(metrics.summary().contains(IngestMetrics.EXPORT));
+    }
+}
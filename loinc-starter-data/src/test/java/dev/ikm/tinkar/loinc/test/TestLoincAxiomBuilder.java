@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.entity.graph.DiTreeEntity;
+import dev.ikm.tinkar.entity.graph.adaptor.axiom.LogicalExpression;
+import dev.ikm.tinkar.entity.graph.isomorphic.IsomorphicResultsLeafHash;
+import dev.ikm.tinkar.ext.lang.owl.SctOwlUtilities;
+import dev.ikm.tinkar.loinc.starterdata.LoincAxiomBuilder;
+import dev.ikm.tinkar.loinc.starterdata.LoincStarterData;
+import dev.ikm.tinkar.loinc.starterdata.LoincUuids;
+import dev.ikm.tinkar.terms.EntityProxy;
+import dev.ikm.tinkar.terms.TinkarTerm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLoincAxiomBuilder {
+
+    private static final int AXES = LoincStarterData.LOINC_AXES.values().length;
+
+    private File dataStore;
+    private EntityProxy.Concept term;
+    private EntityProxy.Concept observableEntity;
+    private EntityProxy.Concept[] axisAttributes;
+    private EntityProxy.Concept[] axisValues;
+    private LoincAxiomBuilder axiomBuilder;
+
+    @BeforeEach
+    public void startDataStore() {
+        dataStore = LoincTestDataStore.start(getClass().getSimpleName());
+        term = concept("10000-8");
+        observableEntity = concept(LoincStarterData.OBSERVABLE_ENTITY);
+        axisAttributes = new EntityProxy.Concept[AXES];
+        axisValues = new EntityProxy.Concept[AXES];
+        for (int axis = 0; axis < AXES; axis++) {
+            axisAttributes[axis] = concept(LoincStarterData.LOINC_AXES.values()[axis].name());
+            axisValues[axis] = concept("LP" + (7000 + axis) + "-" + axis);
+        }
+        axiomBuilder = new LoincAxiomBuilder(observableEntity, axisAttributes);
+    }
+
+    @AfterEach
+    public void stopDataStore() {
+        LoincTestDataStore.stop(dataStore);
+    }
+
+    @Test
+    public void matchesTheParsedOwlDefinition() throws Exception {
+        assertEquivalent(SctOwlUtilities.sctToLogicalExpression(owlText(axisValues), ""),
+                axiomBuilder.definition(axisValues));
+    }
+
+    @Test
+    public void leavesOutAxesWithoutValue() throws Exception {
+        EntityProxy.Concept[] withoutMethod = axisValues.clone();
+        withoutMethod[AXES - 1] = null;
+        LogicalExpression definition = axiomBuilder.definition(withoutMethod);
+
+        assertEquivalent(SctOwlUtilities.sctToLogicalExpression(owlText(withoutMethod), ""), definition);
+        assertFalse(equivalent(axiomBuilder.definition(axisValues), definition),
+                "The role group of an axis without value is left out");
+    }
+
+    @Test
+    public void rejectsTheWrongNumberOfAxisValues() {
+        assertThrows(IllegalArgumentException.class, () -> axiomBuilder.definition(new EntityProxy.Concept[AXES - 1]));
+        assertThrows(IllegalArgumentException.class, () -> axiomBuilder.fingerprint(new int[AXES + 1]));
+    }
+
+    @Test
+    public void fingerprintChangesWithTheAxisValues() {
+        int[] nids = new int[AXES];
+        for (int axis = 0; axis < AXES; axis++) {
+            nids[axis] = axisValues[axis].nid();
+        }
+        long fingerprint = axiomBuilder.fingerprint(nids);
+        assertEquals(fingerprint, axiomBuilder.fingerprint(nids.clone()));
+
+        int[] otherMethod = nids.clone();
+        otherMethod[AXES - 1] = term.nid();
+        assertNotEquals(fingerprint, axiomBuilder.fingerprint(otherMethod));
+        int[] withoutMethod = nids.clone();
+        withoutMethod[AXES - 1] = 0;
+        assertNotEquals(fingerprint, axiomBuilder.fingerprint(withoutMethod));
+    }
+
+    private void assertEquivalent(LogicalExpression expected, LogicalExpression actual) throws Exception {
+        assertTrue(equivalent(expected, actual), "Expected " + expected + " but was " + actual);
+    }
+
+    private boolean equivalent(LogicalExpression first, LogicalExpression second) throws Exception {
+        return new IsomorphicResultsLeafHash((DiTreeEntity) first.sourceGraph(), (DiTreeEntity) second.sourceGraph(),
+                term.nid()).call().equivalent();
+    }
+
+    /**
+     * The OWL text the import wrote and parsed for each term before {@link LoincAxiomBuilder}.
+     */
+    private String owlText(EntityProxy.Concept[] values) {
+        StringBuilder owlString = new StringBuilder();
+        owlString.append("EquivalentClasses( \n");
+        owlString.append(":[" + term.publicId().asUuidArray()[0] + "] \n");
+        owlString.append("\tObjectIntersectionOf( ");
+        owlString.append(":[" + observableEntity.publicId().asUuidArray()[0] + "] \n");
+        for (int axis = 0; axis < values.length; axis++) {
+            if (values[axis] != null) {
+                owlString.append("\tObjectSomeValuesFrom( \n");
+                owlString.append("\t\t:[" + TinkarTerm.ROLE_GROUP.publicId().asUuidArray()[0] + "] \n");
+                owlString.append("\t\t\tObjectSomeValuesFrom( \n");
+                owlString.append("\t\t\t:[" + axisAttributes[axis].publicId().asUuidArray()[0] + "] \n");
+                owlString.append("\t\t\t:[" + values[axis].publicId().asUuidArray()[0] + "] \n");
+                owlString.append("\t\t )\n");
+                owlString.append("\t )\n");
+            }
+        }
+        owlString.append("\t\t)");
+        owlString.append("\t");
+        return owlString.toString();
+    }
+
+    private static EntityProxy.Concept concept(String name) {
+        EntityProxy.Concept concept = EntityProxy.Concept.make(name, LoincUuids.nameUuid(name));
+        concept.nid();
+        return concept;
+    }
+}
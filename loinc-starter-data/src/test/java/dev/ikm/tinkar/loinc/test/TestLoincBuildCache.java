@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.LoincBuildCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLoincBuildCache {
+
+    private Path directory;
+    private Path cacheDirectory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("build-cache");
+        cacheDirectory = directory.resolve("cache");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private File dataStore(String name, String content) throws IOException {
+        Path dataStore = Files.createDirectories(directory.resolve(name).resolve("spines"));
+        Files.writeString(dataStore.resolve("0.spine"), content);
+        return dataStore.getParent().toFile();
+    }
+
+    /**
+     * Marks the entry as used the given number of minutes ago, so the order does not depend on the clock resolution.
+     */
+    private void usedMinutesAgo(String key, int minutes) throws IOException {
+        Files.setLastModifiedTime(cacheDirectory.resolve(key),
+                FileTime.from(Instant.now().minusSeconds(60L * minutes)));
+    }
+
+    @Test
+    public void restoresAStoredDatastore() throws IOException {
+        LoincBuildCache cache = new LoincBuildCache(cacheDirectory.toFile());
+        File restored = directory.resolve("restored").toFile();
+        assertFalse(cache.restore("a", restored));
+        assertFalse(restored.exists());
+
+        cache.store("a", dataStore("built", "spine a"));
+        assertEquals(List.of("a"), cache.keys());
+        Files.createDirectories(restored.toPath());
+        Files.writeString(restored.toPath().resolve("stale"), "stale");
+        assertTrue(cache.restore("a", restored));
+        assertEquals("spine a", Files.readString(restored.toPath().resolve("spines/0.spine")));
+        assertFalse(Files.exists(restored.toPath().resolve("stale")));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntries() throws IOException {
+        LoincBuildCache cache = new LoincBuildCache(cacheDirectory.toFile(), 2);
+        cache.store("a", dataStore("a", "spine a"));
+        usedMinutesAgo("a", 30);
+        cache.store("b", dataStore("b", "spine b"));
+        usedMinutesAgo("b", 20);
+        assertEquals(List.of("b", "a"), cache.keys());
+
+        // Restoring a makes it the most recently used, so storing c evicts b.
+        assertTrue(cache.restore("a", directory.resolve("restored").toFile()));
+        cache.store("c", dataStore("c", "spine c"));
+        assertEquals(2, cache.keys().size());
+        assertTrue(cache.keys().contains("a"));
+        assertTrue(cache.keys().contains("c"));
+        assertFalse(Files.exists(cacheDirectory.resolve("b")));
+
+        // The entry just stored is kept even when another entry, here stored by a build with a clock ahead, is newer.
+        usedMinutesAgo("a", 1);
+        usedMinutesAgo("c", 2);
+        Files.createDirectories(cacheDirectory.resolve("d"));
+        usedMinutesAgo("d", -10);
+        cache.store("b", dataStore("b2", "spine b"));
+        assertEquals(List.of("d", "b"), cache.keys());
+    }
+
+    @Test
+    public void keepsOneEntryAtLeast() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> new LoincBuildCache(cacheDirectory.toFile(), 0));
+        LoincBuildCache cache = new LoincBuildCache(cacheDirectory.toFile(), 1);
+        cache.store("a", dataStore("a", "spine a"));
+        usedMinutesAgo("a", 10);
+        cache.store("b", dataStore("b", "spine b"));
+        assertEquals(List.of("b"), cache.keys());
+        // Storing a key that is cached only marks it as used.
+        cache.store("b", dataStore("b2", "other"));
+        assertEquals(List.of("b"), cache.keys());
+        assertTrue(cache.restore("b", directory.resolve("restored").toFile()));
+        assertEquals("spine b", Files.readString(directory.resolve("restored/spines/0.spine")));
+    }
+
+    @Test
+    public void keysDependOnTheInputsAndSettings() throws IOException {
+        LoincBuildCache cache = new LoincBuildCache(cacheDirectory.toFile());
+        File first = Files.writeString(directory.resolve("Loinc.csv"), "\"1-8\"\n").toFile();
+        File second = Files.writeString(directory.resolve("Part.csv"), "\"LP1-2\"\n").toFile();
+        String key = cache.key(List.of(first, second));
+        assertEquals(64, key.length());
+        assertEquals(key, cache.key(List.of(first, second)));
+        assertNotEquals(key, cache.key(List.of(second, first)));
+        assertNotEquals(key, cache.key(List.of(first, second), List.of("compose-parallelism=4")));
+        Files.writeString(first.toPath(), "\"2-6\"\n");
+        assertNotEquals(key, cache.key(List.of(first, second)));
+    }
+}
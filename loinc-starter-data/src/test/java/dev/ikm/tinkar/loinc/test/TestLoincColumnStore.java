@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.CsvTokenizer;
+import dev.ikm.tinkar.loinc.starterdata.LoincColumnStore;
+import dev.ikm.tinkar.loinc.starterdata.LoincColumnStore.ColumnType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static dev.ikm.tinkar.loinc.starterdata.LoincConstants.CLASS;
+import static dev.ikm.tinkar.loinc.starterdata.LoincConstants.COMMON_TEST_RANK;
+import static dev.ikm.tinkar.loinc.starterdata.LoincConstants.LOINC_NUM;
+import static dev.ikm.tinkar.loinc.starterdata.LoincConstants.STATUS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestLoincColumnStore {
+
+    private static final String HEADER = "\uFEFF\"LOINC_NUM\",\"CLASS\",\"STATUS\",\"COMMON_TEST_RANK\"";
+
+    @Test
+    public void typesColumnsByName() {
+        LoincColumnStore store = LoincColumnStore.fromHeaderLine(HEADER);
+        assertEquals(List.of(LOINC_NUM, CLASS, STATUS, COMMON_TEST_RANK), store.columnNames());
+        assertEquals(0, store.columnIndex(LOINC_NUM));
+        assertEquals(-1, store.columnIndex("MISSING"));
+        assertEquals(ColumnType.TEXT, store.columnType(store.columnIndex(LOINC_NUM)));
+        assertEquals(ColumnType.DICTIONARY, store.columnType(store.columnIndex(CLASS)));
+        assertEquals(ColumnType.INTEGER, store.columnType(store.columnIndex(COMMON_TEST_RANK)));
+    }
+
+    @Test
+    public void keepsValuesThatAreNotPlainIntegers() {
+        LoincColumnStore store = LoincColumnStore.fromHeaderLine(HEADER);
+        String[] ranks = {"0", "7", "007", "00", "-3", "+3", " 4", "4 ", "12a", "999999999", "1234567890", ""};
+        for (String rank : ranks) {
+            store.addRow(new String[]{"1-8", "CHEM", "ACTIVE", rank});
+        }
+        for (int row = 0; row < ranks.length; row++) {
+            assertEquals(ranks[row], store.get(row, COMMON_TEST_RANK));
+        }
+    }
+
+    @Test
+    public void keepsLeadingZerosInDictionaryAndTextColumns() {
+        LoincColumnStore store = LoincColumnStore.fromHeaderLine(HEADER);
+        store.addLine("\"0001-8\",\"007\",\"ACTIVE\",\"1\"");
+        store.addLine("\"1-8\",\"7\",\"ACTIVE\",\"01\"");
+        assertEquals("0001-8", store.get(0, LOINC_NUM));
+        assertEquals("007", store.get(0, CLASS));
+        assertEquals("7", store.get(1, CLASS));
+        assertEquals("01", store.get(1, COMMON_TEST_RANK));
+        assertEquals(2, store.distinctValues(store.columnIndex(CLASS)));
+    }
+
+    @Test
+    public void readsEmptyValuesAsEmpty() {
+        LoincColumnStore store = LoincColumnStore.fromHeaderLine(HEADER);
+        store.addLine("\"\",\"\",\"\",\"\"");
+        store.addLine(",,,");
+        for (int row = 0; row < 2; row++) {
+            for (int column = 0; column < store.columnCount(); column++) {
+                assertEquals("", store.get(row, column));
+            }
+        }
+        assertEquals(1, store.distinctValues(store.columnIndex(STATUS)));
+        assertEquals(-1, store.distinctValues(store.columnIndex(LOINC_NUM)));
+    }
+
+    @Test
+    public void padsRowsShorterThanTheHeader() {
+        LoincColumnStore store = LoincColumnStore.fromHeaderLine(HEADER);
+        store.addRow(new String[]{"1-8", "CHEM"});
+        store.addRow(new String[]{});
+        store.addRow(new String[]{"2-6", "CHEM", "ACTIVE", "5", "extra"});
+        assertEquals(3, store.rowCount());
+        assertEquals("CHEM", store.get(0, CLASS));
+        assertEquals("", store.get(0, STATUS));
+        assertEquals("", store.get(0, COMMON_TEST_RANK));
+        assertEquals("", store.get(1, LOINC_NUM));
+        assertEquals("5", store.get(2, COMMON_TEST_RANK));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(3, 0));
+        assertThrows(IllegalArgumentException.class, () -> store.get(0, "MISSING"));
+    }
+
+    @Test
+    public void matchesTheTokenizedRecords() throws IOException {
+        StringBuilder csv = new StringBuilder(HEADER).append("\r\n");
+        String[] classes = {"CHEM", "HEM/BC", "MICRO", "\"SERO, \"\"quoted\"\"\"", ""};
+        String[] statuses = {"ACTIVE", "DEPRECATED", "TRIAL", "DISCOURAGED"};
+        String[] ranks = {"", "0", "12", "007", "12345678901", "n/a"};
+        // More rows than the initial capacity of a column, so the columns grow.
+        for (int row = 0; row < 3_000; row++) {
+            csv.append('"').append(row).append("-").append(row % 10).append('"');
+            if (row % 7 == 3) {
+                // A row shorter than the header.
+                csv.append(",\"CHEM\"\r\n");
+                continue;
+            }
+            csv.append(',').append(classes[row % classes.length])
+                    .append(",\"").append(statuses[row % statuses.length]).append('"')
+                    .append(",\"").append(ranks[row % ranks.length]).append("\"\r\n");
+        }
+
+        Path file = Files.createTempFile("Loinc", ".csv");
+        try {
+            Files.writeString(file, csv);
+            LoincColumnStore store = LoincColumnStore.read(file);
+            List<String[]> records;
+            try (Stream<String[]> stream = CsvTokenizer.records(file)) {
+                records = stream.skip(1).toList();
+            }
+
+            assertEquals(records.size(), store.rowCount());
+            Map<String, List<String>> columns = store.asMap();
+            for (int row = 0; row < records.size(); row++) {
+                String[] record = records.get(row);
+                for (int column = 0; column < store.columnCount(); column++) {
+                    String expected = column < record.length ? record[column] : "";
+                    assertEquals(expected, store.get(row, column));
+                    assertEquals(expected, columns.get(store.columnNames().get(column)).get(row));
+                }
+            }
+            assertEquals("SERO, \"quoted\"", store.get(8, CLASS));
+            // The short rows add the empty status.
+            assertEquals(statuses.length + 1, store.distinctValues(store.columnIndex(STATUS)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.LoincConceptIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLoincConceptIndex {
+
+    @Test
+    public void roundTripsLoincAndPartNumbers() {
+        for (String loincNumber : new String[]{"1-8", "2345-7", "10000-8", "99999-9", "12345678-0"}) {
+            int code = LoincConceptIndex.encode(loincNumber, 0);
+            assertTrue(code >= 0, loincNumber);
+            assertEquals(loincNumber, LoincConceptIndex.decode(code));
+        }
+        for (String partNumber : new String[]{"LP1-2", "LP14082-9", "LP7753-5", "LP12345678-3"}) {
+            int code = LoincConceptIndex.encode(partNumber, 2);
+            assertTrue(code >= 0, partNumber);
+            assertEquals(partNumber, "LP" + LoincConceptIndex.decode(code));
+        }
+        assertNotEquals(LoincConceptIndex.encode("1-8", 0), LoincConceptIndex.encode("18-0", 0));
+    }
+
+    @Test
+    public void doesNotEncodeKeysThatCanNotBeDecoded() {
+        // A leading zero would be lost, nine or more digits overflow the int.
+        assertEquals(-1, LoincConceptIndex.encode("01-8", 0));
+        assertEquals(-1, LoincConceptIndex.encode("0-0", 0));
+        assertEquals(-1, LoincConceptIndex.encode("LP01-8", 2));
+        assertEquals(-1, LoincConceptIndex.encode("123456789-0", 0));
+        assertEquals(-1, LoincConceptIndex.encode("LP123456789-0", 2));
+        assertEquals(-1, LoincConceptIndex.encode("9999999999-9", 0));
+    }
+
+    @Test
+    public void doesNotEncodeOtherKeys() {
+        for (String key : new String[]{"", "-", "1-", "-8", "1-X", "1-88", "12-a", "1a-8", "1_8", "1 -8", "Component",
+                "Glucose", "X1-8", "+1-8"}) {
+            assertEquals(-1, LoincConceptIndex.encode(key, 0), key);
+        }
+        // Names that start like a part number but are not one.
+        for (String key : new String[]{"LP", "LP-1", "LPX-1", "LP12-X", "LPGlucose", "LPlasma"}) {
+            assertEquals(-1, LoincConceptIndex.encode(key, 2), key);
+        }
+    }
+
+    @Test
+    public void keepsKeysThatAreNotCodesByName() {
+        LoincConceptIndex index = new LoincConceptIndex();
+        UUID[] uuids = new UUID[6];
+        String[] keys = {"1-8", "01-8", "LP7753-5", "LP07753-5", "LPlasma", "123456789-0"};
+        for (int i = 0; i < keys.length; i++) {
+            uuids[i] = UUID.nameUUIDFromBytes(keys[i].getBytes());
+            assertEquals(i, index.add(keys[i], keys[i], uuids[i]));
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, index.slot(keys[i]), keys[i]);
+            assertEquals(uuids[i], index.uuid(i));
+            assertEquals(keys[i], index.concept(i).description());
+        }
+        assertEquals(keys.length, index.size());
+        assertFalse(index.contains("2-6"));
+        assertFalse(index.contains(null));
+    }
+
+    @Test
+    public void replacesAConceptInItsSlot() {
+        LoincConceptIndex index = new LoincConceptIndex(1);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        int partSlot = index.add("LP7753-5", "Glucose", first);
+        index.alias("Glucose | Serum", partSlot);
+        index.add("2345-7", "2345-7", first);
+
+        assertEquals(partSlot, index.add("LP7753-5", "Glucose measurement", second));
+        assertEquals(2, index.size());
+        assertEquals(second, index.uuid(index.slot("Glucose | Serum")));
+        assertEquals("Glucose measurement", index.concept(partSlot).description());
+
+        int loincSlot = index.slot("2345-7");
+        assertEquals(loincSlot, index.add("2345-7", "Glucose [Mass/volume]", second));
+        assertEquals("Glucose [Mass/volume]", index.concept(loincSlot).description());
+        assertEquals(loincSlot, index.add("2345-7", "2345-7", first));
+        assertEquals("2345-7", index.concept(loincSlot).description());
+        assertEquals(2, index.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> index.uuid(2));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.LoincDefinitionFingerprints;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLoincDefinitionFingerprints {
+
+    private Path dataStore;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        dataStore = Files.createTempDirectory("fingerprints");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(dataStore)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private Path file() {
+        return dataStore.resolve(LoincDefinitionFingerprints.FILE_NAME);
+    }
+
+    @Test
+    public void roundTripsThroughTheBinaryFile() throws IOException {
+        LoincDefinitionFingerprints fingerprints = new LoincDefinitionFingerprints();
+        // Nids are negative; include the extremes of both values.
+        for (int i = 0; i < 10_000; i++) {
+            fingerprints.put(Integer.MIN_VALUE + i, i * 0x9E3779B97F4A7C15L);
+        }
+        fingerprints.put(-1, Long.MIN_VALUE);
+        fingerprints.put(0, Long.MAX_VALUE);
+        fingerprints.put(Integer.MAX_VALUE, -1L);
+        fingerprints.write(dataStore.toFile());
+        assertTrue(Files.exists(file()));
+        assertFalse(Files.exists(dataStore.resolve(LoincDefinitionFingerprints.FILE_NAME + ".tmp")));
+        assertEquals(12 + fingerprints.size() * 12L, Files.size(file()));
+
+        LoincDefinitionFingerprints loaded = LoincDefinitionFingerprints.load(dataStore.toFile());
+        assertEquals(fingerprints.size(), loaded.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(loaded.matches(Integer.MIN_VALUE + i, i * 0x9E3779B97F4A7C15L));
+        }
+        assertTrue(loaded.matches(-1, Long.MIN_VALUE));
+        assertTrue(loaded.matches(0, Long.MAX_VALUE));
+        assertTrue(loaded.matches(Integer.MAX_VALUE, -1L));
+        assertFalse(loaded.matches(Integer.MAX_VALUE, 0L));
+        assertFalse(loaded.matches(1, 0L));
+    }
+
+    @Test
+    public void deletesTheFileOnLoad() throws IOException {
+        LoincDefinitionFingerprints fingerprints = new LoincDefinitionFingerprints();
+        fingerprints.put(-7, 42L);
+        fingerprints.write(dataStore.toFile());
+
+        assertTrue(LoincDefinitionFingerprints.load(dataStore.toFile()).matches(-7, 42L));
+        assertFalse(Files.exists(file()));
+        // A second run that stopped before writing finds no fingerprints.
+        assertEquals(0, LoincDefinitionFingerprints.load(dataStore.toFile()).size());
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Files.write(file(), new byte[]{'L', 'O', 'I', 'N', 'C', 0, 0, 0, 0, 0, 0, 0});
+        assertThrows(IOException.class, () -> LoincDefinitionFingerprints.load(dataStore.toFile()));
+    }
+
+    @Test
+    public void forgetsRemovedConcepts() {
+        LoincDefinitionFingerprints fingerprints = new LoincDefinitionFingerprints();
+        fingerprints.put(-7, 42L);
+        fingerprints.put(-7, 43L);
+        assertFalse(fingerprints.matches(-7, 42L));
+        assertTrue(fingerprints.matches(-7, 43L));
+        fingerprints.remove(-7);
+        assertFalse(fingerprints.matches(-7, 43L));
+        assertEquals(0, fingerprints.size());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.entity.EntityService;
+import dev.ikm.tinkar.entity.SemanticRecord;
+import dev.ikm.tinkar.entity.StampEntity;
+import dev.ikm.tinkar.loinc.starterdata.IngestErrorReport;
+import dev.ikm.tinkar.loinc.starterdata.IngestMetrics;
+import dev.ikm.tinkar.loinc.starterdata.LoincAxiomBuilder;
+import dev.ikm.tinkar.loinc.starterdata.LoincDefinitionFingerprints;
+import dev.ikm.tinkar.loinc.starterdata.LoincDefinitionWriter;
+import dev.ikm.tinkar.loinc.starterdata.LoincStarterData;
+import dev.ikm.tinkar.terms.EntityProxy;
+import dev.ikm.tinkar.terms.TinkarTerm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class TestLoincDefinitionWriter {
+
+    private File dataStore;
+
+    @AfterEach
+    public void stopDataStore() {
+        if (dataStore != null) {
+            LoincTestDataStore.stop(dataStore);
+        }
+    }
+
+    @Test
+    public void writtenDefinitionsAreCommitted() {
+        dataStore = LoincTestDataStore.startWithStarterData(getClass().getSimpleName());
+        IngestMetrics metrics = new IngestMetrics();
+        LoincDefinitionWriter writer = new LoincDefinitionWriter(TinkarTerm.USER, TinkarTerm.PRIMORDIAL_MODULE,
+                TinkarTerm.PRIMORDIAL_PATH, 10, metrics, new IngestErrorReport(metrics),
+                new LoincDefinitionFingerprints());
+        EntityProxy.Concept[] axisAttributes = new EntityProxy.Concept[LoincStarterData.LOINC_AXES.values().length];
+        Arrays.fill(axisAttributes, TinkarTerm.ROLE_GROUP);
+        EntityProxy.Concept[] axisValues = axisAttributes.clone();
+        Arrays.fill(axisValues, TinkarTerm.PHENOMENON);
+        int conceptNid = TinkarTerm.ROLE_GROUP.nid();
+
+        writer.add(conceptNid, new LoincAxiomBuilder(TinkarTerm.PHENOMENON, axisAttributes).definition(axisValues));
+        writer.flush();
+
+        assertEquals(1, writer.getDefinitionsWritten());
+        int[] semanticNids = EntityService.get().semanticNidsForComponentOfPattern(conceptNid,
+                TinkarTerm.EL_PLUS_PLUS_STATED_AXIOMS_PATTERN.nid());
+        assertEquals(1, semanticNids.length);
+        SemanticRecord semantic = EntityService.get().getEntityFast(semanticNids[0]);
+        StampEntity<?> stamp = semantic.versions().getLast().stamp();
+        assertEquals(TinkarTerm.USER.nid(), stamp.authorNid());
+        assertEquals(TinkarTerm.PRIMORDIAL_MODULE.nid(), stamp.moduleNid());
+        assertNotEquals(Long.MAX_VALUE, stamp.time(), "The STAMP of the batch is not committed");
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.common.util.io.FileUtil;
+import dev.ikm.tinkar.loinc.starterdata.CsvTokenizer;
+import dev.ikm.tinkar.loinc.starterdata.LoincStarterData;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLoincIngestEvents {
+
+    private static final List<String> EVENTS = List.of("dev.ikm.loinc.CsvPass", "dev.ikm.loinc.ComposeBatch",
+            "dev.ikm.loinc.Commit", "dev.ikm.loinc.StarterDataBuild", "dev.ikm.loinc.DefinitionBatch",
+            "dev.ikm.loinc.Definition", "dev.ikm.loinc.SemanticBatch");
+
+    private File dataStore;
+    private File input;
+
+    @AfterEach
+    public void stopDataStore() {
+        if (dataStore != null) {
+            LoincTestDataStore.stop(dataStore);
+        }
+        if (input != null) {
+            FileUtil.recursiveDelete(input);
+        }
+    }
+
+    @Test
+    public void recordsEachUnitOfTheIngest() throws IOException {
+        dataStore = LoincTestDataStore.startWithStarterData(getClass().getSimpleName());
+        input = new File(dataStore.getParentFile(), getClass().getSimpleName() + "-input");
+        File partCsv = LoincTestFiles.writePartCsv(input);
+        File loincCsv = LoincTestFiles.writeLoincCsv(input);
+        Path jfr = new File(input, "ingest.jfr").toPath();
+
+        try (Recording recording = new Recording()) {
+            // Also the events under their threshold, such as the stated definitions of the two terms.
+            EVENTS.forEach(name -> recording.enable(name).withThreshold(Duration.ZERO));
+            recording.start();
+
+            LoincStarterData loincStarterData = new LoincStarterData(LoincTestFiles.STARTER_DATA, partCsv);
+            loincStarterData.setDataStore(dataStore);
+            loincStarterData.setLoincConceptFile(loincCsv);
+            loincStarterData.processLoincStarterDataCSVFile();
+
+            recording.stop();
+            recording.dump(jfr);
+        }
+        Map<String, List<RecordedEvent>> events = RecordingFile.readAllEvents(jfr).stream()
+                .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+
+        long starterRows;
+        try (Stream<String[]> records = CsvTokenizer.records(LoincTestFiles.STARTER_DATA.toPath())) {
+            starterRows = records.count() - 1;
+        }
+        Map<String, Integer> csvRows = events.get("dev.ikm.loinc.CsvPass").stream()
+                .collect(Collectors.toMap(event -> event.getString("file"), event -> event.getInt("rows")));
+        assertEquals(Map.of(LoincTestFiles.STARTER_DATA.getName(), (int) starterRows, partCsv.getName(), 7,
+                loincCsv.getName(), 2), csvRows);
+
+        assertTrue(events.get("dev.ikm.loinc.ComposeBatch").stream().anyMatch(event ->
+                        event.getString("phase").equals("ACTIVE_LOINC_CONCEPTS")
+                                && event.getInt("rows") == 1
+                                && event.getString("firstCode").equals(LoincTestFiles.ACTIVE_TERM)
+                                && event.getString("lastCode").equals(LoincTestFiles.ACTIVE_TERM)),
+                "Compose batch of " + LoincTestFiles.ACTIVE_TERM);
+        assertTrue(events.get("dev.ikm.loinc.Commit").stream()
+                        .anyMatch(event -> event.getString("phase").equals("STOP_INGEST")),
+                "Commit of the ingest before StarterData");
+
+        List<Integer> builds = events.get("dev.ikm.loinc.StarterDataBuild").stream()
+                .map(event -> event.getInt("rows"))
+                .toList();
+        assertEquals(List.of(1, 1), builds, "LOINC rows of the active and the inactive StarterData build");
+
+        for (String term : List.of(LoincTestFiles.ACTIVE_TERM, LoincTestFiles.DEPRECATED_TERM)) {
+            assertTrue(events.get("dev.ikm.loinc.DefinitionBatch").stream().anyMatch(event ->
+                            event.getString("firstCode").equals(term)
+                                    && event.getString("lastCode").equals(term)
+                                    && event.getInt("written") == 1),
+                    "Definition batch of " + term);
+            assertTrue(events.get("dev.ikm.loinc.Definition").stream()
+                    .anyMatch(event -> event.getString("code").equals(term)), "Definition of " + term);
+        }
+        assertTrue(events.get("dev.ikm.loinc.SemanticBatch").stream().mapToInt(event -> event.getInt("rows")).sum() > 0,
+                "Semantics written in batches");
+    }
+}
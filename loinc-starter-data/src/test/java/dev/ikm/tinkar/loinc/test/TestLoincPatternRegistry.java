@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.common.id.PublicId;
+import dev.ikm.tinkar.common.id.PublicIds;
+import dev.ikm.tinkar.common.service.PrimitiveData;
+import dev.ikm.tinkar.loinc.starterdata.LoincPatternRegistry;
+import dev.ikm.tinkar.loinc.starterdata.LoincStarterData;
+import dev.ikm.tinkar.loinc.starterdata.LoincUuids;
+import dev.ikm.tinkar.starterdata.UUIDUtility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLoincPatternRegistry {
+
+    private File dataStore;
+
+    @BeforeEach
+    public void startDataStore() {
+        dataStore = LoincTestDataStore.start(getClass().getSimpleName());
+    }
+
+    @AfterEach
+    public void stopDataStore() {
+        LoincTestDataStore.stop(dataStore);
+    }
+
+    @Test
+    public void resolvesEveryPatternAndTheStampOnce() {
+        PublicId stamp = PublicIds.of(LoincUuids.nameUuid("LOINC authoring STAMP"));
+        LoincPatternRegistry registry = new LoincPatternRegistry(stamp);
+        UUIDUtility uuidUtility = new UUIDUtility();
+
+        Set<Integer> nids = new HashSet<>();
+        for (String name : LoincPatternRegistry.PATTERN_NAMES) {
+            LoincPatternRegistry.ResolvedPattern pattern = registry.pattern(name);
+            assertEquals(name, pattern.name());
+            assertArrayEquals(new UUID[]{uuidUtility.createUUID(name)}, pattern.publicId().asUuidArray());
+            assertEquals(PrimitiveData.nid(uuidUtility.createUUID(name)), pattern.nid());
+            assertTrue(nids.add(pattern.nid()), "The nid of " + name + " is not unique");
+            // Resolved once, the same pattern is returned on every call.
+            assertSame(pattern, registry.pattern(name));
+        }
+        assertEquals(PrimitiveData.nid(stamp.asUuidArray()), registry.stampNid());
+    }
+
+    @Test
+    public void rejectsUnknownPatterns() {
+        LoincPatternRegistry registry = new LoincPatternRegistry(PublicIds.of(LoincUuids.nameUuid("STAMP")));
+        assertThrows(IllegalArgumentException.class, () -> registry.pattern(LoincStarterData.LOINC_NUMBER));
+    }
+}
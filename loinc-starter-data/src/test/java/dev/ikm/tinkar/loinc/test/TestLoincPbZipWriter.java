@@ -0,0 +1,240 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.LoincPbZipWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestLoincPbZipWriter {
+
+    private static final String DATA_ENTRY = "loinc.pb";
+    private static final String MANIFEST_ENTRY = "META-INF/MANIFEST.MF";
+    private static final byte[] MANIFEST = "Concept-Count: 3\nTotal-Count: 9\n".getBytes(StandardCharsets.UTF_8);
+
+    private record Written(Path zip, long compressedSize) {
+    }
+
+    @Test
+    public void readsBackThroughZipFile() throws IOException {
+        List<byte[]> chunks = chunks();
+        Written written = write(chunks, 6);
+        try (ZipFile zipFile = new ZipFile(written.zip.toFile())) {
+            assertEquals(2, zipFile.size());
+
+            ZipEntry data = zipFile.getEntry(DATA_ENTRY);
+            assertNotNull(data);
+            assertEquals(ZipEntry.DEFLATED, data.getMethod());
+            assertEquals(concat(chunks).length, data.getSize());
+            assertEquals(crc(concat(chunks)), data.getCrc());
+            assertEquals(written.compressedSize, data.getCompressedSize());
+            try (InputStream in = zipFile.getInputStream(data)) {
+                assertArrayEquals(concat(chunks), in.readAllBytes());
+            }
+
+            ZipEntry manifest = zipFile.getEntry(MANIFEST_ENTRY);
+            assertNotNull(manifest);
+            assertEquals(ZipEntry.STORED, manifest.getMethod());
+            assertEquals(MANIFEST.length, manifest.getSize());
+            assertEquals(MANIFEST.length, manifest.getCompressedSize());
+            assertEquals(crc(MANIFEST), manifest.getCrc());
+            try (InputStream in = zipFile.getInputStream(manifest)) {
+                assertArrayEquals(MANIFEST, in.readAllBytes());
+            }
+        } finally {
+            Files.deleteIfExists(written.zip);
+        }
+    }
+
+    @Test
+    public void readsBackThroughZipInputStream() throws IOException {
+        for (int level : new int[]{-1, 0, 9}) {
+            List<byte[]> chunks = chunks();
+            Written written = write(chunks, level);
+            try (ZipInputStream in = new ZipInputStream(Files.newInputStream(written.zip))) {
+                ZipEntry data = in.getNextEntry();
+                assertNotNull(data);
+                assertEquals(DATA_ENTRY, data.getName());
+                assertArrayEquals(concat(chunks), in.readAllBytes());
+                // The sizes and the CRC follow the data in a data descriptor, which is read at the end of the entry.
+                assertEquals(concat(chunks).length, data.getSize());
+                assertEquals(crc(concat(chunks)), data.getCrc());
+                assertEquals(written.compressedSize, data.getCompressedSize());
+
+                ZipEntry manifest = in.getNextEntry();
+                assertNotNull(manifest);
+                assertEquals(MANIFEST_ENTRY, manifest.getName());
+                assertEquals(MANIFEST.length, manifest.getSize());
+                assertEquals(crc(MANIFEST), manifest.getCrc());
+                assertArrayEquals(MANIFEST, in.readAllBytes());
+
+                assertNull(in.getNextEntry());
+            } finally {
+                Files.deleteIfExists(written.zip);
+            }
+        }
+    }
+
+    @Test
+    public void writesTheDataEntryAloneWithoutAStoredEntry() throws IOException {
+        Path zip = Files.createTempFile("loinc-pb", ".zip");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (LoincPbZipWriter writer = new LoincPbZipWriter(zip, DATA_ENTRY, -1, executor, 1)) {
+            writer.finish(null, null);
+        } finally {
+            executor.shutdown();
+        }
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            assertEquals(1, zipFile.size());
+            ZipEntry data = zipFile.getEntry(DATA_ENTRY);
+            assertEquals(0, data.getSize());
+            try (InputStream in = zipFile.getInputStream(data)) {
+                assertEquals(0, in.readAllBytes().length);
+            }
+        } finally {
+            Files.deleteIfExists(zip);
+        }
+    }
+
+    @Test
+    public void writesZip64FieldsPastFourGibibytes() throws IOException {
+        // Zeros, so that 4 GiB of data deflates to a few megabytes.
+        byte[] zeros = new byte[64 << 20];
+        int chunks = 65;
+        long size = (long) chunks * zeros.length;
+        Path zip = Files.createTempFile("loinc-pb", ".zip");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            try (LoincPbZipWriter writer = new LoincPbZipWriter(zip, DATA_ENTRY, 1, executor, 4)) {
+                for (int i = 0; i < chunks; i++) {
+                    writer.submit(() -> zeros);
+                }
+                writer.finish(MANIFEST_ENTRY, MANIFEST);
+                assertEquals(size, writer.uncompressedSize());
+            }
+            try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+                ZipEntry data = zipFile.getEntry(DATA_ENTRY);
+                assertEquals(size, data.getSize());
+                try (InputStream in = zipFile.getInputStream(zipFile.getEntry(MANIFEST_ENTRY))) {
+                    assertArrayEquals(MANIFEST, in.readAllBytes());
+                }
+            }
+            try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zip))) {
+                ZipEntry data = in.getNextEntry();
+                assertEquals(size, in.transferTo(OutputStream.nullOutputStream()));
+                assertEquals(size, data.getSize());
+                assertEquals(MANIFEST_ENTRY, in.getNextEntry().getName());
+                assertArrayEquals(MANIFEST, in.readAllBytes());
+                assertNull(in.getNextEntry());
+            }
+        } finally {
+            executor.shutdown();
+            Files.deleteIfExists(zip);
+        }
+    }
+
+    @Test
+    public void rejectsAnInvalidDeflateLevel() throws IOException {
+        Path zip = Files.createTempFile("loinc-pb", ".zip");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertThrows(IllegalArgumentException.class,
+                    () -> new LoincPbZipWriter(zip, DATA_ENTRY, 10, executor, 1));
+        } finally {
+            executor.shutdown();
+            Files.deleteIfExists(zip);
+        }
+    }
+
+    /**
+     * Chunks of text and of random bytes, an empty one and one larger than the deflate buffer, so that the chunks
+     * compress to very different sizes and finish out of submission order.
+     */
+    private static List<byte[]> chunks() {
+        Random random = new Random(42);
+        List<byte[]> chunks = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            byte[] chunk;
+            switch (i % 4) {
+                case 0 -> chunk = ("\"" + i + "-8\",\"Glucose [Mass/volume] in Serum or Plasma\"\n")
+                        .repeat(1 + random.nextInt(2_000)).getBytes(StandardCharsets.UTF_8);
+                case 1 -> {
+                    chunk = new byte[random.nextInt(100_000)];
+                    random.nextBytes(chunk);
+                }
+                case 2 -> chunk = new byte[i == 2 ? 0 : 1];
+                default -> {
+                    chunk = new byte[150_000];
+                    random.nextBytes(chunk);
+                    for (int j = 0; j < chunk.length; j += 2) {
+                        chunk[j] = 'x';
+                    }
+                }
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static Written write(List<byte[]> chunks, int level) throws IOException {
+        Path zip = Files.createTempFile("loinc-pb", ".zip");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (LoincPbZipWriter writer = new LoincPbZipWriter(zip, DATA_ENTRY, level, executor, 3)) {
+            for (byte[] chunk : chunks) {
+                writer.submit(() -> chunk);
+            }
+            writer.finish(MANIFEST_ENTRY, MANIFEST);
+            assertEquals(concat(chunks).length, writer.uncompressedSize());
+            return new Written(zip, writer.compressedSize());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static byte[] concat(List<byte[]> chunks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        chunks.forEach(out::writeBytes);
+        return out.toByteArray();
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.LoincReleaseManifest;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLoincReleaseManifest {
+
+    private static final String[] ROW = {"2345-7", "Glucose", "MCnc", "Pt", "Ser/Plas", "Qn", "", "CHEM", "2.76",
+            "MIN", "ACTIVE"};
+
+    /**
+     * Plain 64-bit FNV-1a over the UTF-16LE bytes of each field, each field followed by a 0x1f separator byte.
+     */
+    private static long fnv1a(String... fields) {
+        long hash = 0xcbf29ce484222325L;
+        for (String field : fields) {
+            byte[] bytes = (field + '\u001f').getBytes(StandardCharsets.UTF_16LE);
+            // The separator is a single byte, not a UTF-16 code unit.
+            for (int i = 0; i < bytes.length - 1; i++) {
+                hash = (hash ^ (bytes[i] & 0xff)) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    @Test
+    public void fingerprintsRowsWithFnv1a() {
+        LoincReleaseManifest manifest = new LoincReleaseManifest();
+        assertEquals(0xcbf29ce484222325L, manifest.put("empty", new String[0]));
+        assertEquals(fnv1a(ROW), manifest.put(ROW[0], ROW));
+        String[] wide = {"\u00C5ngstr\u00F6m", "\u00B5g/L", "\u2264 5"};
+        assertEquals(fnv1a(wide), manifest.put("wide", wide));
+        assertEquals(fnv1a(ROW), manifest.put(ROW[0], ROW.clone()));
+    }
+
+    @Test
+    public void fingerprintChangesWithAnyField() {
+        LoincReleaseManifest manifest = new LoincReleaseManifest();
+        long fingerprint = manifest.put(ROW[0], ROW);
+        for (int i = 0; i < ROW.length; i++) {
+            String[] changed = ROW.clone();
+            changed[i] = changed[i] + "x";
+            assertNotEquals(fingerprint, manifest.put("changed", changed), "field " + i);
+        }
+        assertNotEquals(manifest.put("a", new String[]{"a", "bc"}), manifest.put("b", new String[]{"ab", "c"}));
+        assertNotEquals(manifest.put("a", new String[]{"a", ""}), manifest.put("b", new String[]{"a"}));
+    }
+
+    @Test
+    public void matchesOnlyTheRecordedFingerprint() {
+        LoincReleaseManifest manifest = new LoincReleaseManifest();
+        long fingerprint = manifest.put(ROW[0], ROW);
+        assertTrue(manifest.matches(ROW[0], fingerprint));
+        assertFalse(manifest.matches(ROW[0], fingerprint + 1));
+        assertFalse(manifest.matches("1-8", fingerprint));
+        assertFalse(new LoincReleaseManifest().matches(ROW[0], fingerprint));
+    }
+
+    @Test
+    public void keepsTheLatestVersion() {
+        LoincReleaseManifest manifest = new LoincReleaseManifest();
+        assertEquals("", manifest.getReleaseVersion());
+        manifest.noteVersion("2.9");
+        manifest.noteVersion("2.76");
+        manifest.noteVersion("2.8");
+        manifest.noteVersion(" ");
+        manifest.noteVersion(null);
+        assertEquals("2.76", manifest.getReleaseVersion());
+    }
+
+    @Test
+    public void roundTripsThroughTheTsvFile() throws IOException {
+        LoincReleaseManifest manifest = new LoincReleaseManifest();
+        for (int i = 0; i < 1_000; i++) {
+            String[] row = ROW.clone();
+            row[0] = i + "-" + i % 10;
+            row[1] = "Analyte " + i;
+            manifest.put(row[0], row);
+        }
+        long partFingerprint = manifest.put("LP7753-5", new String[]{"LP7753-5", "COMPONENT", "Glucose"});
+        manifest.noteVersion("2.76");
+
+        Path dataStore = Files.createTempDirectory("manifest");
+        Path manifestFile = dataStore.resolve(LoincReleaseManifest.FILE_NAME);
+        try {
+            assertThrows(IOException.class, () -> LoincReleaseManifest.read(dataStore.toFile()));
+            manifest.write(dataStore.toFile());
+            assertEquals("#version\t2.76", Files.readAllLines(manifestFile).get(0));
+
+            for (File source : new File[]{dataStore.toFile(), manifestFile.toFile()}) {
+                LoincReleaseManifest read = LoincReleaseManifest.read(source);
+                assertEquals(manifest.size(), read.size());
+                assertEquals("2.76", read.getReleaseVersion());
+                assertTrue(read.matches("LP7753-5", partFingerprint));
+                for (int i = 0; i < 1_000; i++) {
+                    String[] row = ROW.clone();
+                    row[0] = i + "-" + i % 10;
+                    row[1] = "Analyte " + i;
+                    assertTrue(read.matches(row[0], fnv1a(row)), row[0]);
+                }
+            }
+            assertFalse(Files.exists(dataStore.resolve(LoincReleaseManifest.FILE_NAME + ".tmp")));
+        } finally {
+            Files.deleteIfExists(manifestFile);
+            Files.delete(dataStore);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.LoincRow;
+import dev.ikm.tinkar.loinc.starterdata.LoincRowTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLoincRowTable {
+
+    /**
+     * A Loinc.csv record with the columns of a {@link LoincRow} filled in and the others marked.
+     */
+    private static String[] record(String loincNumber, String status, String longCommonName) {
+        String[] data = new String[40];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = "unused" + i;
+        }
+        data[0] = loincNumber;
+        data[1] = "Glucose";
+        data[2] = "MCnc";
+        data[3] = "Pt";
+        data[4] = "Ser/Plas";
+        data[5] = "Qn";
+        data[6] = "";
+        data[7] = "CHEM";
+        data[11] = status;
+        data[13] = "1";
+        data[21] = "Both";
+        data[25] = longCommonName;
+        data[26] = "mg/dL";
+        return data;
+    }
+
+    @Test
+    public void mapsTheRecordColumns() {
+        LoincRow row = LoincRowTable.row(record("2345-7", "ACTIVE", "Glucose [Mass/volume] in Serum or Plasma"));
+        assertEquals(new LoincRow("2345-7", "Glucose", "MCnc", "Pt", "Ser/Plas", "Qn", "", "CHEM", "ACTIVE", "1",
+                "Both", "Glucose [Mass/volume] in Serum or Plasma", "mg/dL"), row);
+        assertFalse(row.isDeprecated());
+        assertTrue(LoincRowTable.row(record("1-8", "DEPRECATED", "")).isDeprecated());
+    }
+
+    @Test
+    public void padsRecordsShorterThanTheRow() {
+        LoincRow row = LoincRowTable.row(new String[]{"1-8", "Acyclovir"});
+        assertEquals("1-8", row.loincNumber());
+        assertEquals("Acyclovir", row.component());
+        assertEquals("", row.status());
+        assertEquals("", row.exampleUcumUnits());
+    }
+
+    @Test
+    public void partitionsRowsInFileOrder() {
+        List<String[]> records = new ArrayList<>();
+        List<LoincRow> active = new ArrayList<>();
+        List<LoincRow> deprecated = new ArrayList<>();
+        String[] statuses = {"ACTIVE", "DEPRECATED", "TRIAL", "DISCOURAGED", "Deprecated"};
+        for (int i = 0; i < 1_000; i++) {
+            String[] data = record(i + "-" + i % 10, statuses[i % statuses.length], "Name " + i);
+            records.add(data);
+            LoincRow row = LoincRowTable.row(data);
+            (row.isDeprecated() ? deprecated : active).add(row);
+        }
+
+        LoincRowTable table = LoincRowTable.from(records.iterator());
+        assertEquals(records.size(), table.size());
+        assertEquals(active, table.active());
+        assertEquals(deprecated, table.deprecated());
+        assertEquals(600, table.active().size());
+        assertEquals(400, table.deprecated().size());
+        assertThrows(UnsupportedOperationException.class, () -> table.active().add(active.get(0)));
+        assertThrows(IndexOutOfBoundsException.class, () -> table.deprecated().get(400));
+    }
+
+    @Test
+    public void buildsTheSameTableOneRowAtATime() {
+        LoincRowTable.Builder builder = new LoincRowTable.Builder();
+        LoincRow active = LoincRowTable.row(record("2345-7", "ACTIVE", "Glucose"));
+        LoincRow deprecated = LoincRowTable.row(record("1-8", "DEPRECATED", "Acyclovir"));
+        LoincRowTable table = builder.add(active).add(deprecated).build();
+        assertEquals(List.of(active), table.active());
+        assertEquals(List.of(deprecated), table.deprecated());
+        assertTrue(new LoincRowTable.Builder().build().active().isEmpty());
+    }
+
+    @Test
+    public void loadSkipsTheHeader() throws IOException {
+        Path file = Files.createTempFile("Loinc", ".csv");
+        try {
+            Files.writeString(file, """
+                    "LOINC_NUM","COMPONENT","PROPERTY","TIME_ASPCT","SYSTEM","SCALE_TYP","METHOD_TYP","CLASS"
+                    "1-8","Acyclovir","Susc","Pt","Isolate","OrdQn","MIC","ABXBACT"
+                    "2-6","Amikacin","Susc","Pt","Isolate","OrdQn","","ABXBACT"
+                    """);
+            LoincRowTable table = LoincRowTable.load(file.toFile());
+            assertEquals(2, table.size());
+            assertEquals("1-8", table.active().get(0).loincNumber());
+            assertEquals("MIC", table.active().get(0).method());
+            assertEquals("", table.active().get(1).method());
+            assertEquals("ABXBACT", table.active().get(1).loincClass());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
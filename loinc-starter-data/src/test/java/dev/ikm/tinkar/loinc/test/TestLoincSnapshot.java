@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.LoincSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLoincSnapshot {
+
+    /**
+     * Offsets in a snapshot of a single table named "T" holding one record with the single field "a".
+     */
+    private static final int VERSION_OFFSET = Long.BYTES;
+    private static final int TABLE_OFFSET_OFFSET = Long.BYTES + 2 * Integer.BYTES + Integer.BYTES + 1;
+    private static final int STRING_OFFSET_OFFSET = TABLE_OFFSET_OFFSET + Integer.BYTES + 5 * Integer.BYTES;
+    private static final int STRING_LENGTH_OFFSET = STRING_OFFSET_OFFSET + Integer.BYTES;
+
+    @Test
+    public void readsBackWhatWasWritten() throws IOException {
+        Map<String, List<String[]>> tables = new LinkedHashMap<>();
+        tables.put(LoincSnapshot.LOINC_TABLE, List.of(
+                new String[]{"LOINC_NUM", "COMPONENT", "PROPERTY", "SYSTEM"},
+                new String[]{"1-8", "Acyclovir", "", "Ser/Plas"},
+                new String[]{"2-6", "Glucose"},
+                new String[]{},
+                new String[]{"3-4", "Ångström", "µg/mL", "Ser/Plas"},
+                new String[]{"4-2", "line one\nline two, \"quoted\"", "日本語", "🧪"}));
+        tables.put(LoincSnapshot.PART_TABLE, List.<String[]>of(
+                new String[]{"PartNumber", "PartTypeName"}));
+        tables.put("Empty", List.of());
+
+        Path directory = Files.createTempDirectory("loinc-snapshot");
+        Path file = directory.resolve("loinc.snapshot");
+        try {
+            LoincSnapshot.write(file, tables);
+            LoincSnapshot snapshot = LoincSnapshot.open(file);
+
+            assertEquals(List.copyOf(tables.keySet()), List.copyOf(snapshot.tableNames()));
+            for (Map.Entry<String, List<String[]>> entry : tables.entrySet()) {
+                LoincSnapshot.Table table = snapshot.table(entry.getKey());
+                List<String[]> expected = entry.getValue();
+                assertEquals(expected.size(), table.size());
+                List<String[]> records = table.records();
+                for (int i = 0; i < expected.size(); i++) {
+                    assertArrayEquals(expected.get(i), records.get(i), entry.getKey() + " record " + i);
+                    assertArrayEquals(expected.get(i), table.record(i), entry.getKey() + " record " + i);
+                }
+            }
+            LoincSnapshot.Table loinc = snapshot.table(LoincSnapshot.LOINC_TABLE);
+            assertEquals(2, loinc.records(1, 3).size());
+            assertArrayEquals(new String[]{"2-6", "Glucose"}, loinc.records(1, 3).get(1));
+            // Equal fields share one decoded string.
+            assertSame(loinc.record(1)[3], loinc.record(4)[3]);
+            assertThrows(IndexOutOfBoundsException.class, () -> loinc.record(6));
+            assertThrows(IndexOutOfBoundsException.class, () -> loinc.record(-1));
+
+            assertTrue(snapshot.hasTable("Empty"));
+            assertFalse(snapshot.hasTable("Missing"));
+            assertThrows(IllegalArgumentException.class, () -> snapshot.table("Missing"));
+            assertFalse(Files.exists(directory.resolve("loinc.snapshot.tmp")));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void rejectsAFileThatIsNotASnapshot() throws IOException {
+        Path directory = Files.createTempDirectory("loinc-snapshot");
+        try {
+            Path csv = directory.resolve("Loinc.csv");
+            Files.writeString(csv, "\"LOINC_NUM\",\"COMPONENT\"\n\"1-8\",\"Acyclovir\"\n");
+            assertNotASnapshot(csv);
+
+            Path empty = Files.createFile(directory.resolve("empty.snapshot"));
+            assertNotASnapshot(empty);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void rejectsAnotherFormatVersion() throws IOException {
+        Path directory = Files.createTempDirectory("loinc-snapshot");
+        try {
+            Path file = singleFieldSnapshot(directory, "version.snapshot");
+            patch(file, VERSION_OFFSET, 2);
+            IOException e = assertThrows(IOException.class, () -> LoincSnapshot.open(file));
+            assertTrue(e.getMessage().contains("version 2"), e.getMessage());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void rejectsOffsetsOutsideTheFile() throws IOException {
+        Path directory = Files.createTempDirectory("loinc-snapshot");
+        try {
+            Path valid = singleFieldSnapshot(directory, "valid.snapshot");
+            assertArrayEquals(new String[]{"a"}, LoincSnapshot.open(valid).table("T").record(0));
+
+            assertNotASnapshot(patch(singleFieldSnapshot(directory, "table.snapshot"), TABLE_OFFSET_OFFSET, 1 << 20));
+            assertNotASnapshot(patch(singleFieldSnapshot(directory, "negative.snapshot"), TABLE_OFFSET_OFFSET, -4));
+            assertNotASnapshot(patch(singleFieldSnapshot(directory, "string.snapshot"), STRING_OFFSET_OFFSET, 1 << 20));
+            assertNotASnapshot(patch(singleFieldSnapshot(directory, "length.snapshot"), STRING_LENGTH_OFFSET, 1 << 20));
+
+            Path truncated = singleFieldSnapshot(directory, "truncated.snapshot");
+            byte[] bytes = Files.readAllBytes(truncated);
+            Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+            assertNotASnapshot(truncated);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static Path singleFieldSnapshot(Path directory, String name) throws IOException {
+        Path file = directory.resolve(name);
+        LoincSnapshot.write(file, Map.of("T", List.<String[]>of(new String[]{"a"})));
+        assertEquals(STRING_LENGTH_OFFSET + Integer.BYTES + 1, Files.size(file));
+        return file;
+    }
+
+    private static Path patch(Path file, int offset, int value) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(offset, value);
+        Files.write(file, bytes);
+        return file;
+    }
+
+    private static void assertNotASnapshot(Path file) {
+        IOException e = assertThrows(IOException.class, () -> LoincSnapshot.open(file));
+        assertTrue(e.getMessage().endsWith("is not a LOINC snapshot"), e.getMessage());
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
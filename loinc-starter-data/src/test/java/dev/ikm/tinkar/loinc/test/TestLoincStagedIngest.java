@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.common.service.PrimitiveData;
+import dev.ikm.tinkar.common.util.io.FileUtil;
+import dev.ikm.tinkar.composer.Composer;
+import dev.ikm.tinkar.composer.Session;
+import dev.ikm.tinkar.composer.assembler.ConceptAssembler;
+import dev.ikm.tinkar.composer.template.FullyQualifiedName;
+import dev.ikm.tinkar.entity.ConceptEntity;
+import dev.ikm.tinkar.entity.EntityService;
+import dev.ikm.tinkar.loinc.starterdata.IngestCheckpoint;
+import dev.ikm.tinkar.loinc.starterdata.IngestMetrics;
+import dev.ikm.tinkar.loinc.starterdata.LoincComposerSessions;
+import dev.ikm.tinkar.loinc.starterdata.LoincConceptIndex;
+import dev.ikm.tinkar.loinc.starterdata.LoincIngestStages;
+import dev.ikm.tinkar.loinc.starterdata.LoincReleaseManifest;
+import dev.ikm.tinkar.loinc.starterdata.LoincRow;
+import dev.ikm.tinkar.loinc.starterdata.LoincRowTable;
+import dev.ikm.tinkar.loinc.starterdata.LoincStagedIngest;
+import dev.ikm.tinkar.loinc.starterdata.LoincUuids;
+import dev.ikm.tinkar.terms.EntityProxy;
+import dev.ikm.tinkar.terms.State;
+import dev.ikm.tinkar.terms.TinkarTerm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestLoincStagedIngest {
+
+    private static final long TIME = 1_700_000_000_000L;
+
+    private File dataStore;
+    private File input;
+
+    @AfterEach
+    public void stopDataStore() {
+        if (dataStore != null) {
+            LoincTestDataStore.stop(dataStore);
+        }
+        if (input != null) {
+            FileUtil.recursiveDelete(input);
+        }
+    }
+
+    @Test
+    public void composesAndCommitsEveryBlock() throws IOException {
+        dataStore = LoincTestDataStore.start(getClass().getSimpleName());
+        input = new File(dataStore.getParentFile(), getClass().getSimpleName() + "-input");
+        File loincCsv = LoincTestFiles.writeLoincCsv(input);
+        LoincComposerSessions sessions = new LoincComposerSessions(new Composer("Test staged ingest"));
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger committed = new AtomicInteger();
+        LoincConceptIndex conceptIndex = new LoincConceptIndex();
+
+        LoincStagedIngest stagedIngest = new LoincStagedIngest(new LoincIngestStages(1, 4, 2, 2, 2),
+                IngestCheckpoint.open(null, loincCsv), new IngestMetrics(), new LoincReleaseManifest(), null,
+                conceptIndex, new LoincStagedIngest.Target() {
+            @Override
+            public Session openSession(State state) {
+                opened.incrementAndGet();
+                return sessions.open(state, TIME, TinkarTerm.USER, TinkarTerm.PRIMORDIAL_MODULE,
+                        TinkarTerm.PRIMORDIAL_PATH);
+            }
+
+            @Override
+            public void commitSession(Session session) {
+                sessions.commit(session);
+                committed.incrementAndGet();
+            }
+
+            @Override
+            public void composeConcept(Session session, LoincRow row, EntityProxy.Concept concept) {
+                session.compose((ConceptAssembler assembler) -> assembler
+                        .concept(concept)
+                        .attach((FullyQualifiedName fqn) -> fqn
+                                .language(TinkarTerm.ENGLISH_LANGUAGE)
+                                .text(row.longCommonName())
+                                .caseSignificance(TinkarTerm.DESCRIPTION_NOT_CASE_SENSITIVE)));
+            }
+
+            @Override
+            public void timeCommit(String phase, int rows, Runnable commit) {
+                commit.run();
+            }
+        });
+        LoincRowTable rowTable = stagedIngest.ingest(loincCsv.toPath());
+
+        assertEquals(2, stagedIngest.getRecords());
+        assertEquals(List.of(LoincTestFiles.ACTIVE_TERM),
+                rowTable.active().stream().map(LoincRow::loincNumber).toList());
+        assertEquals(List.of(LoincTestFiles.DEPRECATED_TERM),
+                rowTable.deprecated().stream().map(LoincRow::loincNumber).toList());
+        // One block per row, each with a session of its own.
+        assertEquals(2, opened.get());
+        assertEquals(2, committed.get());
+
+        for (String term : List.of(LoincTestFiles.ACTIVE_TERM, LoincTestFiles.DEPRECATED_TERM)) {
+            assertTrue(conceptIndex.contains(term), term + " is not indexed");
+            ConceptEntity<?> concept = EntityService.get().getEntityFast(PrimitiveData.nid(LoincUuids.nameUuid(term)));
+            State expected = term.equals(LoincTestFiles.ACTIVE_TERM) ? State.ACTIVE : State.INACTIVE;
+            assertEquals(expected, concept.versions().getLast().stamp().state(), term);
+        }
+        assertThrows(IllegalStateException.class, () -> stagedIngest.ingest(loincCsv.toPath()));
+    }
+}
@@ -25,11 +25,21 @@
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import dev.ikm.tinkar.entity.EntityCountSummary;
+import dev.ikm.tinkar.entity.EntityService;
 import dev.ikm.tinkar.entity.load.LoadEntitiesFromProtobufFile;
+import dev.ikm.tinkar.loinc.starterdata.CsvTokenizer;
+import dev.ikm.tinkar.loinc.starterdata.LoincBuildCache;
 import dev.ikm.tinkar.loinc.starterdata.LoincStarterData;
+import dev.ikm.tinkar.loinc.starterdata.LoincUuids;
 import org.junit.jupiter.api.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,15 +53,29 @@ public class TestLoincStarterData  {
     public static final Function<String, File> createFilePathInTarget = (pathName) -> new File("%s/target/%s".formatted(System.getProperty("user.dir"), pathName));
     public static final File PB_STARTER_DATA = createFilePathInTarget.apply("../src/test/resources/tinkar-export-with-definitions-pb.zip");
     public static final File DATASTORE = createFilePathInTarget.apply("generated-data/" + TestLoincStarterData.class.getSimpleName());
+    // In the user home unless loinc.buildCache is set, so mvn clean keeps it.
+    public static final File BUILD_CACHE = LoincBuildCache.defaultDirectory();
     public final Composer COMPOSER_SESSION_MANAGER = new Composer("LOINC Composer");
 
     public static LoincStarterData loincStarterData;
+    private LoincBuildCache buildCache;
+    private String buildKey;
+    private boolean restored;
+    private File loincConceptFile;
+
     @BeforeAll
-    public void initialize()  {
+    public void initialize() throws IOException {
 
         File loincStarterDataCSVfile  = new File(System.getProperty("user.dir") +"/src/main/resources/LOINC_Starter_Data.csv");
         File loincPartCSVfile  = new File(System.getProperty("user.dir") +"/src/main/resources/Part.csv");
-        File loincConceptFile = new File(System.getProperty("user.dir") + "/src/main/resources/Loinc.csv");
+        loincConceptFile = new File(System.getProperty("user.dir") + "/src/main/resources/Loinc.csv");
+        buildCache = new LoincBuildCache(BUILD_CACHE);
+        buildKey = buildCache.key(List.of(loincStarterDataCSVfile, loincPartCSVfile, loincConceptFile,
+                PB_STARTER_DATA));
+        restored = buildCache.restore(buildKey, DATASTORE);
+        if (restored) {
+            return;
+        }
         CachingService.clearAll();
         ServiceProperties.set(ServiceKeys.DATA_STORE_ROOT, DATASTORE);
         FileUtil.recursiveDelete(DATASTORE);
@@ -71,7 +95,43 @@ public void initialize()  {
     @Test
     public void parseStarterDataCSVFile() throws IOException {
         System.out.println(" TESTING");
-        loincStarterData.processLoincStarterDataCSVFile();
+        if (restored) {
+            LOG.info("Reusing the cached datastore " + buildKey + " in " + DATASTORE);
+        } else {
+            loincStarterData.processLoincStarterDataCSVFile();
+            // StarterData stopped the datastore, so all of it is on disk
+            buildCache.store(buildKey, DATASTORE);
+        }
+        assertDataStoreHoldsLoinc();
+    }
+
+    /**
+     * Checks the built or restored datastore: the LOINC author, the first and last terms of Loinc.csv and at least
+     * one concept per term.
+     */
+    private void assertDataStoreHoldsLoinc() throws IOException {
+        List<String> loincNumbers;
+        try (Stream<String[]> records = CsvTokenizer.records(loincConceptFile.toPath())) {
+            loincNumbers = records.skip(1).map(record -> record[0]).toList();
+        }
+        CachingService.clearAll();
+        ServiceProperties.set(ServiceKeys.DATA_STORE_ROOT, DATASTORE);
+        PrimitiveData.selectControllerByName("Open SpinedArrayStore");
+        PrimitiveData.start();
+        try {
+            List<String> names = List.of(LoincStarterData.LOINC_AUTHOR, loincNumbers.getFirst(),
+                    loincNumbers.getLast());
+            for (String name : names) {
+                assertNotNull(EntityService.get().getEntityFast(PrimitiveData.nid(LoincUuids.nameUuid(name))),
+                        name + " is not in " + DATASTORE);
+            }
+            LongAdder concepts = new LongAdder();
+            PrimitiveData.get().forEachConceptNid(nid -> concepts.increment());
+            assertTrue(concepts.sum() > loincNumbers.size(),
+                    concepts.sum() + " concepts for " + loincNumbers.size() + " LOINC terms");
+        } finally {
+            PrimitiveData.stop();
+        }
     }
 
     @AfterAll
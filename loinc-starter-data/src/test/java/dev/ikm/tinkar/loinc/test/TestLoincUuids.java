@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import com.fasterxml.uuid.Generators;
+import dev.ikm.tinkar.loinc.starterdata.Bindings;
+import dev.ikm.tinkar.loinc.starterdata.LoincUuids;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestLoincUuids {
+
+    @Test
+    public void nameUuidsMatchNameUuidFromBytes() {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            codes.add((10_000 + i) + "-" + i % 10);
+        }
+        codes.add("LP7786-9");
+        codes.add("Deloitte User");
+        UUID[] uuids = LoincUuids.nameUuids(codes);
+        for (int i = 0; i < codes.size(); i++) {
+            UUID expected = UUID.nameUUIDFromBytes(codes.get(i).getBytes());
+            assertEquals(expected, uuids[i]);
+            assertEquals(expected, LoincUuids.nameUuid(codes.get(i)));
+        }
+    }
+
+    @Test
+    public void namespacedUuidsMatchJugGenerator() {
+        UUID namespace = Bindings.LOINC_NAMESPACE.uuid();
+        for (String text : List.of("Loinc Pattern", "Deloitte User", "LONG_COMMON_NAME", "Analyte, free ß", "")) {
+            UUID expected = Generators.nameBasedGenerator(namespace).generate(text);
+            assertEquals(expected, LoincUuids.namespacedUuid(namespace, text));
+            assertEquals(expected, LoincUuids.namespacedUuid(namespace, text));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.CsvTokenizer;
+import dev.ikm.tinkar.loinc.starterdata.MappedCsvReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestMappedCsvReader {
+
+    /**
+     * Chunks are at least 1 MiB, so a file of a little over 6 MiB read on a pool of two threads is cut into six
+     * chunks at nominal offsets of size * i / 6.
+     */
+    private static final int CHUNK_COUNT = 6;
+    private static final int FILE_SIZE = CHUNK_COUNT * (1 << 20) + 1_000;
+
+    /**
+     * Fields placed so that a nominal chunk boundary falls on the marked position: inside a quoted line break, between
+     * the CR and LF of a quoted CRLF, between the two quotes of an escaped quote, right after an opening quote and
+     * right after the line break that ends a record.
+     */
+    private static final String[] BOUNDARY_FIELDS = {
+            "\"quoted|\nline break\"",
+            "\"quoted\r|\ncrlf\"",
+            "\"an \"|\"escaped\"\" quote\"",
+            "\"|\"\"\"",
+            "\"last field\"\n|"
+    };
+
+    @Test
+    public void alignsChunksToRecordsAtTrickyBoundaries() throws IOException {
+        ByteArrayOutputStream csv = new ByteArrayOutputStream(FILE_SIZE);
+        writeRecord(csv, "\"LOINC_NUM\",\"PADDING\",\"VALUE\"\r\n");
+        int id = 0;
+        for (int boundary = 1; boundary < CHUNK_COUNT; boundary++) {
+            int nominalStart = (int) ((long) FILE_SIZE * boundary / CHUNK_COUNT);
+            String field = BOUNDARY_FIELDS[boundary - 1];
+            String prefix = "\"" + id++ + "\",\"";
+            String infix = "\",";
+            int marker = field.indexOf('|');
+            // Ordinary records up to shortly before the boundary, with a non-ASCII value now and then.
+            while (nominalStart - csv.size() > 200) {
+                writeRecord(csv, "\"" + id + "\",\"" + (id % 5 == 0 ? "µg/mL Ångström" : "plain")
+                        + "\",\"row " + id++ + "\"\n");
+            }
+            int padding = nominalStart - csv.size() - utf8Length(prefix + infix) - marker;
+            assertTrue(padding >= 0);
+            String record = prefix + "x".repeat(padding) + infix + field.replace("|", "");
+            if (!record.endsWith("\n")) {
+                record += "\n";
+            }
+            writeRecord(csv, record);
+        }
+        // Pad the file to exactly its planned size; the last record has no line break.
+        String end = "\"" + id + "\",\"";
+        writeRecord(csv, end + "x".repeat(FILE_SIZE - csv.size() - utf8Length(end) - 1) + "\"");
+        assertEquals(FILE_SIZE, csv.size());
+
+        assertReadsLikeTheTokenizer(csv.toByteArray(), 2);
+    }
+
+    @Test
+    public void readsARecordLongerThanAChunk() throws IOException {
+        StringBuilder csv = new StringBuilder("\"LOINC_NUM\",\"VALUE\"\n");
+        for (int i = 0; i < 20_000; i++) {
+            csv.append('"').append(i).append("\",\"value ").append(i).append("\"\n");
+        }
+        // A quoted field with line breaks and escaped quotes that spans several nominal chunks.
+        csv.append("\"long\",\"").append("a \"\"quoted\"\" line\n".repeat(200_000)).append("\"\n");
+        for (int i = 0; i < 20_000; i++) {
+            csv.append('"').append(i).append("\",\"after ").append(i).append("\"\n");
+        }
+        assertReadsLikeTheTokenizer(csv.toString().getBytes(StandardCharsets.UTF_8), 3);
+    }
+
+    @Test
+    public void readsSmallAndEmptyFiles() throws IOException {
+        String csv = "\uFEFF\"LOINC_NUM\",\"STATUS\"\r\n\"1-8\",\"line one\nline two\"\r\n\r\n\"2-6\",\"ACTIVE\",";
+        assertReadsLikeTheTokenizer(csv.getBytes(StandardCharsets.UTF_8), 4);
+        assertReadsLikeTheTokenizer(new byte[0], 4);
+    }
+
+    private static void assertReadsLikeTheTokenizer(byte[] csv, int parallelism) throws IOException {
+        Path file = Files.createTempFile("Loinc", ".csv");
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Files.write(file, csv);
+            List<String[]> expected;
+            try (Stream<String[]> records = CsvTokenizer.records(file)) {
+                expected = records.toList();
+            }
+            List<String[]> records = MappedCsvReader.read(file, pool);
+            assertEquals(expected.size(), records.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(expected.get(i), records.get(i), "record " + i);
+            }
+        } finally {
+            pool.shutdown();
+            Files.delete(file);
+        }
+    }
+
+    private static void writeRecord(ByteArrayOutputStream csv, String record) {
+        csv.writeBytes(record.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int utf8Length(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.common.service.PrimitiveData;
+import dev.ikm.tinkar.composer.Composer;
+import dev.ikm.tinkar.composer.Session;
+import dev.ikm.tinkar.composer.assembler.ConceptAssembler;
+import dev.ikm.tinkar.composer.template.FullyQualifiedName;
+import dev.ikm.tinkar.composer.template.Synonym;
+import dev.ikm.tinkar.entity.Entity;
+import dev.ikm.tinkar.entity.EntityService;
+import dev.ikm.tinkar.entity.EntityVersion;
+import dev.ikm.tinkar.entity.SemanticEntity;
+import dev.ikm.tinkar.entity.SemanticEntityVersion;
+import dev.ikm.tinkar.entity.StampEntity;
+import dev.ikm.tinkar.loinc.starterdata.LoincComposerSessions;
+import dev.ikm.tinkar.loinc.starterdata.LoincUuids;
+import dev.ikm.tinkar.loinc.starterdata.ParallelComposer;
+import dev.ikm.tinkar.terms.EntityFacade;
+import dev.ikm.tinkar.terms.EntityProxy;
+import dev.ikm.tinkar.terms.State;
+import dev.ikm.tinkar.terms.TinkarTerm;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestParallelComposer {
+
+    private static final long TIME = 1_700_000_000_000L;
+    private static final List<String> CODES = IntStream.range(0, 200).mapToObj(i -> "TEST-" + i).toList();
+
+    /**
+     * The components of one run, by code, with nids replaced by public ids so runs into different stores compare.
+     */
+    private record Run(Map<String, String> components, int stamps) {
+    }
+
+    @Test
+    public void parallelRunWritesTheComponentsOfASequentialRun() {
+        Run sequential = compose(1);
+        Run parallel = compose(4);
+
+        assertEquals(sequential.components(), parallel.components());
+        // Not identical though: each session commits under its own STAMP.
+        assertEquals(1, sequential.stamps());
+        assertEquals(4, parallel.stamps());
+    }
+
+    @Test
+    public void rejectsParallelismBelowOne() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ParallelComposer(new LoincComposerSessions(new Composer("Test")), 0));
+    }
+
+    private Run compose(int parallelism) {
+        File dataStore = LoincTestDataStore.start(getClass().getSimpleName() + "-" + parallelism);
+        try {
+            LoincComposerSessions sessions = new LoincComposerSessions(new Composer("Test parallelism " + parallelism));
+            new ParallelComposer(sessions, parallelism).composeAll(CODES,
+                    () -> sessions.open(State.ACTIVE, TIME, TinkarTerm.USER, TinkarTerm.PRIMORDIAL_MODULE,
+                            TinkarTerm.PRIMORDIAL_PATH),
+                    TestParallelComposer::composeRow);
+
+            Map<String, String> components = new TreeMap<>();
+            Set<Integer> stampNids = new HashSet<>();
+            for (String code : CODES) {
+                int conceptNid = PrimitiveData.nid(LoincUuids.nameUuid(code));
+                List<String> semantics = new ArrayList<>();
+                for (int semanticNid : PrimitiveData.get().semanticNidsForComponent(conceptNid)) {
+                    SemanticEntity<?> semantic = EntityService.get().getEntityFast(semanticNid);
+                    semantics.add(PrimitiveData.publicId(semantic.patternNid()).idString() + " "
+                            + versions(semantic, stampNids));
+                }
+                semantics.sort(null);
+                components.put(code, versions(EntityService.get().getEntityFast(conceptNid), stampNids) + " "
+                        + semantics);
+            }
+            return new Run(components, stampNids.size());
+        } finally {
+            LoincTestDataStore.stop(dataStore);
+        }
+    }
+
+    private static void composeRow(Session session, String code) {
+        session.compose((ConceptAssembler concept) -> concept
+                .concept(EntityProxy.Concept.make(code, LoincUuids.nameUuid(code)))
+                .attach((FullyQualifiedName fqn) -> fqn
+                        .language(TinkarTerm.ENGLISH_LANGUAGE)
+                        .text("Test term " + code)
+                        .caseSignificance(TinkarTerm.DESCRIPTION_NOT_CASE_SENSITIVE))
+                .attach((Synonym synonym) -> synonym
+                        .language(TinkarTerm.ENGLISH_LANGUAGE)
+                        .text(code)
+                        .caseSignificance(TinkarTerm.DESCRIPTION_NOT_CASE_SENSITIVE)));
+    }
+
+    private static String versions(Entity<? extends EntityVersion> entity, Set<Integer> stampNids) {
+        List<String> versions = new ArrayList<>();
+        for (EntityVersion version : entity.versions()) {
+            StampEntity<?> stamp = version.stamp();
+            stampNids.add(stamp.nid());
+            StringBuilder text = new StringBuilder()
+                    .append(stamp.state()).append(' ').append(stamp.time())
+                    .append(' ').append(PrimitiveData.publicId(stamp.authorNid()).idString())
+                    .append(' ').append(PrimitiveData.publicId(stamp.moduleNid()).idString())
+                    .append(' ').append(PrimitiveData.publicId(stamp.pathNid()).idString());
+            if (version instanceof SemanticEntityVersion semanticVersion) {
+                for (Object field : semanticVersion.fieldValues()) {
+                    text.append(' ').append(field instanceof EntityFacade facade
+                            ? facade.publicId().idString() : String.valueOf(field));
+                }
+            }
+            versions.add(text.toString());
+        }
+        return versions.toString();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.common.service.PrimitiveData;
+import dev.ikm.tinkar.common.util.io.FileUtil;
+import dev.ikm.tinkar.entity.EntityService;
+import dev.ikm.tinkar.loinc.starterdata.LoincStarterData;
+import dev.ikm.tinkar.loinc.starterdata.LoincUuids;
+import dev.ikm.tinkar.terms.TinkarTerm;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestSingleDataStoreIngest {
+
+    private File dataStore;
+    private File input;
+
+    @AfterEach
+    public void stopDataStore() {
+        if (dataStore != null) {
+            LoincTestDataStore.stop(dataStore);
+        }
+        if (input != null) {
+            FileUtil.recursiveDelete(input);
+        }
+    }
+
+    @Test
+    public void ingestsWithoutRestartingTheDataStore() throws IOException {
+        dataStore = LoincTestDataStore.startWithStarterData(getClass().getSimpleName());
+        input = new File(dataStore.getParentFile(), getClass().getSimpleName() + "-input");
+        File partCsv = LoincTestFiles.writePartCsv(input);
+        File loincCsv = LoincTestFiles.writeLoincCsv(input);
+        Path jfr = new File(input, "ingest.jfr").toPath();
+
+        try (Recording recording = new Recording()) {
+            recording.enable("dev.ikm.loinc.Commit");
+            recording.start();
+
+            LoincStarterData loincStarterData = new LoincStarterData(LoincTestFiles.STARTER_DATA, partCsv, true);
+            assertTrue(PrimitiveData.running());
+            loincStarterData.setDataStore(dataStore);
+            loincStarterData.setLoincConceptFile(loincCsv);
+            loincStarterData.processLoincStarterDataCSVFile();
+
+            recording.stop();
+            recording.dump(jfr);
+        }
+        assertFalse(PrimitiveData.running(), "The datastore is shut down once, at the end of the ingest");
+
+        List<String> commits = RecordingFile.readAllEvents(jfr).stream()
+                .filter(event -> event.getEventType().getName().equals("dev.ikm.loinc.Commit"))
+                .map((RecordedEvent event) -> event.getString("phase"))
+                .toList();
+        assertFalse(commits.contains("STOP_INGEST"), "Commits " + commits);
+        assertTrue(commits.contains("RESTART_SESSION"), "Commits " + commits);
+
+        LoincTestDataStore.open(dataStore);
+        for (String name : List.of(LoincStarterData.LOINC_AUTHOR, LoincTestFiles.COMPONENT_PART,
+                LoincTestFiles.ACTIVE_TERM, LoincTestFiles.DEPRECATED_TERM)) {
+            assertNotNull(EntityService.get().getEntityFast(PrimitiveData.nid(LoincUuids.nameUuid(name))),
+                    name + " is not in " + dataStore);
+        }
+        for (String term : List.of(LoincTestFiles.ACTIVE_TERM, LoincTestFiles.DEPRECATED_TERM)) {
+            int[] definitions = EntityService.get().semanticNidsForComponentOfPattern(
+                    PrimitiveData.nid(LoincUuids.nameUuid(term)), TinkarTerm.EL_PLUS_PLUS_STATED_AXIOMS_PATTERN.nid());
+            assertEquals(1, definitions.length, "Stated definitions of " + term);
+        }
+    }
+}
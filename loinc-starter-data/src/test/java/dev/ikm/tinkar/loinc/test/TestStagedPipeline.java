@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2015 Integrated Knowledge Management (support@ikm.dev)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.ikm.tinkar.loinc.test;
+
+import dev.ikm.tinkar.loinc.starterdata.IngestMetrics;
+import dev.ikm.tinkar.loinc.starterdata.LoincIngestStages;
+import dev.ikm.tinkar.loinc.starterdata.StagedPipeline;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestStagedPipeline {
+
+    @Test
+    public void deliversEveryItemInOrderBeforeTheEndOfStream() {
+        for (boolean virtualThreadIo : new boolean[]{false, true}) {
+            List<Integer> received = new ArrayList<>();
+            StagedPipeline pipeline = new StagedPipeline("test", 2, 16, new IngestMetrics());
+            pipeline.setVirtualThreadIo(virtualThreadIo);
+            StagedPipeline.Stage<Integer> numbers = pipeline.source("source", (Consumer<Integer> downstream) -> {
+                for (int i = 0; i < 1_000; i++) {
+                    downstream.accept(i);
+                }
+            });
+            // Random delays let the threads of a stage finish their items out of order.
+            StagedPipeline.Stage<Integer> doubled = pipeline.map("double", numbers, 4, i -> {
+                jitter();
+                return i * 2;
+            });
+            StagedPipeline.Stage<String> text = pipeline.map("text", doubled, 3, i -> {
+                jitter();
+                return Integer.toString(i);
+            });
+            pipeline.sink("sink", text, s -> received.add(Integer.parseInt(s)));
+            pipeline.run();
+
+            assertEquals(IntStream.range(0, 1_000).map(i -> i * 2).boxed().toList(), received);
+        }
+    }
+
+    @Test
+    public void endsAnEmptyStream() {
+        List<Integer> received = new ArrayList<>();
+        StagedPipeline pipeline = new StagedPipeline("test", 1, 1, new IngestMetrics());
+        StagedPipeline.Stage<Integer> numbers = pipeline.source("source", (Consumer<Integer> downstream) -> {
+        });
+        pipeline.sink("sink", pipeline.map("identity", numbers, 4, i -> i), received::add);
+        pipeline.run();
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void holdsTheSourceBackWhileTheSinkIsBusy() throws InterruptedException {
+        int maxInFlight = 3;
+        AtomicInteger emitted = new AtomicInteger();
+        CountDownLatch sinkReleased = new CountDownLatch(1);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        StagedPipeline pipeline = new StagedPipeline("test", 1, maxInFlight, new IngestMetrics());
+        StagedPipeline.Stage<Integer> numbers = pipeline.source("source", (Consumer<Integer> downstream) -> {
+            for (int i = 0; i < 100; i++) {
+                downstream.accept(i);
+                emitted.incrementAndGet();
+            }
+        });
+        pipeline.sink("sink", pipeline.map("identity", numbers, 2, i -> i), i -> {
+            sinkReleased.await();
+            received.add(i);
+        });
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread runner = Thread.ofPlatform().start(() -> {
+            try {
+                pipeline.run();
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (emitted.get() < maxInFlight && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        // The sink holds the first item, so no more than maxInFlight items have left the source.
+        assertEquals(maxInFlight, emitted.get());
+        assertTrue(received.isEmpty());
+
+        sinkReleased.countDown();
+        runner.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(runner.isAlive());
+        assertNull(failure.get());
+        assertEquals(IntStream.range(0, 100).boxed().toList(), received);
+    }
+
+    @Test
+    public void failsWithTheCauseOfAFailedStage() {
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        StagedPipeline pipeline = new StagedPipeline("test", 2, 8, new IngestMetrics());
+        StagedPipeline.Stage<Integer> numbers = pipeline.source("source", (Consumer<Integer> downstream) -> {
+            for (int i = 0; ; i++) {
+                downstream.accept(i);
+            }
+        });
+        StagedPipeline.Stage<Integer> parsed = pipeline.map("parse", numbers, 4, i -> {
+            if (i == 50) {
+                throw new IOException("Malformed record " + i);
+            }
+            return i;
+        });
+        pipeline.sink("sink", parsed, received::add);
+
+        RuntimeException e = assertThrows(RuntimeException.class, pipeline::run);
+        assertEquals("Stage parse of test failed", e.getMessage());
+        assertInstanceOf(IOException.class, e.getCause());
+        assertEquals("Malformed record 50", e.getCause().getMessage());
+        // The items before the failed one may or may not have reached the sink, but never out of order.
+        assertTrue(received.size() <= 50);
+        assertEquals(IntStream.range(0, received.size()).boxed().toList(), received);
+    }
+
+    @Test
+    public void cancelsTheOtherStagesWhenTheSinkFails() {
+        AtomicInteger emitted = new AtomicInteger();
+        StagedPipeline pipeline = new StagedPipeline("test", 2, 8, new IngestMetrics());
+        StagedPipeline.Stage<Integer> numbers = pipeline.source("source", (Consumer<Integer> downstream) -> {
+            // Never ends by itself; only cancellation stops it.
+            for (int i = 0; ; i++) {
+                downstream.accept(i);
+                emitted.incrementAndGet();
+            }
+        });
+        StagedPipeline.Stage<Integer> slow = pipeline.map("slow", numbers, 2, i -> {
+            Thread.sleep(1);
+            return i;
+        });
+        pipeline.sink("sink", slow, i -> {
+            if (i == 10) {
+                throw new IllegalStateException("Unable to write " + i);
+            }
+        });
+
+        RuntimeException e = assertThrows(RuntimeException.class, pipeline::run);
+        assertEquals("Stage sink of test failed", e.getMessage());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertTrue(emitted.get() <= 10 + 8, "emitted " + emitted.get());
+    }
+
+    @Test
+    public void failsWithTheCauseOfAFailedSource() {
+        List<Integer> received = new ArrayList<>();
+        StagedPipeline pipeline = new StagedPipeline("test", 2, 8, new IngestMetrics());
+        StagedPipeline.Stage<Integer> numbers = pipeline.source("source", (Consumer<Integer> downstream) -> {
+            downstream.accept(0);
+            throw new IOException("Unable to read");
+        });
+        pipeline.sink("sink", numbers, received::add);
+
+        RuntimeException e = assertThrows(RuntimeException.class, pipeline::run);
+        assertEquals("Stage source of test failed", e.getMessage());
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    @Test
+    public void checksHowStagesAreConnected() {
+        assertThrows(IllegalArgumentException.class, () -> new StagedPipeline("test", 0, 1, new IngestMetrics()));
+        StagedPipeline pipeline = new StagedPipeline("test", 1, 1, new IngestMetrics());
+        assertThrows(IllegalStateException.class, pipeline::run);
+        assertThrows(IllegalArgumentException.class,
+                () -> pipeline.source("Not a metric", (Consumer<Integer> downstream) -> {
+                }));
+        StagedPipeline.Stage<Integer> numbers = pipeline.source("source", (Consumer<Integer> downstream) -> {
+        });
+        assertThrows(IllegalStateException.class, () -> pipeline.source("again", (Consumer<Integer> downstream) -> {
+        }));
+        assertThrows(IllegalArgumentException.class, () -> pipeline.map("identity", numbers, 0, i -> i));
+        pipeline.map("identity", numbers, 1, i -> i);
+        assertThrows(IllegalStateException.class, () -> pipeline.map("again", numbers, 1, i -> i));
+        assertThrows(IllegalStateException.class, pipeline::run);
+    }
+
+    @Test
+    public void sizesTheIngestStages() {
+        LoincIngestStages stages = new LoincIngestStages(2_000, 8, 2, 3, 4);
+        assertEquals(8 * 4 + 2 + 3 + 4, stages.maxInFlight());
+        assertThrows(IllegalArgumentException.class, () -> new LoincIngestStages(0, 8, 2, 3, 4));
+        assertThrows(IllegalArgumentException.class, () -> new LoincIngestStages(2_000, 8, 2, 3, 0));
+
+        LoincIngestStages defaults = LoincIngestStages.defaults();
+        assertEquals(2_000, defaults.blockRows());
+        assertTrue(defaults.tokenizers() >= 1 && defaults.mappers() >= 1 && defaults.builders() >= 1);
+        assertTrue(defaults.maxInFlight() > defaults.queueCapacity());
+    }
+
+    private static void jitter() throws InterruptedException {
+        if (ThreadLocalRandom.current().nextInt(8) == 0) {
+            Thread.sleep(0, ThreadLocalRandom.current().nextInt(200_000));
+        }
+    }
+}
@@ -39,6 +39,8 @@
     requires dev.ikm.tinkar.composer;
     requires dev.ikm.tinkar.common;
     requires dev.ikm.tinkar.entity;
+    requires dev.ikm.tinkar.ext.lang.owl;
+    requires dev.ikm.tinkar.terms;
     requires dev.ikm.tinkar.provider.entity;
     requires org.junit.jupiter.api;
     requires dev.ikm.jpms.eclipse.collections.api;
@@ -47,6 +49,7 @@
     requires tinkar.sandbox;
 
     requires dev.ikm.tinkar.provider.spinedarray;
+    requires jdk.jfr;
 
     exports dev.ikm.tinkar.loinc.test;
 